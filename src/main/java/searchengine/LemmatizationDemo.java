@@ -1,16 +1,15 @@
 package searchengine;
 
 import org.apache.lucene.morphology.LuceneMorphology;
-import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
-import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
+import searchengine.utils.LemmaEngine;
 
 import java.util.List;
 
 public class LemmatizationDemo {
     public static void main(String[] args) {
         try {
-            LuceneMorphology russianMorphology = new RussianLuceneMorphology();
-            LuceneMorphology englishMorphology = new EnglishLuceneMorphology();
+            LuceneMorphology russianMorphology = LemmaEngine.shared().getMorphology("ru");
+            LuceneMorphology englishMorphology = LemmaEngine.shared().getMorphology("en");
 
             String russianWord = "леса";
             String englishWord = "running";
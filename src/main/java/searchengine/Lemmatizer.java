@@ -1,10 +1,8 @@
 package searchengine;
 
-import org.apache.lucene.morphology.LuceneMorphology;
-import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
-import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
+import searchengine.utils.LemmaEngine;
+import searchengine.utils.WordTokenizer;
 
-import java.io.IOException;
 import java.util.*;
 
 
@@ -13,47 +11,37 @@ public class Lemmatizer {
             "PREP", "CONJ", "PRCL", "INTJ"
     ));
 
-    private LuceneMorphology luceneMorphology;
+    private final LemmaEngine lemmaEngine = LemmaEngine.shared();
+    private final WordTokenizer.Script script;
 
     public Lemmatizer(String language) {
-        try {
-            if ("ru".equalsIgnoreCase(language)) {
-                luceneMorphology = new RussianLuceneMorphology();
-            } else if ("en".equalsIgnoreCase(language)) {
-                luceneMorphology = new EnglishLuceneMorphology();
-            } else {
-                throw new IllegalArgumentException("Unsupported language: " + language);
-            }
-        } catch (IOException e) {
-            System.err.println("Error initializing lemmatizer: " + e.getMessage());
-            e.printStackTrace();
+        if (!"ru".equalsIgnoreCase(language) && !"en".equalsIgnoreCase(language)) {
+            throw new IllegalArgumentException("Unsupported language: " + language);
         }
+        script = "ru".equalsIgnoreCase(language) ? WordTokenizer.Script.CYRILLIC : WordTokenizer.Script.LATIN;
     }
 
     public Map<String, Integer> getLemmas(String text) {
-        text = text.replaceAll("[^a-zA-Zа-яА-ЯёЁ]", " ");
-        String[] words = text.split("\\s+");
         Map<String, Integer> lemmaCount = new HashMap<>();
 
-        for (String word : words) {
-            if (word.isEmpty()) {
-                continue;
+        WordTokenizer.tokenize(text, 1, (word, wordScript) -> {
+            if (wordScript != script) {
+                return;
             }
 
-            word = word.toLowerCase();
-
-            List<String> lemmas = luceneMorphology.getNormalForms(word);
+            LemmaEngine.WordForms forms = lemmaEngine.forms(word);
+            List<String> lemmas = forms.getNormalForms();
             if (!lemmas.isEmpty()) {
                 String lemma = lemmas.get(0);
 
-                List<String> grammemes = luceneMorphology.getMorphInfo(word);
+                List<String> grammemes = forms.getMorphInfo();
                 for (String grammeme : grammemes) {
                     if (!isExcludedPartOfSpeech(grammeme)) {
                         lemmaCount.put(lemma, lemmaCount.getOrDefault(lemma, 0) + 1);
                     }
                 }
             }
-        }
+        });
 
         return lemmaCount;
     }
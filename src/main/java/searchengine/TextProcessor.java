@@ -1,75 +1,31 @@
 package searchengine;
 
-import org.apache.lucene.morphology.LuceneMorphology;
-import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
-import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
 import org.jsoup.Jsoup;
+import searchengine.utils.LemmaEngine;
+import searchengine.utils.WordTokenizer;
 
-import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class TextProcessor {
 
-    private static LuceneMorphology russianMorph;
-    private static LuceneMorphology englishMorph;
-
-    static {
-        try {
-            russianMorph = new RussianLuceneMorphology();
-            englishMorph = new EnglishLuceneMorphology();
-        } catch (IOException e) {
-            System.err.println("Ошибка при инициализации морфологического анализатора: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-
     public static HashMap<String, Integer> processText(String text, String language) {
         HashMap<String, Integer> lemmaCount = new HashMap<>();
+        WordTokenizer.Script script = getScript(language);
+        LemmaEngine lemmaEngine = LemmaEngine.shared();
 
-        text = removeHtmlTags(text);
-
-        String[] words = text.split("\\s+");
-
-        LuceneMorphology luceneMorph = getMorphology(language);
-
-        if (luceneMorph == null) {
-            return lemmaCount;
-        }
-
-        Pattern pattern = Pattern.compile("[^a-zA-Zа-яА-ЯёЁ]");
-
-        for (String word : words) {
-            Matcher matcher = pattern.matcher(word);
-            word = matcher.replaceAll("");
-
-            word = word.toLowerCase();
-
-            if (language.equals("en") && word.contains("'")) {
-                continue;
+        WordTokenizer.tokenize(removeHtmlTags(text), 1, (word, wordScript) -> {
+            if (wordScript != script) {
+                return;
             }
-
-            try {
-                List<String> wordBaseForms = luceneMorph.getMorphInfo(word);
-
-                if (wordBaseForms.stream().noneMatch(info -> info.contains("СОЮЗ") ||
-                        info.contains("МЕЖД") ||
-                        info.contains("ПРЕДЛ") ||
-                        info.contains("ЧАСТ") ||
-                        info.contains("CONJ") ||
-                        info.contains("PART"))) {
-
-                    String lemma = luceneMorph.getNormalForms(word).get(0);
-
-                    lemmaCount.put(lemma, lemmaCount.getOrDefault(lemma, 0) + 1);
-                }
-            } catch (Exception e) {
-                System.err.println("Ошибка при обработке слова: " + word);
-                e.printStackTrace();
+            LemmaEngine.WordForms forms = lemmaEngine.forms(word);
+            List<String> normalForms = forms.getNormalForms();
+            if (normalForms.isEmpty() || forms.getMorphInfo().stream().anyMatch(LemmaEngine::isServiceInfo)) {
+                return;
             }
-        }
+            String lemma = normalForms.get(0);
+            lemmaCount.put(lemma, lemmaCount.getOrDefault(lemma, 0) + 1);
+        });
         return lemmaCount;
     }
 
@@ -77,15 +33,12 @@ public class TextProcessor {
         return Jsoup.parse(text).text();
     }
 
-    public static LuceneMorphology getMorphology(String language) {
-        switch (language.toLowerCase()) {
-            case "ru":
-                return russianMorph;
-            case "en":
-                return englishMorph;
-            default:
-                throw new IllegalArgumentException("Неизвестный язык: " + language);
-        }
+    private static WordTokenizer.Script getScript(String language) {
+        return switch (language.toLowerCase()) {
+            case "ru" -> WordTokenizer.Script.CYRILLIC;
+            case "en" -> WordTokenizer.Script.LATIN;
+            default -> throw new IllegalArgumentException("Неизвестный язык: " + language);
+        };
     }
 
     public static void main(String[] args) {
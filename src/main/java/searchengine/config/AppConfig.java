@@ -2,6 +2,7 @@ package searchengine.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import searchengine.utils.LemmaEngine;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -13,4 +14,10 @@ public class AppConfig {
     public ExecutorService executorService() {
         return Executors.newFixedThreadPool(4);
     }
+
+    // Один лемматизатор на приложение: словари морфологии загружаются один раз
+    @Bean
+    public LemmaEngine lemmaEngine() {
+        return LemmaEngine.shared();
+    }
 }
\ No newline at end of file
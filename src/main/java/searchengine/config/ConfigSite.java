@@ -8,4 +8,11 @@ import lombok.Setter;
 public class ConfigSite {
     private String url;
     private String name;
+    // Переопределяет indexing-settings.crawl.max-concurrent-fetches-per-site
+    private Integer maxConcurrentFetches;
+    // Бюджет обхода сайта; незаданные значения берутся из indexing-settings.crawl
+    private Integer maxDepth;
+    private Integer maxPages;
+    private Long maxBytes;
+    private Long maxWallTimeMinutes;
 }
@@ -0,0 +1,86 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.crawl")
+public class CrawlSettings {
+    // Минимальная и максимальная пауза между запросами к одному хосту (мс)
+    private long politenessDelayMinMs = 1000;
+    private long politenessDelayMaxMs = 3000;
+
+    // VIRTUAL: каждая загрузка в своём виртуальном потоке; PLATFORM: фиксированный пул
+    private FetchMode fetchMode = FetchMode.VIRTUAL;
+
+    // Размер пула загрузки в режиме PLATFORM
+    private int workerThreads = Runtime.getRuntime().availableProcessors() * 2;
+
+    // Сколько загрузок одновременно допускается всего и на один сайт
+    private int maxConcurrentFetches = 1000;
+    private int maxConcurrentFetchesPerSite = 1;
+
+    // Стадия разбора HTML: потоки и длина очереди перед ней
+    private int processingThreads = Runtime.getRuntime().availableProcessors();
+    private int processingQueueCapacity = 256;
+
+    // Стадии лемматизации и записи в базу и длина очереди перед каждой из них
+    private int lemmatizeThreads = Runtime.getRuntime().availableProcessors();
+    private int persistThreads = 2;
+    private int pipelineQueueCapacity = 256;
+
+    // Период сброса накопленных в памяти частот лемм в базу
+    private long lemmaFlushIntervalSeconds = 5;
+
+    // Переиндексация из сохранённых страниц: страниц в порции и потоков лемматизации (0 — по числу ядер)
+    private int reindexChunkSize = 200;
+    private int reindexThreads = 0;
+
+    // Бюджет памяти множества посещённых URL на один обход и размер фильтра Блума (0 — без фильтра)
+    private long visitedSetMaxBytes = 16L * 1024 * 1024;
+    private long visitedBloomFilterBytes = 0;
+
+    // Заголовок User-Agent и имя агента для групп robots.txt
+    private String userAgent = "Mozilla/5.0";
+    private String robotsAgent = "SearchEngineBot";
+    private long robotsCacheMinutes = 24 * 60;
+
+    // Общий HTTP-клиент: HTTP/2 там, где сервер его поддерживает, и тайм-аут соединения.
+    // Кеш DNS задаётся флагами JVM при запуске, а не здесь: см. README
+    private boolean http2 = true;
+    private int connectTimeoutMs = 10000;
+
+    // Тайм-аут загрузки и лимит тела HTML-страницы: больший ответ не дочитывается
+    private int fetchTimeoutMs = 10000;
+    private long maxBodyBytes = 5L * 1024 * 1024;
+
+    // Засев очереди из sitemap.xml и ограничения на размер карт сайта
+    private boolean useSitemaps = true;
+    private int sitemapMaxUrls = 50000;
+    private int sitemapMaxFiles = 100;
+
+    // Бюджет обхода по умолчанию: глубина, число загрузок, байты и минуты (0 — без ограничения)
+    private int maxDepth = 3;
+    private int maxPages = 0;
+    private long maxBytes = 0;
+    private long maxWallTimeMinutes = 0;
+
+    // Контрольные точки обхода для продолжения после остановки или сбоя
+    private boolean checkpointEnabled = true;
+    private String checkpointDir = "crawl-checkpoints";
+    private long checkpointIntervalSeconds = 60;
+
+    // Переиндексация без удаления сайта: условные запросы и обработка только изменённых страниц.
+    // При false уже проиндексированный сайт строится заново в новом поколении страниц.
+    // Значение по умолчанию для /api/startIndexing; параметр incremental запроса его переопределяет
+    private boolean incremental = false;
+
+    public enum FetchMode {
+        VIRTUAL,
+        PLATFORM
+    }
+}
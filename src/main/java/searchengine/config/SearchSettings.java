@@ -0,0 +1,30 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.search")
+public class SearchSettings {
+    // Обратный индекс в памяти: загружается из таблицы index при старте и обновляется при индексации
+    private boolean inMemoryIndex = true;
+
+    // Леммы, которые встречаются на большей доле страниц, не участвуют в отборе (самая редкая остаётся всегда)
+    private double frequentLemmaShare = 0.8;
+
+    // Сколько лучших страниц пересортировывается с учётом близости слов по позициям из базы
+    private int rerankPoolSize = 100;
+
+    // Параметры BM25: насыщение частоты слова и сила поправки на длину страницы
+    private double bm25K1 = 1.2;
+    private double bm25B = 0.75;
+
+    // Кеш ранжированных результатов: число запросов, время жизни и сколько лучших страниц хранить на запрос
+    private int resultCacheSize = 1000;
+    private int resultCacheTtlSeconds = 300;
+    private int resultCacheDepth = 100;
+}
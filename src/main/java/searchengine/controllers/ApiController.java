@@ -6,13 +6,14 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.services.IndexingService;
+import searchengine.services.MetricsService;
 import searchengine.services.StatisticsService;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam ;
 import searchengine.services.PageIndexingService;
+import searchengine.services.ReindexService;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -29,14 +30,16 @@ public class ApiController {
     private final StatisticsService statisticsService;
     @Lazy
     private final IndexingService indexingService;
-    private final ExecutorService executorService;
     private final PageIndexingService pageIndexingService;  // Исправленное имя переменной
     private final SearchService searchService;
+    private final MetricsService metricsService;
+    private final ReindexService reindexService;
 
-    public ApiController(@Lazy StatisticsService statisticsService,SearchService searchService,@Lazy PageIndexingService pageIndexingService,@Lazy IndexingService indexingService, ExecutorService executorService) {
+    public ApiController(@Lazy StatisticsService statisticsService,SearchService searchService,@Lazy PageIndexingService pageIndexingService,@Lazy IndexingService indexingService, MetricsService metricsService, ReindexService reindexService) {
+        this.metricsService = metricsService;
+        this.reindexService = reindexService;
         this.statisticsService = statisticsService;
         this.indexingService = indexingService;
-        this.executorService = executorService;
         this.pageIndexingService = pageIndexingService;
         this.searchService = searchService;
     }
@@ -47,18 +50,28 @@ public class ApiController {
         return ResponseEntity.ok(statistics);
     }
 
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> metrics() {
+        return ResponseEntity.ok(metricsService.getMetrics());
+    }
+
     @GetMapping("/startIndexing")
-    public ResponseEntity<Map<String, Object>> startIndexing() {
-        if (indexingService.isIndexingInProgress()) {
+    public ResponseEntity<Map<String, Object>> startIndexing(@RequestParam(required = false) Boolean incremental) {
+        // Индексация идёт в своём потоке; без параметра режим берётся из настроек.
+        // Занятость проверяется при запуске, вместе с переиндексацией и индексацией страницы
+        try {
+            if (incremental == null) {
+                indexingService.startFullIndexing();
+            } else {
+                indexingService.startFullIndexing(incremental);
+            }
+        } catch (IllegalStateException e) {
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("result", false);
-            errorResponse.put("error", "Индексация уже запущена");
+            errorResponse.put("error", e.getMessage());
             return ResponseEntity.badRequest().body(errorResponse);
         }
 
-        // Запуск асинхронной индексации
-        executorService.submit(indexingService::startFullIndexing);
-
         Map<String, Object> successResponse = new HashMap<>();
         successResponse.put("result", true);
         return ResponseEntity.ok(successResponse);
@@ -81,6 +94,34 @@ public class ApiController {
     }
 
 
+    // Перестроение индекса из сохранённых страниц; ход выполнения — в /api/metrics (reindex)
+    @GetMapping("/reindex")
+    public ResponseEntity<Map<String, Object>> reindex(@RequestParam(required = false) String site) {
+        Map<String, Object> response = new HashMap<>();
+        String error = reindexService.start(site);
+        if (error != null) {
+            response.put("result", false);
+            response.put("error", error);
+            return ResponseEntity.badRequest().body(response);
+        }
+        response.put("result", true);
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/stopReindex")
+    public ResponseEntity<Map<String, Object>> stopReindex() {
+        Map<String, Object> response = new HashMap<>();
+        if (!reindexService.isRunning()) {
+            response.put("result", false);
+            response.put("error", "Переиндексация не запущена");
+            return ResponseEntity.badRequest().body(response);
+        }
+        reindexService.stop();
+        response.put("result", true);
+        return ResponseEntity.ok(response);
+    }
+
+
     @GetMapping("/search")
     public ResponseEntity<SearchResponse> search(
             @RequestParam String query,
@@ -124,6 +165,10 @@ public class ApiController {
                 response.put("error", "Не удалось индексировать страницу");
             }
             return ResponseEntity.ok(response);
+        } catch (IllegalStateException e) {
+            response.put("result", false);
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
         } catch (Exception e) {
             logger.error("Ошибка индексации страницы {}: {}", url, e.getMessage(), e);
             response.put("result", false);
@@ -0,0 +1,92 @@
+package searchengine.crawler;
+
+import searchengine.config.ConfigSite;
+import searchengine.config.CrawlSettings;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Лимиты одного обхода из настроек сайта или indexing-settings.crawl; 0 — без ограничения
+public class CrawlBudget {
+    private final int maxDepth;
+    private final int maxPages;
+    private final long maxBytes;
+    private final long deadlineNanos; // 0 — без ограничения по времени
+
+    private final AtomicInteger pages = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+    private volatile String exhaustedReason;
+
+    public CrawlBudget(int maxDepth, int maxPages, long maxBytes, long maxWallTimeMinutes) {
+        this.maxDepth = maxDepth;
+        this.maxPages = maxPages;
+        this.maxBytes = maxBytes;
+        this.deadlineNanos = maxWallTimeMinutes > 0
+                ? System.nanoTime() + TimeUnit.MINUTES.toNanos(maxWallTimeMinutes)
+                : 0;
+    }
+
+    public static CrawlBudget of(CrawlSettings settings, ConfigSite site) {
+        return new CrawlBudget(
+                site != null && site.getMaxDepth() != null ? site.getMaxDepth() : settings.getMaxDepth(),
+                site != null && site.getMaxPages() != null ? site.getMaxPages() : settings.getMaxPages(),
+                site != null && site.getMaxBytes() != null ? site.getMaxBytes() : settings.getMaxBytes(),
+                site != null && site.getMaxWallTimeMinutes() != null
+                        ? site.getMaxWallTimeMinutes() : settings.getMaxWallTimeMinutes());
+    }
+
+    public boolean allowsDepth(int depth) {
+        return maxDepth <= 0 || depth <= maxDepth;
+    }
+
+    // false — бюджет исчерпан, адрес не загружается
+    public boolean tryAcquirePage() {
+        if (exhaustedReason != null) {
+            return false;
+        }
+        if (deadlineNanos != 0 && System.nanoTime() - deadlineNanos > 0) {
+            exhaust("время обхода");
+            return false;
+        }
+        int fetched = pages.incrementAndGet();
+        if (maxPages > 0 && fetched > maxPages) {
+            exhaust("число страниц");
+            return false;
+        }
+        return true;
+    }
+
+    public void addBytes(long count) {
+        long total = bytes.addAndGet(count);
+        if (maxBytes > 0 && total >= maxBytes) {
+            exhaust("объём загрузки");
+        }
+    }
+
+    public boolean isExhausted() {
+        return exhaustedReason != null;
+    }
+
+    public String getExhaustedReason() {
+        return exhaustedReason;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getPages() {
+        return Math.min(pages.get(), maxPages > 0 ? maxPages : Integer.MAX_VALUE);
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    private void exhaust(String reason) {
+        if (exhaustedReason == null) {
+            exhaustedReason = reason;
+        }
+    }
+}
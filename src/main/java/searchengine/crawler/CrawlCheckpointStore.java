@@ -0,0 +1,235 @@
+package searchengine.crawler;
+
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlSettings;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Контрольные точки обхода: незавершённые адреса, посещённые и перепроверенные инкрементальным обходом страницы.
+// Файл удаляется после завершения обхода, по нему /api/startIndexing продолжает прерванный обход
+@Component
+public class CrawlCheckpointStore {
+    private static final Logger logger = LoggerFactory.getLogger(CrawlCheckpointStore.class);
+
+    private static final int MAGIC = 0x43524B50; // "CRKP"
+    private static final int VERSION = 2;
+    private static final int MAX_URL_BYTES = 65535;
+
+    private final CrawlSettings settings;
+    private final ScheduledExecutorService writer;
+
+    public CrawlCheckpointStore(CrawlSettings settings) {
+        this.settings = settings;
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "crawl-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public boolean exists(String siteUrl) {
+        return settings.isCheckpointEnabled() && Files.exists(fileFor(siteUrl));
+    }
+
+    // null, если контрольные точки выключены
+    public ScheduledFuture<?> schedule(String siteUrl, CrawlJob job, VisitedUrlSet visited, KnownPages knownPages) {
+        if (!settings.isCheckpointEnabled()) {
+            return null;
+        }
+        long interval = Math.max(1, settings.getCheckpointIntervalSeconds());
+        return writer.scheduleWithFixedDelay(() -> save(siteUrl, job, visited, knownPages),
+                interval, interval, TimeUnit.SECONDS);
+    }
+
+    // knownPages — null при полном обходе
+    public synchronized void save(String siteUrl, CrawlJob job, VisitedUrlSet visited, KnownPages knownPages) {
+        if (!settings.isCheckpointEnabled()) {
+            return;
+        }
+        Path file = fileFor(siteUrl);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            // Сначала посещённые, потом очередь: адрес из очереди не может потеряться между снимками
+            List<CrawlRequest> frontier;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(temp))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(siteUrl);
+                out.writeBoolean(knownPages != null);
+                visited.writeTo(out);
+                frontier = job.snapshotFrontier();
+                List<CrawlRequest> writable = new ArrayList<>(frontier.size());
+                for (CrawlRequest request : frontier) {
+                    if (request.getUrl().getBytes(StandardCharsets.UTF_8).length <= MAX_URL_BYTES) {
+                        writable.add(request);
+                    }
+                }
+                out.writeInt(writable.size());
+                for (CrawlRequest request : writable) {
+                    out.writeUTF(request.getUrl());
+                    out.writeInt(request.getDepth());
+                    out.writeLong(request.getLastModified() != null ? request.getLastModified().toEpochMilli() : -1);
+                }
+                if (knownPages != null) {
+                    // Отмеченные после снимка очереди: страница, ушедшая из очереди, уже есть среди отмеченных
+                    List<String> seen = knownPages.seenPaths();
+                    out.writeInt(seen.size());
+                    for (String path : seen) {
+                        out.writeUTF(path);
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("💾 Контрольная точка {}: в очереди {}, посещено {}", siteUrl, frontier.size(), visited.size());
+        } catch (IOException e) {
+            logger.warn("⚠️ Не удалось записать контрольную точку {}: {}", siteUrl, e.getMessage());
+        }
+    }
+
+    public boolean isIncremental(String siteUrl) {
+        Path file = fileFor(siteUrl);
+        if (!settings.isCheckpointEnabled() || !Files.exists(file)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            return readHeader(in, siteUrl) && in.readBoolean();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // null, если точки нет, она повреждена или записана обходом другого режима
+    public Checkpoint load(String siteUrl, VisitedUrlSet visited, KnownPages knownPages) {
+        Path file = fileFor(siteUrl);
+        if (!settings.isCheckpointEnabled() || !Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            if (!readHeader(in, siteUrl)) {
+                logger.warn("⚠️ Контрольная точка {} другого формата, обход начнётся заново", file);
+                return null;
+            }
+            if (in.readBoolean() != (knownPages != null)) {
+                logger.warn("⚠️ Контрольная точка {} записана обходом другого режима, обход начнётся заново", file);
+                return null;
+            }
+            visited.readFrom(in);
+            int count = in.readInt();
+            List<Entry> frontier = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String url = in.readUTF();
+                int depth = in.readInt();
+                long lastModified = in.readLong();
+                frontier.add(new Entry(url, depth, lastModified >= 0 ? Instant.ofEpochMilli(lastModified) : null));
+            }
+            if (knownPages != null) {
+                int seen = in.readInt();
+                for (int i = 0; i < seen; i++) {
+                    knownPages.markSeen(in.readUTF());
+                }
+            }
+            logger.info("📂 Загружена контрольная точка {}: в очереди {}, посещено {}", siteUrl, count, visited.size());
+            return new Checkpoint(frontier);
+        } catch (IOException e) {
+            logger.warn("⚠️ Контрольная точка {} не читается: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean readHeader(DataInputStream in, String siteUrl) throws IOException {
+        return in.readInt() == MAGIC && in.readInt() == VERSION && siteUrl.equals(in.readUTF());
+    }
+
+    public synchronized void delete(String siteUrl) {
+        try {
+            Files.deleteIfExists(fileFor(siteUrl));
+        } catch (IOException e) {
+            logger.warn("⚠️ Не удалось удалить контрольную точку {}: {}", siteUrl, e.getMessage());
+        }
+    }
+
+    // Отметка незавершённой переиндексации: позицию она восстанавливает по базе
+    public synchronized void markReindex(String siteUrl) {
+        Path file = fileFor(siteUrl, ".reindex");
+        try {
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, siteUrl);
+        } catch (IOException e) {
+            logger.warn("⚠️ Не удалось записать отметку переиндексации {}: {}", siteUrl, e.getMessage());
+        }
+    }
+
+    public boolean isReindexMarked(String siteUrl) {
+        return Files.exists(fileFor(siteUrl, ".reindex"));
+    }
+
+    public synchronized void clearReindex(String siteUrl) {
+        try {
+            Files.deleteIfExists(fileFor(siteUrl, ".reindex"));
+        } catch (IOException e) {
+            logger.warn("⚠️ Не удалось удалить отметку переиндексации {}: {}", siteUrl, e.getMessage());
+        }
+    }
+
+    private Path fileFor(String siteUrl) {
+        return fileFor(siteUrl, ".ckpt");
+    }
+
+    private Path fileFor(String siteUrl, String extension) {
+        String name = ContentHash.sha256(siteUrl.getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+        return Paths.get(settings.getCheckpointDir()).resolve(name + extension);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdownNow();
+    }
+
+    @Getter
+    public static class Checkpoint {
+        private final List<Entry> frontier;
+
+        Checkpoint(List<Entry> frontier) {
+            this.frontier = frontier;
+        }
+    }
+
+    @Getter
+    public static class Entry {
+        private final String url;
+        private final int depth;
+        private final Instant lastModified;
+
+        Entry(String url, int depth, Instant lastModified) {
+            this.url = url;
+            this.depth = depth;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package searchengine.crawler;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlSettings;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.security.Security;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+// Общий HTTP-клиент обходчика: соединения и TLS переиспользуются между загрузками.
+// Кеш DNS задаётся при запуске JVM (-Dsun.net.inetaddr.ttl), клиент его не меняет
+@Component
+public class CrawlHttpClient {
+    private static final Logger logger = LoggerFactory.getLogger(CrawlHttpClient.class);
+
+    private final CrawlSettings settings;
+    private final ExecutorService executor;
+    private final HttpClient client;
+
+    public CrawlHttpClient(CrawlSettings settings) {
+        this.settings = settings;
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("crawl-http-", 0).factory());
+        this.client = HttpClient.newBuilder()
+                .version(settings.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(settings.getConnectTimeoutMs()))
+                .executor(executor)
+                .build();
+        logger.info("🌐 HTTP-клиент обходчика: {}, кеш DNS JVM: {}", client.version(), dnsCacheTtl());
+    }
+
+    // Тело не читается: его нужно прочитать через body(HttpResponse) или закрыть
+    public HttpResponse<InputStream> send(String url, String method, Map<String, String> headers,
+                                          long timeoutMs) throws IOException {
+        HttpRequest.Builder builder;
+        try {
+            builder = HttpRequest.newBuilder(URI.create(url));
+        } catch (IllegalArgumentException e) {
+            throw new MalformedURLException("Некорректный адрес " + url + ": " + e.getMessage());
+        }
+        builder.method(method, HttpRequest.BodyPublishers.noBody())
+                .timeout(Duration.ofMillis(timeoutMs))
+                .header("User-Agent", settings.getUserAgent())
+                .header("Accept-Encoding", "gzip, deflate");
+        headers.forEach(builder::setHeader);
+        try {
+            return client.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Загрузка прервана: " + url);
+        } catch (IllegalArgumentException e) {
+            throw new MalformedURLException("Некорректный адрес " + url + ": " + e.getMessage());
+        }
+    }
+
+    public static InputStream body(HttpResponse<InputStream> response) throws IOException {
+        String encoding = header(response, "Content-Encoding");
+        if (encoding == null) {
+            return response.body();
+        }
+        return switch (encoding.trim().toLowerCase(Locale.ROOT)) {
+            case "gzip", "x-gzip" -> new GZIPInputStream(response.body(), 8192);
+            case "deflate" -> new InflaterInputStream(response.body());
+            default -> response.body();
+        };
+    }
+
+    public static String header(HttpResponse<?> response, String name) {
+        return response.headers().firstValue(name).orElse(null);
+    }
+
+    public static String charset(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        for (String part : contentType.split(";")) {
+            String param = part.trim();
+            if (param.regionMatches(true, 0, "charset=", 0, 8)) {
+                String value = param.substring(8).trim().replace("\"", "").replace("'", "");
+                try {
+                    return Charset.isSupported(value) ? value : null;
+                } catch (IllegalCharsetNameException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Срок кеша DNS, с которым запущена JVM: java.security или -Dsun.net.inetaddr.ttl
+    private static String dnsCacheTtl() {
+        String ttl = Security.getProperty("networkaddress.cache.ttl");
+        if (ttl == null) {
+            ttl = System.getProperty("sun.net.inetaddr.ttl");
+        }
+        return ttl == null ? "по умолчанию" : ttl + " с";
+    }
+
+    public static void closeQuietly(HttpResponse<InputStream> response) {
+        try {
+            response.body().close();
+        } catch (IOException e) {
+            // Тело не нужно: ошибка закрытия не влияет на результат
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
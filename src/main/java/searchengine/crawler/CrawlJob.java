@@ -0,0 +1,154 @@
+package searchengine.crawler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Обход одного сайта: завершается, когда очередь опустела и все адреса завершены
+public class CrawlJob {
+    private static final Logger logger = LoggerFactory.getLogger(CrawlJob.class);
+
+    private final String name;
+    private final CrawlScheduler scheduler;
+    private final FetchStage fetchStage;
+    private final int maxConcurrentFetches;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    // Незавершённые адреса (в очереди и в работе): по ним учитываются новые входящие ссылки
+    // и из них состоит сохраняемая контрольная точка
+    private final Map<String, CrawlRequest> outstanding = new ConcurrentHashMap<>();
+    private volatile boolean cancelled = false;
+    private volatile boolean closed = false;
+
+    <T> CrawlJob(String name, CrawlScheduler scheduler, CrawlTaskHandler<T> handler, int maxConcurrentFetches) {
+        this.name = name;
+        this.scheduler = scheduler;
+        this.maxConcurrentFetches = Math.max(1, maxConcurrentFetches);
+        this.fetchStage = request -> {
+            T fetched = handler.fetch(request);
+            return fetched == null ? null : () -> handler.process(request, fetched);
+        };
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean enqueue(String url, int depth) {
+        return enqueue(url, depth, null);
+    }
+
+    public boolean enqueue(String url, int depth, Instant lastModified) {
+        if (cancelled || closed) {
+            return false;
+        }
+        pending.incrementAndGet();
+        CrawlRequest request = new CrawlRequest(this, url, depth, lastModified, scheduler.nextSequence());
+        outstanding.put(url, request);
+        scheduler.submit(request);
+        return true;
+    }
+
+    // Повторная ссылка на адрес в очереди поднимает его на своём уровне
+    public void addInlink(String url) {
+        CrawlRequest request = outstanding.get(url);
+        if (request != null) {
+            scheduler.addInlink(request);
+        }
+    }
+
+    // Новые адреса не принимаются, очередь снимается, загруженные страницы обрабатываются до конца
+    public void close(String reason) {
+        if (!closed) {
+            closed = true;
+            logger.info("🏁 Обход {} остановлен: {}", name, reason);
+        }
+    }
+
+    public boolean isClosed() {
+        return closed || cancelled;
+    }
+
+    public void cancel() {
+        if (!cancelled) {
+            cancelled = true;
+            logger.info("⛔ Обход {} отменён", name);
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public int getPending() {
+        return pending.get();
+    }
+
+    public void awaitCompletion() throws InterruptedException {
+        if (pending.get() == 0) {
+            // Ни одного адреса не поставлено: обход завершается тем же путём, что и после последнего адреса
+            finish();
+        }
+        try {
+            completion.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // Ждёт, пока все адреса, в том числе отложенные до записи в конвейере, не будут завершены.
+    // Прерывание не прекращает ожидание: после возврата у сайта не остаётся работы в конвейере
+    public void awaitDrained() {
+        if (pending.get() == 0) {
+            finish();
+        }
+        completion.join();
+    }
+
+    public List<CrawlRequest> snapshotFrontier() {
+        return new ArrayList<>(outstanding.values());
+    }
+
+    int getMaxConcurrentFetches() {
+        return maxConcurrentFetches;
+    }
+
+    ProcessStage fetch(CrawlRequest request) throws Exception {
+        return fetchStage.fetch(request);
+    }
+
+    void taskDone(CrawlRequest request) {
+        // После отмены незавершённые адреса сохраняются: по ним обход будет возобновлён
+        if (!cancelled) {
+            outstanding.remove(request.getUrl(), request);
+        }
+        if (pending.decrementAndGet() == 0) {
+            finish();
+        }
+    }
+
+    // Планировщик узнаёт о завершении ровно один раз
+    private void finish() {
+        if (completion.complete(null)) {
+            scheduler.jobFinished(this);
+        }
+    }
+
+    @FunctionalInterface
+    interface FetchStage {
+        ProcessStage fetch(CrawlRequest request) throws Exception;
+    }
+
+    @FunctionalInterface
+    interface ProcessStage {
+        void process() throws Exception;
+    }
+}
@@ -0,0 +1,66 @@
+package searchengine.crawler;
+
+import lombok.Getter;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Адрес в очереди хоста: сначала мелкие уровни, затем больше входящих ссылок, затем порядок постановки
+@Getter
+public class CrawlRequest {
+    private final CrawlJob job;
+    private final String url;
+    private final String host;
+    private final int depth;
+    // lastmod из карты сайта, если адрес пришёл оттуда
+    private final Instant lastModified;
+    private final long sequence;
+    // Меняется только под блокировкой очереди хоста, вместе с перестановкой в очереди
+    private int inlinks = 1;
+    private volatile boolean completionDeferred = false;
+
+    static final Comparator<CrawlRequest> PRIORITY = Comparator
+            .comparingInt(CrawlRequest::getDepth)
+            .thenComparing(Comparator.comparingInt(CrawlRequest::getInlinks).reversed())
+            .thenComparingLong(CrawlRequest::getSequence);
+
+    CrawlRequest(CrawlJob job, String url, int depth, Instant lastModified, long sequence) {
+        this.job = job;
+        this.url = url;
+        this.host = hostOf(url);
+        this.depth = depth;
+        this.lastModified = lastModified;
+        this.sequence = sequence;
+    }
+
+    // Адрес завершит не планировщик, а возвращённое действие — когда страница пройдёт конвейер.
+    // Повторные вызовы действия игнорируются
+    public Runnable deferCompletion() {
+        completionDeferred = true;
+        AtomicBoolean done = new AtomicBoolean();
+        return () -> {
+            if (done.compareAndSet(false, true)) {
+                job.taskDone(this);
+            }
+        };
+    }
+
+    boolean isCompletionDeferred() {
+        return completionDeferred;
+    }
+
+    void addInlink() {
+        inlinks++;
+    }
+
+    public static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host != null ? host.toLowerCase() : url;
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package searchengine.crawler;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlSettings;
+import searchengine.indexing.PipelineStage;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Общий планировщик обхода: очередь и окно вежливости на каждый хост.
+// Адрес уходит на загрузку только после окна вежливости, поэтому потоки загрузки не спят в Thread.sleep
+@Component
+public class CrawlScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(CrawlScheduler.class);
+
+    private final CrawlSettings settings;
+    private final Map<String, HostQueue> hosts = new ConcurrentHashMap<>();
+    private final Set<CrawlJob> activeJobs = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService dispatcher;
+    private final ExecutorService fetchExecutor;
+    private final PipelineStage parseStage;
+    private final Semaphore fetchPermits;
+    private final LongAdder fetched = new LongAdder();
+    private final AtomicInteger fetchesInFlight = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+
+    public CrawlScheduler(CrawlSettings settings) {
+        this.settings = settings;
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(namedThreads("crawl-dispatcher"));
+        this.fetchExecutor = settings.getFetchMode() == CrawlSettings.FetchMode.VIRTUAL
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("crawl-fetch-", 0).factory())
+                : Executors.newFixedThreadPool(Math.max(1, settings.getWorkerThreads()), namedThreads("crawl-fetch"));
+        this.fetchPermits = new Semaphore(Math.max(1, settings.getMaxConcurrentFetches()));
+
+        int processingThreads = Math.max(1, settings.getProcessingThreads());
+        this.parseStage = new PipelineStage("crawl-parse", processingThreads, settings.getProcessingQueueCapacity());
+
+        logger.info("🧭 Планировщик обхода: режим загрузки {}, лимит загрузок {}, потоков разбора {}",
+                settings.getFetchMode(), settings.getMaxConcurrentFetches(), processingThreads);
+    }
+
+    public <T> CrawlJob newJob(String name, CrawlTaskHandler<T> handler) {
+        return newJob(name, handler, settings.getMaxConcurrentFetchesPerSite());
+    }
+
+    public <T> CrawlJob newJob(String name, CrawlTaskHandler<T> handler, int maxConcurrentFetches) {
+        CrawlJob job = new CrawlJob(name, this, handler, maxConcurrentFetches);
+        activeJobs.add(job);
+        return job;
+    }
+
+    // Crawl-delay из robots.txt, но не меньше настроенного минимума
+    public void setCrawlDelay(String host, long crawlDelayMs) {
+        while (true) {
+            HostQueue queue = hosts.computeIfAbsent(host, HostQueue::new);
+            synchronized (queue) {
+                if (!queue.evicted) {
+                    queue.crawlDelayMs = crawlDelayMs;
+                    return;
+                }
+            }
+        }
+    }
+
+    public void cancelAll() {
+        activeJobs.forEach(CrawlJob::cancel);
+        // Адреса отменённых обходов снимаем сразу, не дожидаясь окна вежливости их хостов
+        List<CrawlRequest> dropped = new ArrayList<>();
+        for (HostQueue host : hosts.values()) {
+            synchronized (host) {
+                host.queue.removeIf(request -> {
+                    if (request.getJob().isCancelled()) {
+                        dropped.add(request);
+                        return true;
+                    }
+                    return false;
+                });
+            }
+        }
+        // Завершение адреса может закончить обход, поэтому вне блокировок хостов
+        dropped.forEach(request -> request.getJob().taskDone(request));
+    }
+
+    long nextSequence() {
+        return sequence.incrementAndGet();
+    }
+
+    // Переставляет адрес в очереди хоста; уже выданный на загрузку адрес не трогаем
+    void addInlink(CrawlRequest request) {
+        HostQueue host = hosts.get(request.getHost());
+        if (host == null) {
+            return;
+        }
+        synchronized (host) {
+            if (host.queue.remove(request)) {
+                request.addInlink();
+                host.queue.add(request);
+            }
+        }
+    }
+
+    public Map<String, Object> getFetchMetrics() {
+        int frontier = 0;
+        for (HostQueue host : hosts.values()) {
+            synchronized (host) {
+                frontier += host.queue.size();
+            }
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("mode", settings.getFetchMode());
+        metrics.put("maxConcurrent", settings.getMaxConcurrentFetches());
+        metrics.put("active", fetchesInFlight.get());
+        metrics.put("queueSize", frontier);
+        metrics.put("hosts", hosts.size());
+        metrics.put("jobs", activeJobs.size());
+        metrics.put("processed", fetched.sum());
+        return metrics;
+    }
+
+    public PipelineStage getParseStage() {
+        return parseStage;
+    }
+
+    void submit(CrawlRequest request) {
+        while (true) {
+            HostQueue host = hosts.computeIfAbsent(request.getHost(), HostQueue::new);
+            synchronized (host) {
+                // Очередь могли освободить между поиском и блокировкой — берём новую
+                if (host.evicted) {
+                    continue;
+                }
+                host.maxInFlight = Math.max(host.maxInFlight, request.getJob().getMaxConcurrentFetches());
+                host.jobs.add(request.getJob());
+                host.queue.add(request);
+                scheduleIfReady(host);
+                return;
+            }
+        }
+    }
+
+    void jobFinished(CrawlJob job) {
+        activeJobs.remove(job);
+        // Обход может завершиться под блокировкой другого хоста, поэтому очереди освобождаем отдельной задачей
+        try {
+            dispatcher.execute(() -> evictIdleHosts(job));
+        } catch (RejectedExecutionException e) {
+            // Планировщик остановлен: очереди уже не нужны
+        }
+    }
+
+    // Освобождает очереди хостов, которыми пользовался только завершённый обход
+    private void evictIdleHosts(CrawlJob job) {
+        for (HostQueue host : hosts.values()) {
+            synchronized (host) {
+                if (host.jobs.remove(job) && host.jobs.isEmpty() && host.queue.isEmpty()
+                        && host.inFlight == 0 && !host.scheduled) {
+                    host.evicted = true;
+                    hosts.remove(host.host, host);
+                }
+            }
+        }
+    }
+
+    // Вызывается под блокировкой хоста
+    private void scheduleIfReady(HostQueue host) {
+        if (host.inFlight >= host.maxInFlight || host.scheduled || host.queue.isEmpty()) {
+            return;
+        }
+        host.scheduled = true;
+        long delay = Math.max(0, host.readyAt - System.nanoTime());
+        dispatcher.schedule(() -> dispatch(host), delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void dispatch(HostQueue host) {
+        CrawlRequest request;
+        synchronized (host) {
+            host.scheduled = false;
+            request = host.queue.pollFirst();
+            // Адреса отменённых и закрытых обходов снимаем сразу, не расходуя окно вежливости
+            while (request != null && request.getJob().isClosed()) {
+                request.getJob().taskDone(request);
+                request = host.queue.pollFirst();
+            }
+            if (request == null) {
+                return;
+            }
+            host.inFlight++;
+            host.readyAt = System.nanoTime() + politenessDelayNanos(host);
+            scheduleIfReady(host);
+        }
+        CrawlRequest next = request;
+        fetchExecutor.execute(() -> fetch(host, next));
+    }
+
+    private void fetch(HostQueue host, CrawlRequest request) {
+        CrawlJob job = request.getJob();
+        CrawlJob.ProcessStage processStage = null;
+        boolean acquired = false;
+        try {
+            if (!job.isClosed()) {
+                fetchPermits.acquire();
+                acquired = true;
+                fetchesInFlight.incrementAndGet();
+                processStage = job.fetch(request);
+                fetched.increment();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("❌ Ошибка загрузки {}: {}", request.getUrl(), e.getMessage(), e);
+        } finally {
+            if (acquired) {
+                fetchesInFlight.decrementAndGet();
+                fetchPermits.release();
+            }
+            releaseHost(host);
+        }
+
+        if (processStage == null || job.isCancelled()) {
+            job.taskDone(request);
+            return;
+        }
+        CrawlJob.ProcessStage stage = processStage;
+        try {
+            parseStage.submit(() -> process(request, stage), () -> job.taskDone(request));
+        } catch (RejectedExecutionException e) {
+            job.taskDone(request);
+        }
+    }
+
+    private void process(CrawlRequest request, CrawlJob.ProcessStage stage) {
+        try {
+            if (!request.getJob().isCancelled()) {
+                stage.process();
+            }
+        } catch (Exception e) {
+            logger.error("❌ Ошибка обработки {}: {}", request.getUrl(), e.getMessage(), e);
+        } finally {
+            // Обработчик мог передать страницу дальше по конвейеру: тогда адрес завершит он
+            if (!request.isCompletionDeferred()) {
+                request.getJob().taskDone(request);
+            }
+        }
+    }
+
+    private void releaseHost(HostQueue host) {
+        synchronized (host) {
+            host.inFlight--;
+            // Окно вежливости отсчитываем и от окончания ответа, чтобы медленный хост не перегружать
+            host.readyAt = Math.max(host.readyAt, System.nanoTime() + politenessDelayNanos(host));
+            scheduleIfReady(host);
+        }
+    }
+
+    // Вызывается под блокировкой хоста
+    private long politenessDelayNanos(HostQueue host) {
+        long min = Math.max(settings.getPolitenessDelayMinMs(), host.crawlDelayMs);
+        long max = Math.max(min, settings.getPolitenessDelayMaxMs());
+        long delayMs = min == max ? min : ThreadLocalRandom.current().nextLong(min, max + 1);
+        return TimeUnit.MILLISECONDS.toNanos(delayMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cancelAll();
+        dispatcher.shutdownNow();
+        fetchExecutor.shutdownNow();
+        parseStage.shutdownNow();
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class HostQueue {
+        private final String host;
+        private final TreeSet<CrawlRequest> queue = new TreeSet<>(CrawlRequest.PRIORITY);
+        private long readyAt = System.nanoTime();
+        private int maxInFlight = 1;
+        private long crawlDelayMs;
+        private int inFlight;
+        private boolean scheduled;
+        // Обходы, ставившие адреса в очередь; пустая очередь без них удаляется
+        private final Set<CrawlJob> jobs = new HashSet<>();
+        private boolean evicted;
+
+        HostQueue(String host) {
+            this.host = host;
+        }
+    }
+}
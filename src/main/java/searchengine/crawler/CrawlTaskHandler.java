@@ -0,0 +1,10 @@
+package searchengine.crawler;
+
+// fetch выполняется в потоке загрузки, process — в стадии разбора с ограниченным пулом
+public interface CrawlTaskHandler<T> {
+
+    // null — обрабатывать нечего
+    T fetch(CrawlRequest request) throws Exception;
+
+    void process(CrawlRequest request, T fetched) throws Exception;
+}
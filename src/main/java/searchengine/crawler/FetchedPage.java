@@ -0,0 +1,52 @@
+package searchengine.crawler;
+
+import lombok.Getter;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+// Результат загрузки: код ответа, заголовки и, только для HTML, тело
+@Getter
+public class FetchedPage {
+    private final String url;
+    private final String finalUrl;  // адрес после перенаправлений: от него считаются относительные ссылки
+    private final int statusCode;
+    private final String contentType;
+    private final String etag;
+    private final String lastModified;
+    private final byte[] body;      // null для файлов, медиа и ответа 304
+    private final String charset;   // null — кодировку определит парсер по meta
+
+    public FetchedPage(String url, String finalUrl, int statusCode, String contentType, String etag,
+                       String lastModified, byte[] body, String charset) {
+        this.url = url;
+        this.finalUrl = finalUrl;
+        this.statusCode = statusCode;
+        this.contentType = contentType;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.body = body;
+        this.charset = charset;
+    }
+
+    public boolean isHtml() {
+        return body != null;
+    }
+
+    public boolean isNotModified() {
+        return statusCode == 304;
+    }
+
+    public boolean isRedirected() {
+        return !url.equals(finalUrl);
+    }
+
+    public Document parse() throws IOException {
+        if (body == null) {
+            throw new IOException("Нет HTML-тела для разбора: " + url);
+        }
+        return Jsoup.parse(new ByteArrayInputStream(body), charset, finalUrl);
+    }
+}
@@ -0,0 +1,14 @@
+package searchengine.crawler;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class KnownPage {
+    private final int id;
+    private final String path;
+    private final String etag;
+    private final String lastModified;
+    private final String contentHash;
+}
@@ -0,0 +1,59 @@
+package searchengine.crawler;
+
+import searchengine.repository.PageRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Сохранённые страницы сайта для инкрементального обхода: не встреченные при обходе считаются исчезнувшими
+public class KnownPages {
+    private final Map<String, KnownPage> pages = new ConcurrentHashMap<>();
+    private final Set<String> seen = ConcurrentHashMap.newKeySet();
+
+    public static KnownPages load(PageRepository pageRepository, int siteId) {
+        KnownPages knownPages = new KnownPages();
+        for (Object[] row : pageRepository.findValidatorsBySiteId(siteId)) {
+            KnownPage page = new KnownPage((Integer) row[0], (String) row[1],
+                    (String) row[2], (String) row[3], (String) row[4]);
+            knownPages.pages.put(page.getPath(), page);
+        }
+        return knownPages;
+    }
+
+    public KnownPage get(String path) {
+        return pages.get(path);
+    }
+
+    public void markSeen(String path) {
+        seen.add(path);
+    }
+
+    public List<String> seenPaths() {
+        return new ArrayList<>(seen);
+    }
+
+    public int size() {
+        return pages.size();
+    }
+
+    // Перепроверять имеет смысл только страницы, скачанные как HTML
+    public Collection<KnownPage> crawledPages() {
+        return pages.values().stream()
+                .filter(page -> page.getContentHash() != null)
+                .toList();
+    }
+
+    public List<KnownPage> unseenPages() {
+        List<KnownPage> unseen = new ArrayList<>();
+        for (KnownPage page : crawledPages()) {
+            if (!seen.contains(page.getPath())) {
+                unseen.add(page);
+            }
+        }
+        return unseen;
+    }
+}
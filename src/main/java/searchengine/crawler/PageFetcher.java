@@ -0,0 +1,129 @@
+package searchengine.crawler;
+
+import org.jsoup.HttpStatusException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlSettings;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+// Медиа запрашиваются через HEAD; тело читается только у HTML не больше лимита
+@Component
+public class PageFetcher {
+    private static final Logger logger = LoggerFactory.getLogger(PageFetcher.class);
+
+    private static final Pattern MEDIA_EXTENSION = Pattern.compile(
+            ".*\\.(jpe?g|png|gif|bmp|webp|svg|ico|tiff?|mp3|mp4|avi|mov|webm|wav|ogg|"
+                    + "pdf|docx?|xlsx?|pptx?|odt|zip|rar|7z|gz|tar|exe|dmg|iso)$",
+            Pattern.CASE_INSENSITIVE);
+
+    private final CrawlSettings settings;
+    private final CrawlHttpClient httpClient;
+
+    public PageFetcher(CrawlSettings settings, CrawlHttpClient httpClient) {
+        this.settings = settings;
+        this.httpClient = httpClient;
+    }
+
+    // Тело есть только у HTML; null — ответ больше лимита
+    public FetchedPage fetch(String url, Map<String, String> headers) throws IOException {
+        boolean media = isMediaUrl(url);
+        Map<String, String> requestHeaders = new HashMap<>(headers);
+        requestHeaders.put("Referer", "http://www.google.com");
+
+        HttpResponse<InputStream> response = httpClient.send(url, media ? "HEAD" : "GET",
+                requestHeaders, settings.getFetchTimeoutMs());
+        int statusCode = response.statusCode();
+        if (statusCode >= 400) {
+            CrawlHttpClient.closeQuietly(response);
+            throw new HttpStatusException("Ошибка HTTP при загрузке", statusCode, url);
+        }
+        String contentType = CrawlHttpClient.header(response, "Content-Type");
+        String etag = CrawlHttpClient.header(response, "ETag");
+        String lastModified = CrawlHttpClient.header(response, "Last-Modified");
+        // Клиент сам следует перенаправлениям: страница принадлежит адресу последнего ответа
+        String finalUrl = response.uri().toString();
+
+        if (media || statusCode == 304 || !isHtml(contentType)) {
+            CrawlHttpClient.closeQuietly(response);
+            return new FetchedPage(url, finalUrl, statusCode, contentType, etag, lastModified, null, null);
+        }
+
+        long maxBytes = settings.getMaxBodyBytes();
+        long declaredLength = contentLength(response);
+        if (declaredLength > maxBytes) {
+            CrawlHttpClient.closeQuietly(response);
+            logger.warn("⚠️ Страница {} больше лимита ({} байт по Content-Length). Пропускаем.", url, declaredLength);
+            return null;
+        }
+
+        // Лимит считается по распакованному телу: сжатая «бомба» тоже будет прервана
+        byte[] body = readLimited(CrawlHttpClient.body(response), maxBytes);
+        if (body == null) {
+            logger.warn("⚠️ Страница {} больше лимита ({} байт). Загрузка прервана.", url, maxBytes);
+            return null;
+        }
+        return new FetchedPage(url, finalUrl, statusCode, contentType, etag, lastModified, body,
+                CrawlHttpClient.charset(contentType));
+    }
+
+    public static boolean isMediaUrl(String url) {
+        int end = url.length();
+        int query = url.indexOf('?');
+        if (query >= 0) {
+            end = query;
+        }
+        int fragment = url.indexOf('#');
+        if (fragment >= 0 && fragment < end) {
+            end = fragment;
+        }
+        return MEDIA_EXTENSION.matcher(url.substring(0, end)).matches();
+    }
+
+    private static boolean isHtml(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.startsWith("text/html") || type.startsWith("application/xhtml+xml");
+    }
+
+    private static long contentLength(HttpResponse<InputStream> response) {
+        // Для сжатого ответа это размер на проводе, поэтому проверка лишь предварительная
+        String value = CrawlHttpClient.header(response, "Content-Length");
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Читает поток целиком, если он не длиннее лимита; иначе закрывает его и возвращает null
+    private static byte[] readLimited(InputStream in, long maxBytes) throws IOException {
+        try (in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+            byte[] buffer = new byte[8192];
+            long total = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                total += read;
+                if (total > maxBytes) {
+                    return null;
+                }
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
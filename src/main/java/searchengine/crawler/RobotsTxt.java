@@ -0,0 +1,166 @@
+package searchengine.crawler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+public class RobotsTxt {
+    private static final RobotsTxt ALLOW_ALL = new RobotsTxt(List.of(), null, List.of());
+
+    private final List<Rule> rules;
+    private final Long crawlDelayMs;
+    private final List<String> sitemaps;
+
+    private RobotsTxt(List<Rule> rules, Long crawlDelayMs, List<String> sitemaps) {
+        this.rules = rules;
+        this.crawlDelayMs = crawlDelayMs;
+        this.sitemaps = sitemaps;
+    }
+
+    public static RobotsTxt allowAll() {
+        return ALLOW_ALL;
+    }
+
+    // Берётся группа, чей User-agent входит в имя нашего агента, иначе группа «*»
+    public static RobotsTxt parse(String content, String agent) {
+        String agentLower = agent.toLowerCase(Locale.ROOT);
+        List<Rule> specificRules = new ArrayList<>();
+        List<Rule> wildcardRules = new ArrayList<>();
+        Long specificDelay = null;
+        Long wildcardDelay = null;
+        boolean specificFound = false;
+        List<String> sitemaps = new ArrayList<>();
+
+        boolean groupSpecific = false;
+        boolean groupWildcard = false;
+        boolean readingAgents = false;
+
+        for (String rawLine : content.split("\r?\n|\r")) {
+            int comment = rawLine.indexOf('#');
+            String line = (comment >= 0 ? rawLine.substring(0, comment) : rawLine).trim();
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+
+            switch (key) {
+                case "user-agent" -> {
+                    if (!readingAgents) {
+                        groupSpecific = false;
+                        groupWildcard = false;
+                        readingAgents = true;
+                    }
+                    String ua = value.toLowerCase(Locale.ROOT);
+                    if (ua.equals("*")) {
+                        groupWildcard = true;
+                    } else if (!ua.isEmpty() && agentLower.contains(ua)) {
+                        groupSpecific = true;
+                        specificFound = true;
+                    }
+                }
+                case "allow", "disallow" -> {
+                    readingAgents = false;
+                    // Пустой Disallow ничего не запрещает
+                    if (value.isEmpty()) {
+                        continue;
+                    }
+                    Rule rule = new Rule(key.equals("allow"), value);
+                    if (groupSpecific) {
+                        specificRules.add(rule);
+                    }
+                    if (groupWildcard) {
+                        wildcardRules.add(rule);
+                    }
+                }
+                case "crawl-delay" -> {
+                    readingAgents = false;
+                    Long delay = parseDelayMs(value);
+                    if (groupSpecific) {
+                        specificDelay = delay;
+                    }
+                    if (groupWildcard) {
+                        wildcardDelay = delay;
+                    }
+                }
+                case "sitemap" -> sitemaps.add(value);
+                default -> readingAgents = false;
+            }
+        }
+
+        return specificFound
+                ? new RobotsTxt(specificRules, specificDelay, sitemaps)
+                : new RobotsTxt(wildcardRules, wildcardDelay, sitemaps);
+    }
+
+    // Побеждает самое длинное правило, при равной длине — Allow
+    public boolean isAllowed(String path) {
+        if (path == null || path.isEmpty()) {
+            path = "/";
+        }
+        Rule best = null;
+        for (Rule rule : rules) {
+            if (rule.matches(path) && (best == null
+                    || rule.length() > best.length()
+                    || (rule.length() == best.length() && rule.allow))) {
+                best = rule;
+            }
+        }
+        return best == null || best.allow;
+    }
+
+    public Long getCrawlDelayMs() {
+        return crawlDelayMs;
+    }
+
+    public List<String> getSitemaps() {
+        return Collections.unmodifiableList(sitemaps);
+    }
+
+    private static Long parseDelayMs(String value) {
+        try {
+            return Math.round(Double.parseDouble(value) * 1000);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static class Rule {
+        private final boolean allow;
+        private final String path;
+        private final Pattern pattern; // null, если в правиле нет * и $
+
+        Rule(boolean allow, String path) {
+            this.allow = allow;
+            this.path = path;
+            this.pattern = path.indexOf('*') >= 0 || path.endsWith("$") ? compile(path) : null;
+        }
+
+        boolean matches(String candidate) {
+            return pattern == null ? candidate.startsWith(path) : pattern.matcher(candidate).lookingAt();
+        }
+
+        int length() {
+            return path.length();
+        }
+
+        private static Pattern compile(String path) {
+            boolean anchored = path.endsWith("$");
+            String body = anchored ? path.substring(0, path.length() - 1) : path;
+            StringBuilder regex = new StringBuilder();
+            for (String part : body.split("\\*", -1)) {
+                if (!regex.isEmpty()) {
+                    regex.append(".*");
+                }
+                regex.append(Pattern.quote(part));
+            }
+            if (anchored) {
+                regex.append('$');
+            }
+            return Pattern.compile(regex.toString());
+        }
+    }
+}
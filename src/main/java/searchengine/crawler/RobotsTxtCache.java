@@ -0,0 +1,91 @@
+package searchengine.crawler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlSettings;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Недоступный или отсутствующий robots.txt ничего не запрещает
+@Component
+public class RobotsTxtCache {
+    private static final Logger logger = LoggerFactory.getLogger(RobotsTxtCache.class);
+
+    private final CrawlSettings settings;
+    private final CrawlHttpClient httpClient;
+    private final Map<String, CachedRobots> cache = new ConcurrentHashMap<>();
+
+    public RobotsTxtCache(CrawlSettings settings, CrawlHttpClient httpClient) {
+        this.settings = settings;
+        this.httpClient = httpClient;
+    }
+
+    public RobotsTxt get(String url) {
+        String origin = originOf(url);
+        if (origin == null) {
+            return RobotsTxt.allowAll();
+        }
+        long now = System.currentTimeMillis();
+        CachedRobots cached = cache.get(origin);
+        if (cached != null && cached.expiresAt > now) {
+            return cached.robots;
+        }
+        RobotsTxt robots = fetch(origin);
+        cache.put(origin, new CachedRobots(robots, now + TimeUnit.MINUTES.toMillis(settings.getRobotsCacheMinutes())));
+        return robots;
+    }
+
+    private RobotsTxt fetch(String origin) {
+        String robotsUrl = origin + "/robots.txt";
+        try {
+            HttpResponse<InputStream> response = httpClient.send(robotsUrl, "GET", Map.of(),
+                    settings.getFetchTimeoutMs());
+            if (response.statusCode() >= 400) {
+                CrawlHttpClient.closeQuietly(response);
+                logger.info("🤖 robots.txt не найден ({}): {}", response.statusCode(), robotsUrl);
+                return RobotsTxt.allowAll();
+            }
+            String content;
+            try (InputStream body = CrawlHttpClient.body(response)) {
+                content = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            RobotsTxt robots = RobotsTxt.parse(content, settings.getRobotsAgent());
+            logger.info("🤖 robots.txt {}: crawl-delay {} мс, карт сайта {}", robotsUrl,
+                    robots.getCrawlDelayMs(), robots.getSitemaps().size());
+            return robots;
+        } catch (IOException e) {
+            logger.warn("⚠️ Не удалось загрузить {}: {}", robotsUrl, e.getMessage());
+            return RobotsTxt.allowAll();
+        }
+    }
+
+    static String originOf(String url) {
+        try {
+            URI uri = URI.create(url);
+            if (uri.getScheme() == null || uri.getHost() == null) {
+                return null;
+            }
+            return uri.getScheme() + "://" + uri.getRawAuthority();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static class CachedRobots {
+        private final RobotsTxt robots;
+        private final long expiresAt;
+
+        CachedRobots(RobotsTxt robots, long expiresAt) {
+            this.robots = robots;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
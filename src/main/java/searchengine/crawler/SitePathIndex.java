@@ -0,0 +1,109 @@
+package searchengine.crawler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.repository.PageRepository;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+// Отпечатки путей страниц сайта: проверка «страница уже есть» без запросов к базе
+@Component
+public class SitePathIndex {
+    private static final Logger logger = LoggerFactory.getLogger(SitePathIndex.class);
+
+    private final PageRepository pageRepository;
+    private final Map<Integer, PathSet> sites = new ConcurrentHashMap<>();
+
+    public SitePathIndex(PageRepository pageRepository) {
+        this.pageRepository = pageRepository;
+    }
+
+    // Пути поколения, в которое пишет обход
+    @Transactional(readOnly = true)
+    public void load(int siteId, int generation) {
+        PathSet paths = new PathSet();
+        try (Stream<String> stream = pageRepository.streamPaths(siteId, generation)) {
+            stream.forEach(path -> paths.add(VisitedUrlSet.fingerprint(path)));
+        }
+        sites.put(siteId, paths);
+        logger.info("📚 Загружено путей сайта {}: {}, память {} КБ", siteId, paths.size(), paths.memoryBytes() / 1024);
+    }
+
+    public boolean contains(int siteId, String path) {
+        PathSet paths = sites.get(siteId);
+        return paths != null && paths.contains(VisitedUrlSet.fingerprint(path));
+    }
+
+    public void add(int siteId, String path) {
+        sites.computeIfAbsent(siteId, id -> new PathSet()).add(VisitedUrlSet.fingerprint(path));
+    }
+
+    public void evict(int siteId) {
+        sites.remove(siteId);
+    }
+
+    private static class PathSet {
+        private long[] table = new long[1024];
+        private int size;
+
+        synchronized boolean add(long fingerprint) {
+            if ((size + 1) * 10L > table.length * 6L) {
+                resize();
+            }
+            if (insert(table, fingerprint)) {
+                size++;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized boolean contains(long fingerprint) {
+            int mask = table.length - 1;
+            for (int i = slot(fingerprint, mask); table[i] != 0; i = (i + 1) & mask) {
+                if (table[i] == fingerprint) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized long memoryBytes() {
+            return (long) table.length * Long.BYTES;
+        }
+
+        private void resize() {
+            long[] grown = new long[table.length * 2];
+            for (long fingerprint : table) {
+                if (fingerprint != 0) {
+                    insert(grown, fingerprint);
+                }
+            }
+            table = grown;
+        }
+
+        private static boolean insert(long[] table, long fingerprint) {
+            int mask = table.length - 1;
+            int i = slot(fingerprint, mask);
+            while (table[i] != 0) {
+                if (table[i] == fingerprint) {
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            table[i] = fingerprint;
+            return true;
+        }
+
+        private static int slot(long fingerprint, int mask) {
+            return (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+        }
+    }
+}
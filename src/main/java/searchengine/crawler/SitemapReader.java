@@ -0,0 +1,168 @@
+package searchengine.crawler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlSettings;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+// Потоковое (StAX) чтение sitemap.xml и индексов карт сайта
+@Component
+public class SitemapReader {
+    private static final Logger logger = LoggerFactory.getLogger(SitemapReader.class);
+
+    private final CrawlSettings settings;
+    private final CrawlHttpClient httpClient;
+    private final XMLInputFactory xmlInputFactory;
+
+    public SitemapReader(CrawlSettings settings, CrawlHttpClient httpClient) {
+        this.settings = settings;
+        this.httpClient = httpClient;
+        this.xmlInputFactory = XMLInputFactory.newFactory();
+        // Внешние сущности и DTD в картах сайта не нужны и небезопасны
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    @FunctionalInterface
+    public interface SitemapUrlConsumer {
+        // false — прекратить чтение
+        boolean accept(String url, Instant lastModified);
+    }
+
+    public int read(Iterable<String> sitemapUrls, SitemapUrlConsumer consumer) {
+        Deque<String> queue = new ArrayDeque<>();
+        sitemapUrls.forEach(queue::add);
+        Set<String> seenSitemaps = new HashSet<>();
+        int[] accepted = {0};
+        int maxUrls = settings.getSitemapMaxUrls();
+
+        while (!queue.isEmpty() && accepted[0] < maxUrls) {
+            String sitemapUrl = queue.poll();
+            if (!seenSitemaps.add(sitemapUrl) || seenSitemaps.size() > settings.getSitemapMaxFiles()) {
+                continue;
+            }
+            try (InputStream in = open(sitemapUrl)) {
+                if (in == null) {
+                    continue;
+                }
+                parse(in, queue::add, (url, lastModified) -> {
+                    if (accepted[0] >= maxUrls || !consumer.accept(url, lastModified)) {
+                        return false;
+                    }
+                    accepted[0]++;
+                    return true;
+                });
+            } catch (IOException | XMLStreamException e) {
+                logger.warn("⚠️ Ошибка чтения карты сайта {}: {}", sitemapUrl, e.getMessage());
+            }
+        }
+        logger.info("🗺️ Из карт сайта получено адресов: {}", accepted[0]);
+        return accepted[0];
+    }
+
+    private void parse(InputStream in, java.util.function.Consumer<String> nestedSitemaps,
+                       SitemapUrlConsumer consumer) throws XMLStreamException {
+        XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(in);
+        try {
+            boolean inSitemap = false;
+            boolean inUrl = false;
+            String loc = null;
+            String lastmod = null;
+            StringBuilder text = new StringBuilder();
+
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    text.setLength(0);
+                    if (name.equals("sitemap")) {
+                        inSitemap = true;
+                        loc = null;
+                    } else if (name.equals("url")) {
+                        inUrl = true;
+                        loc = null;
+                        lastmod = null;
+                    }
+                } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                    text.append(reader.getText());
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = reader.getLocalName();
+                    switch (name) {
+                        case "loc" -> loc = text.toString().trim();
+                        case "lastmod" -> lastmod = text.toString().trim();
+                        case "sitemap" -> {
+                            if (inSitemap && loc != null && !loc.isEmpty()) {
+                                nestedSitemaps.accept(loc);
+                            }
+                            inSitemap = false;
+                        }
+                        case "url" -> {
+                            if (inUrl && loc != null && !loc.isEmpty()
+                                    && !consumer.accept(loc, parseLastModified(lastmod))) {
+                                return;
+                            }
+                            inUrl = false;
+                        }
+                        default -> {
+                        }
+                    }
+                    text.setLength(0);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private InputStream open(String sitemapUrl) throws IOException {
+        HttpResponse<InputStream> response = httpClient.send(sitemapUrl, "GET", Map.of(), 30000);
+        if (response.statusCode() >= 400) {
+            CrawlHttpClient.closeQuietly(response);
+            logger.info("🗺️ Карта сайта недоступна ({}): {}", response.statusCode(), sitemapUrl);
+            return null;
+        }
+        InputStream body = new BufferedInputStream(CrawlHttpClient.body(response));
+        // .xml.gz без Content-Encoding приходит сжатым: распознаём по сигнатуре gzip
+        body.mark(2);
+        int b1 = body.read();
+        int b2 = body.read();
+        body.reset();
+        return b1 == 0x1f && b2 == 0x8b ? new GZIPInputStream(body) : body;
+    }
+
+    static Instant parseLastModified(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return OffsetDateTime.parse(value).toInstant();
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDate.parse(value.length() > 10 ? value.substring(0, 10) : value)
+                        .atStartOfDay(ZoneOffset.UTC).toInstant();
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package searchengine.crawler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Посещённые адреса обхода с фиксированным объёмом памяти: отпечатки в таблице с открытой адресацией.
+// Заполненная таблица переходит на фильтр Блума, а без него считает новые адреса посещёнными
+public class VisitedUrlSet {
+    private static final Logger logger = LoggerFactory.getLogger(VisitedUrlSet.class);
+
+    private static final long EMPTY = 0L;
+    private static final double MAX_LOAD_FACTOR = 0.75;
+    private static final int BLOOM_HASHES = 7;
+
+    private final AtomicLongArray table;
+    private final int mask;
+    private final int maxEntries;
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final AtomicLongArray bloom;
+    private final long bloomMask;
+    private final AtomicInteger bloomInserts = new AtomicInteger();
+    private volatile boolean overflowReported = false;
+
+    // bloomFilterBytes 0 — без фильтра Блума
+    public VisitedUrlSet(long maxTableBytes, long bloomFilterBytes) {
+        int capacity = (int) Math.min(1 << 30, Long.highestOneBit(Math.max(1024, maxTableBytes / Long.BYTES)));
+        this.table = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        this.maxEntries = (int) (capacity * MAX_LOAD_FACTOR);
+
+        if (bloomFilterBytes > 0) {
+            int words = (int) Math.min(1 << 30, Long.highestOneBit(Math.max(1, bloomFilterBytes / Long.BYTES)));
+            this.bloom = new AtomicLongArray(words);
+            this.bloomMask = (long) words * Long.SIZE - 1;
+        } else {
+            this.bloom = null;
+            this.bloomMask = 0;
+        }
+    }
+
+    // true — адрес встречен впервые
+    public boolean add(CharSequence url) {
+        return addFingerprint(fingerprint(url));
+    }
+
+    public boolean contains(CharSequence url) {
+        long fingerprint = fingerprint(url);
+        int index = (int) mix(fingerprint) & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            long current = table.get(index);
+            if (current == fingerprint) {
+                return true;
+            }
+            if (current == EMPTY) {
+                break;
+            }
+            index = (index + 1) & mask;
+        }
+        return bloom != null && bloomContains(fingerprint);
+    }
+
+    public int size() {
+        return size.get() + bloomInserts.get();
+    }
+
+    public long memoryBytes() {
+        long bytes = (long) table.length() * Long.BYTES;
+        if (bloom != null) {
+            bytes += (long) bloom.length() * Long.BYTES;
+        }
+        return bytes;
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        // Таблица может пополняться во время записи: число записей фиксируем заранее,
+        // лишние пропускаем, а недостающие добиваем пустыми отпечатками
+        int declared = size.get();
+        out.writeInt(declared);
+        int written = 0;
+        for (int i = 0; i < table.length() && written < declared; i++) {
+            long fingerprint = table.get(i);
+            if (fingerprint != EMPTY) {
+                out.writeLong(fingerprint);
+                written++;
+            }
+        }
+        for (; written < declared; written++) {
+            out.writeLong(EMPTY);
+        }
+        out.writeInt(bloom != null ? bloom.length() : 0);
+        if (bloom != null) {
+            for (int i = 0; i < bloom.length(); i++) {
+                out.writeLong(bloom.get(i));
+            }
+            out.writeInt(bloomInserts.get());
+        }
+    }
+
+    // Фильтр Блума другого размера отбрасывается
+    public void readFrom(DataInput in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            long fingerprint = in.readLong();
+            if (fingerprint != EMPTY) {
+                addFingerprint(fingerprint);
+            }
+        }
+        int bloomWords = in.readInt();
+        if (bloomWords > 0) {
+            boolean sameSize = bloom != null && bloom.length() == bloomWords;
+            for (int i = 0; i < bloomWords; i++) {
+                long word = in.readLong();
+                if (sameSize) {
+                    bloom.set(i, word);
+                }
+            }
+            int inserts = in.readInt();
+            if (sameSize) {
+                bloomInserts.set(inserts);
+            }
+        }
+    }
+
+    private boolean addFingerprint(long fingerprint) {
+        int index = (int) mix(fingerprint) & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            long current = table.get(index);
+            if (current == fingerprint) {
+                return false;
+            }
+            if (current == EMPTY) {
+                if (size.get() >= maxEntries) {
+                    return addToOverflow(fingerprint);
+                }
+                if (table.compareAndSet(index, EMPTY, fingerprint)) {
+                    size.incrementAndGet();
+                    return true;
+                }
+                // Ячейку заняли параллельно: перепроверяем её же
+                probes--;
+                continue;
+            }
+            index = (index + 1) & mask;
+        }
+        return addToOverflow(fingerprint);
+    }
+
+    private boolean addToOverflow(long fingerprint) {
+        if (!overflowReported) {
+            overflowReported = true;
+            logger.warn("⚠️ Таблица посещённых адресов заполнена ({} записей){}", size.get(),
+                    bloom != null ? ", дальше используется фильтр Блума" : ", новые адреса больше не принимаются");
+        }
+        if (bloom == null) {
+            return false;
+        }
+        boolean added = false;
+        long h1 = fingerprint;
+        long h2 = mix(fingerprint) | 1;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            long bit = (h1 + i * h2) & bloomMask;
+            int word = (int) (bit >>> 6);
+            long bitMask = 1L << (bit & 63);
+            long previous = bloom.getAndAccumulate(word, bitMask, (a, b) -> a | b);
+            if ((previous & bitMask) == 0) {
+                added = true;
+            }
+        }
+        if (added) {
+            bloomInserts.incrementAndGet();
+        }
+        return added;
+    }
+
+    private boolean bloomContains(long fingerprint) {
+        long h1 = fingerprint;
+        long h2 = mix(fingerprint) | 1;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            long bit = (h1 + i * h2) & bloomMask;
+            if ((bloom.get((int) (bit >>> 6)) & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // FNV-1a по символам строки с финальным перемешиванием; 0 зарезервирован под пустую ячейку
+    static long fingerprint(CharSequence url) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash = mix(hash);
+        return hash == EMPTY ? 1L : hash;
+    }
+
+    // Финальный шаг MurmurHash3 (fmix64)
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,166 @@
+package searchengine.indexing;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.model.Site;
+import searchengine.repository.GenerationBulkRepository;
+import searchengine.repository.SiteRepository;
+import searchengine.services.MetricsSource;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Удаляет поколения страниц, по которым поиск больше не отвечает, порциями по транзакции
+@Component
+public class GenerationCollector implements MetricsSource {
+    private static final Logger logger = LoggerFactory.getLogger(GenerationCollector.class);
+    private static final int CHUNK_SIZE = 500;
+
+    private final GenerationBulkRepository generationBulkRepository;
+    private final SiteRepository siteRepository;
+    private final InvertedIndex invertedIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor;
+    // Последняя поставленная сборка по каждому сайту: новый обход сайта ждёт её окончания
+    private final Map<Integer, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+
+    private final LongAdder generations = new LongAdder();
+    private final LongAdder pagesDeleted = new LongAdder();
+    private final AtomicLong running = new AtomicLong();
+    private volatile String lastError;
+
+    public GenerationCollector(GenerationBulkRepository generationBulkRepository, SiteRepository siteRepository,
+                               InvertedIndex invertedIndex, PlatformTransactionManager transactionManager) {
+        this.generationBulkRepository = generationBulkRepository;
+        this.siteRepository = siteRepository;
+        this.invertedIndex = invertedIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "generation-gc");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public CompletableFuture<Void> collect(int siteId, int generation) {
+        return pending.compute(siteId, (id, previous) -> CompletableFuture.runAsync(
+                () -> collectNow(siteId, generation), executor));
+    }
+
+    // Новый обход сайта начинается только после удаления его старых поколений
+    public void await(int siteId) {
+        CompletableFuture<Void> future = pending.get(siteId);
+        if (future != null) {
+            // Ошибка прошлой сборки уже записана в lastError и новый обход не останавливает
+            future.exceptionally(e -> null).join();
+        }
+    }
+
+    public CompletableFuture<Void> collectUnusedLemmas(int siteId) {
+        return pending.compute(siteId, (id, previous) -> CompletableFuture.runAsync(() -> {
+            try {
+                int lemmas = generationBulkRepository.deleteUnusedLemmas(siteId);
+                logger.info("🧹 Удалено неиспользуемых лемм сайта {}: {}", siteId, lemmas);
+            } catch (RuntimeException e) {
+                lastError = e.getMessage();
+                logger.error("❌ Ошибка удаления лемм сайта {}: {}", siteId, e.getMessage(), e);
+            }
+        }, executor));
+    }
+
+    // Недостроенное поколение прерванного обхода, который не будут продолжать
+    public void discardBuild(Site site) {
+        Integer build = site.getBuildGeneration();
+        if (build == null) {
+            return;
+        }
+        logger.info("🗑️ Недостроенное поколение {} сайта {} удаляется", build, site.getUrl());
+        try {
+            collect(site.getId(), build).join();
+        } catch (CompletionException e) {
+            // Номер поколения остаётся занятым: следующая сборка с тем же номером подхватила бы оставшиеся страницы
+            throw new IllegalStateException("Не удалось удалить недостроенное поколение " + build
+                    + " сайта " + site.getUrl() + ": " + e.getCause().getMessage(), e.getCause());
+        }
+        site.setBuildGeneration(null);
+        siteRepository.save(site);
+    }
+
+    // Переключение поколения — одно обновление строки site: поиск видит либо старые страницы, либо новые.
+    // Сохраняет и остальные изменения сайта; прежнее поколение затем удаляется в фоне
+    public void switchGeneration(Site site) {
+        Integer built = site.getBuildGeneration();
+        int previous = site.getGeneration();
+        if (built != null) {
+            site.setGeneration(built);
+            site.setBuildGeneration(null);
+        }
+        siteRepository.save(site);
+        if (built != null) {
+            invertedIndex.setLiveGeneration(site.getId(), built);
+            logger.info("🔀 Поиск по сайту {} переключён на поколение {}", site.getUrl(), built);
+            collect(site.getId(), previous);
+        }
+    }
+
+    private void collectNow(int siteId, int generation) {
+        running.incrementAndGet();
+        long start = System.currentTimeMillis();
+        int deleted = 0;
+        try {
+            while (true) {
+                List<Integer> pageIds = generationBulkRepository.findPageIds(siteId, generation, CHUNK_SIZE);
+                if (pageIds.isEmpty()) {
+                    break;
+                }
+                Integer count = transactionTemplate.execute(status -> generationBulkRepository.deletePages(pageIds));
+                invertedIndex.dropPages(pageIds);
+                deleted += count == null ? 0 : count;
+                pagesDeleted.add(count == null ? 0 : count);
+            }
+            int lemmas = generationBulkRepository.deleteUnusedLemmas(siteId);
+            invertedIndex.compact(siteId);
+            generations.increment();
+            logger.info("🧹 Поколение {} сайта {} удалено: {} страниц, {} лемм за {} мс",
+                    generation, siteId, deleted, lemmas, System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            lastError = e.getMessage();
+            logger.error("❌ Ошибка удаления поколения {} сайта {}: {}", generation, siteId, e.getMessage(), e);
+            throw e;
+        } finally {
+            running.decrementAndGet();
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "generationGc";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("running", running.get());
+        metrics.put("generationsCollected", generations.sum());
+        metrics.put("pagesDeleted", pagesDeleted.sum());
+        metrics.put("lastError", lastError);
+        return metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,90 @@
+package searchengine.indexing;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlSettings;
+import searchengine.crawler.CrawlScheduler;
+import searchengine.services.MetricsSource;
+import searchengine.utils.TermPositions;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+// Лемматизация и запись в базу — последние стадии после загрузки и разбора в CrawlScheduler
+@Component
+public class IndexingPipeline implements MetricsSource {
+    private final CrawlScheduler crawlScheduler;
+    private final PipelineStage lemmatizeStage;
+    private final PipelineStage persistStage;
+
+    public IndexingPipeline(CrawlSettings settings, CrawlScheduler crawlScheduler) {
+        this.crawlScheduler = crawlScheduler;
+        this.lemmatizeStage = new PipelineStage("index-lemmatize",
+                settings.getLemmatizeThreads(), settings.getPipelineQueueCapacity());
+        this.persistStage = new PipelineStage("index-persist",
+                settings.getPersistThreads(), settings.getPipelineQueueCapacity());
+    }
+
+    // onDone вызывается ровно один раз: после записи, при ошибке или когда страница снята с остановленной стадии.
+    // RejectedExecutionException — конвейер остановлен, onDone уже вызван
+    public void submit(String text, Lemmatizer lemmatizer, Persister persister, Runnable onDone) {
+        try {
+            lemmatizeStage.submit(() -> {
+                Map<String, TermPositions> lemmas;
+                try {
+                    lemmas = lemmatizer.lemmatize(text);
+                } catch (Exception e) {
+                    onDone.run();
+                    throw e;
+                }
+                try {
+                    persistStage.submit(() -> {
+                        try {
+                            persister.persist(lemmas);
+                        } finally {
+                            onDone.run();
+                        }
+                    }, onDone);
+                } catch (RejectedExecutionException e) {
+                    onDone.run();
+                    throw e;
+                }
+            }, onDone);
+        } catch (RejectedExecutionException e) {
+            onDone.run();
+            throw e;
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "pipeline";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("fetch", crawlScheduler.getFetchMetrics());
+        metrics.put("parse", crawlScheduler.getParseStage().getMetrics());
+        metrics.put("lemmatize", lemmatizeStage.getMetrics());
+        metrics.put("persist", persistStage.getMetrics());
+        return metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lemmatizeStage.shutdownNow();
+        persistStage.shutdownNow();
+    }
+
+    @FunctionalInterface
+    public interface Lemmatizer {
+        Map<String, TermPositions> lemmatize(String text) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Persister {
+        void persist(Map<String, TermPositions> lemmas) throws Exception;
+    }
+}
@@ -0,0 +1,768 @@
+package searchengine.indexing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import searchengine.config.SearchSettings;
+import searchengine.model.Page;
+import searchengine.services.MetricsSource;
+import searchengine.utils.TermPositions;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Обратный индекс в памяти: лемма → страницы по возрастанию id, длины страниц для BM25.
+// Меняется только после фиксации транзакций, пишущих индексы в базу; пока не загружен, поиск идёт через базу.
+// Версия сайта растёт при каждом изменении его страниц — по ней устаревает кеш выдачи
+@Component
+public class InvertedIndex implements MetricsSource {
+    private static final Logger logger = LoggerFactory.getLogger(InvertedIndex.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SearchSettings settings;
+
+    // id леммы → список страниц
+    private final Map<Integer, PostingList> postings = new ConcurrentHashMap<>();
+    // лемма → (id сайта → id леммы): у каждого сайта свои строки lemma
+    private final Map<String, Map<Integer, Integer>> lemmaIds = new ConcurrentHashMap<>();
+    // id леммы → id сайта
+    private final Map<Integer, Integer> lemmaSites = new ConcurrentHashMap<>();
+    // id сайта → поколение, по которому отвечает поиск
+    private final Map<Integer, Integer> liveGenerations = new ConcurrentHashMap<>();
+    private final PageGenerations pages = new PageGenerations();
+    // id сайта → версия его страниц в индексе; общая версия растёт вместе с любой из них
+    private final Map<Integer, AtomicLong> siteVersions = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+
+    // Удаления, зафиксированные во время загрузки: прочитанные до них строки страниц и сайтов
+    // уже устарели, а актуальные версии страниц приходят через addPage
+    private final Object loadLock = new Object();
+    private boolean loading;
+    private final Set<Integer> removedPages = new HashSet<>();
+    private final Set<Integer> removedSites = new HashSet<>();
+
+    private volatile boolean ready;
+    private volatile long loadMillis;
+    private volatile String lastError;
+
+    public InvertedIndex(DataSource dataSource, SearchSettings settings) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        // Драйвер MySQL отдаёт строки потоком только при таком размере выборки
+        this.jdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+        this.settings = settings;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadInBackground() {
+        if (!settings.isInMemoryIndex()) {
+            logger.info("Обратный индекс в памяти отключён, поиск идёт через базу.");
+            return;
+        }
+        Thread loader = new Thread(this::load, "inverted-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    void load() {
+        long start = System.currentTimeMillis();
+        synchronized (loadLock) {
+            loading = true;
+        }
+        try {
+            jdbcTemplate.query("SELECT id, generation FROM site",
+                    rs -> { liveGenerations.put(rs.getInt(1), rs.getInt(2)); });
+            // Как и при индексации, в число и длины страниц для BM25 входят только страницы с индексами:
+            // изображения, файлы и страницы с ошибками не учитываются
+            jdbcTemplate.query("SELECT p.id, p.site_id, p.generation FROM page p"
+                            + " WHERE EXISTS (SELECT 1 FROM `index` i WHERE i.page_id = p.id)", rs -> {
+                int pageId = rs.getInt(1);
+                int siteId = rs.getInt(2);
+                synchronized (loadLock) {
+                    if (!removedPages.contains(pageId) && !removedSites.contains(siteId)) {
+                        pages.set(pageId, siteId, rs.getInt(3));
+                    }
+                }
+            });
+            Map<Integer, Integer> loadedLemmaSites = new HashMap<>();
+            jdbcTemplate.query("SELECT id, site_id, lemma FROM lemma", rs -> {
+                int lemmaId = rs.getInt(1);
+                int siteId = rs.getInt(2);
+                loadedLemmaSites.put(lemmaId, siteId);
+                synchronized (loadLock) {
+                    if (!removedSites.contains(siteId)) {
+                        registerLemma(lemmaId, siteId, rs.getString(3));
+                    }
+                }
+            });
+
+            // Строки копятся по леммам как пары (страница, rank) и сортируются в конце
+            Map<Integer, RowBuffer> rows = new HashMap<>();
+            long[] total = {0};
+            // Длина страницы — сумма rank её лемм
+            int[][] lengths = {new int[0]};
+            jdbcTemplate.query("SELECT lemma_id, page_id, `rank` FROM `index`", rs -> {
+                int pageId = rs.getInt(2);
+                float rank = rs.getFloat(3);
+                rows.computeIfAbsent(rs.getInt(1), id -> new RowBuffer()).add(pack(pageId, rank));
+                if (pageId >= lengths[0].length) {
+                    lengths[0] = Arrays.copyOf(lengths[0], Math.max(pageId + 1, lengths[0].length * 3 / 2 + 16));
+                }
+                lengths[0][pageId] += Math.round(rank);
+                total[0]++;
+            });
+            synchronized (loadLock) {
+                for (int pageId = 0; pageId < lengths[0].length; pageId++) {
+                    if (lengths[0][pageId] > 0 && !removedPages.contains(pageId)) {
+                        pages.setLengthIfAbsent(pageId, lengths[0][pageId]);
+                    }
+                }
+            }
+            lengths[0] = null;
+            for (Map.Entry<Integer, RowBuffer> entry : rows.entrySet()) {
+                RowBuffer buffer = entry.getValue();
+                Arrays.sort(buffer.packed, 0, buffer.size);
+                int[] pageIds = new int[buffer.size];
+                float[] ranks = new float[buffer.size];
+                for (int i = 0; i < buffer.size; i++) {
+                    pageIds[i] = (int) (buffer.packed[i] >>> 32);
+                    ranks[i] = Float.intBitsToFloat((int) buffer.packed[i]);
+                }
+                buffer.packed = null;
+                // Индексы, записанные во время загрузки, уже в списке и не перезаписываются.
+                // Страницы, удалённые во время загрузки, пропускаются: их новые индексы добавил addPage
+                synchronized (loadLock) {
+                    Integer siteId = loadedLemmaSites.get(entry.getKey());
+                    if (siteId == null || !removedSites.contains(siteId)) {
+                        postings.computeIfAbsent(entry.getKey(), id -> new PostingList())
+                                .merge(pageIds, ranks, removedPages);
+                    }
+                }
+            }
+            loadMillis = System.currentTimeMillis() - start;
+            ready = true;
+            // Поиск переходит с базы на индекс в памяти: прежние ответы пересчитываются
+            liveGenerations.keySet().forEach(this::bumpVersion);
+            version.incrementAndGet();
+            logger.info("📚 Обратный индекс загружен за {} мс: {} лемм, {} строк", loadMillis, postings.size(), total[0]);
+        } catch (RuntimeException e) {
+            lastError = e.getMessage();
+            logger.error("❌ Ошибка загрузки обратного индекса, поиск пойдёт через базу: {}", e.getMessage(), e);
+        } finally {
+            synchronized (loadLock) {
+                loading = false;
+                removedPages.clear();
+                removedSites.clear();
+            }
+        }
+    }
+
+    // Индексы страницы попадают в списки только после фиксации текущей транзакции
+    public void addPage(Page page, Map<String, Integer> lemmaIds, Map<String, TermPositions> lemmas) {
+        addPage(page.getId(), page.getSite().getId(), page.getGeneration(), lemmaIds, lemmas);
+    }
+
+    public void addPage(int pageId, int siteId, int generation,
+                        Map<String, Integer> lemmaIds, Map<String, TermPositions> lemmas) {
+        if (!settings.isInMemoryIndex()) {
+            afterCommit(version::incrementAndGet);
+            return;
+        }
+        afterCommit(() -> {
+            if (lemmas.isEmpty()) {
+                // Страница без индексов в статистику BM25 не входит
+                bumpVersion(siteId);
+                return;
+            }
+            pages.set(pageId, siteId, generation);
+            pages.setLength(pageId, lemmas.values().stream().mapToInt(TermPositions::size).sum());
+            for (Map.Entry<String, TermPositions> entry : lemmas.entrySet()) {
+                Integer lemmaId = lemmaIds.get(entry.getKey());
+                if (lemmaId != null) {
+                    registerLemma(lemmaId, siteId, entry.getKey());
+                    postings.computeIfAbsent(lemmaId, id -> new PostingList()).put(pageId, entry.getValue().size());
+                }
+            }
+            bumpVersion(siteId);
+        });
+    }
+
+    // Страница удалена или будет проиндексирована заново
+    public void removePage(int pageId, Collection<Integer> lemmaIdsOfPage) {
+        if (!settings.isInMemoryIndex()) {
+            afterCommit(version::incrementAndGet);
+            return;
+        }
+        List<Integer> ids = List.copyOf(lemmaIdsOfPage);
+        afterCommit(() -> {
+            recordRemovedPages(List.of(pageId));
+            for (Integer lemmaId : ids) {
+                PostingList list = postings.get(lemmaId);
+                if (list != null) {
+                    list.remove(pageId);
+                }
+            }
+            int siteId = pages.site(pageId);
+            // Без индексов страница выходит из статистики; addPage новой версии вернёт её
+            pages.remove(pageId);
+            if (siteId >= 0) {
+                bumpVersion(siteId);
+            } else {
+                siteVersions.keySet().forEach(this::bumpVersion);
+            }
+        });
+    }
+
+    // Страницы отмечаются удалёнными после фиксации транзакции, из списков уходят при compact
+    public void dropPages(Collection<Integer> pageIds) {
+        if (!settings.isInMemoryIndex()) {
+            afterCommit(version::incrementAndGet);
+            return;
+        }
+        List<Integer> ids = List.copyOf(pageIds);
+        afterCommit(() -> {
+            recordRemovedPages(ids);
+            for (Integer pageId : ids) {
+                int siteId = pages.site(pageId);
+                pages.remove(pageId);
+                if (siteId >= 0) {
+                    bumpVersion(siteId);
+                }
+            }
+        });
+    }
+
+    public void compact(int siteId) {
+        if (!settings.isInMemoryIndex()) {
+            return;
+        }
+        int removed = 0;
+        for (Map.Entry<Integer, Integer> lemma : lemmaSites.entrySet()) {
+            if (lemma.getValue() != siteId) {
+                continue;
+            }
+            PostingList list = postings.get(lemma.getKey());
+            if (list != null) {
+                removed += list.retainPages(pages);
+            }
+        }
+        logger.info("🧹 Обратный индекс сайта {}: убрано {} строк удалённых страниц", siteId, removed);
+    }
+
+    public void removeSite(int siteId) {
+        if (!settings.isInMemoryIndex()) {
+            afterCommit(version::incrementAndGet);
+            return;
+        }
+        afterCommit(() -> {
+            synchronized (loadLock) {
+                if (loading) {
+                    removedSites.add(siteId);
+                }
+            }
+            lemmaSites.entrySet().removeIf(lemma -> {
+                if (lemma.getValue() != siteId) {
+                    return false;
+                }
+                postings.remove(lemma.getKey());
+                return true;
+            });
+            for (Map<Integer, Integer> bySite : lemmaIds.values()) {
+                bySite.remove(siteId);
+            }
+            pages.removeSite(siteId);
+            bumpVersion(siteId);
+        });
+    }
+
+    public void setLiveGeneration(int siteId, int generation) {
+        if (!settings.isInMemoryIndex()) {
+            afterCommit(version::incrementAndGet);
+            return;
+        }
+        afterCommit(() -> {
+            liveGenerations.put(siteId, generation);
+            bumpVersion(siteId);
+        });
+    }
+
+    // siteId null — все сайты
+    public List<Postings> postings(String lemma, Integer siteId) {
+        Map<Integer, Integer> bySite = lemmaIds.get(lemma);
+        if (bySite == null) {
+            return List.of();
+        }
+        List<Postings> result = new ArrayList<>(siteId == null ? bySite.size() : 1);
+        for (Map.Entry<Integer, Integer> entry : bySite.entrySet()) {
+            if (siteId != null && !siteId.equals(entry.getKey())) {
+                continue;
+            }
+            PostingList list = postings.get(entry.getValue());
+            if (list != null) {
+                result.add(list.snapshot(entry.getKey(), liveGenerations.getOrDefault(entry.getKey(), 0), pages,
+                        version(entry.getKey())));
+            }
+        }
+        return result;
+    }
+
+    // Только поколение, по которому отвечает поиск: строящееся и старые не учитываются
+    public int pageCount(Integer siteId) {
+        return pages.liveCount(liveGenerations, siteId);
+    }
+
+    // Сумма rank лемм страницы; 0, если страница неизвестна
+    public int documentLength(int pageId) {
+        return pages.length(pageId);
+    }
+
+    public double averageDocumentLength(Integer siteId) {
+        return pages.liveAverageLength(liveGenerations, siteId);
+    }
+
+    // При выключенном индексе в памяти версии по сайтам не ведутся — отдаётся общая
+    public long version(Integer siteId) {
+        if (siteId == null || !settings.isInMemoryIndex()) {
+            return version.get();
+        }
+        AtomicLong siteVersion = siteVersions.get(siteId);
+        return siteVersion == null ? 0 : siteVersion.get();
+    }
+
+    private void bumpVersion(int siteId) {
+        siteVersions.computeIfAbsent(siteId, id -> new AtomicLong()).incrementAndGet();
+        version.incrementAndGet();
+    }
+
+    // Вызывается до изменения списков: загрузка либо уже слила строки страницы, либо пропустит их
+    private void recordRemovedPages(Collection<Integer> pageIds) {
+        synchronized (loadLock) {
+            if (loading) {
+                removedPages.addAll(pageIds);
+            }
+        }
+    }
+
+    private void registerLemma(int lemmaId, int siteId, String lemma) {
+        if (lemmaSites.putIfAbsent(lemmaId, siteId) == null) {
+            lemmaIds.computeIfAbsent(lemma, key -> new ConcurrentHashMap<>()).put(siteId, lemmaId);
+        }
+    }
+
+    // Изменения из транзакции видны поиску только после её фиксации
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static long pack(int pageId, float rank) {
+        return ((long) pageId << 32) | (Float.floatToRawIntBits(rank) & 0xFFFFFFFFL);
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "invertedIndex";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        long rows = 0;
+        long bytes = 0;
+        for (PostingList list : postings.values()) {
+            PostingList.State state = list.state;
+            rows += state.size;
+            bytes += state.pageIds.length * 8L;
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("ready", ready);
+        metrics.put("lemmas", postings.size());
+        metrics.put("rows", rows);
+        metrics.put("pages", pages.count());
+        metrics.put("memoryBytes", bytes + pages.memoryBytes());
+        metrics.put("loadMillis", loadMillis);
+        metrics.put("lastError", lastError);
+        return metrics;
+    }
+
+    // Страницы других поколений остаются в списке, их отсеивает isVisible
+    public static class Postings {
+        private final int siteId;
+        private final int[] pageIds;
+        private final float[] ranks;
+        private final int size;
+        private final int liveSize;
+        private final int liveGeneration;
+        private final PageGenerations pages;
+
+        Postings(int siteId, int[] pageIds, float[] ranks, int size, int liveSize, int liveGeneration,
+                 PageGenerations pages) {
+            this.siteId = siteId;
+            this.pageIds = pageIds;
+            this.ranks = ranks;
+            this.size = size;
+            this.liveSize = liveSize;
+            this.liveGeneration = liveGeneration;
+            this.pages = pages;
+        }
+
+        public int getSiteId() {
+            return siteId;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int liveSize() {
+            return liveSize;
+        }
+
+        public int pageId(int i) {
+            return pageIds[i];
+        }
+
+        public float rank(int i) {
+            return ranks[i];
+        }
+
+        public boolean isVisible(int i) {
+            return pages.get(pageIds[i]) == liveGeneration;
+        }
+
+        // Галопирующий поиск: шаг удваивается, поэтому длинный список не просматривается целиком
+        public int seek(int from, int pageId) {
+            int low = from;
+            int bound = 1;
+            while (from + bound < size && pageIds[from + bound] < pageId) {
+                low = from + bound;
+                bound <<= 1;
+            }
+            int found = Arrays.binarySearch(pageIds, low, Math.min(from + bound, size), pageId);
+            return found >= 0 ? found : -found - 1;
+        }
+
+        public int indexOf(int pageId) {
+            int found = Arrays.binarySearch(pageIds, 0, size, pageId);
+            return found >= 0 ? found : -1;
+        }
+    }
+
+    private static class RowBuffer {
+        private long[] packed = new long[4];
+        private int size;
+
+        void add(long row) {
+            if (size == packed.length) {
+                packed = Arrays.copyOf(packed, size * 2);
+            }
+            packed[size++] = row;
+        }
+    }
+
+    private static class PostingList {
+        private static final State EMPTY = new State(new int[0], new float[0], 0);
+
+        private volatile State state = EMPTY;
+        // Число видимых страниц для состояния списка и версии сайта, при которых оно посчитано
+        private volatile LiveCount liveCount;
+
+        Postings snapshot(int siteId, int liveGeneration, PageGenerations pages, long siteVersion) {
+            State current = state;
+            LiveCount cached = liveCount;
+            int live;
+            if (cached != null && cached.state == current && cached.version == siteVersion) {
+                live = cached.count;
+            } else {
+                live = 0;
+                for (int i = 0; i < current.size; i++) {
+                    if (pages.get(current.pageIds[i]) == liveGeneration) {
+                        live++;
+                    }
+                }
+                liveCount = new LiveCount(current, siteVersion, live);
+            }
+            return new Postings(siteId, current.pageIds, current.ranks, current.size, live, liveGeneration, pages);
+        }
+
+        synchronized void put(int pageId, float rank) {
+            State current = state;
+            int size = current.size;
+            if (size == 0 || current.pageIds[size - 1] < pageId) {
+                // Новые страницы получают растущие id: обычно это запись в конец
+                int[] pageIds = current.pageIds;
+                float[] ranks = current.ranks;
+                if (size == pageIds.length) {
+                    pageIds = Arrays.copyOf(pageIds, Math.max(4, size * 2));
+                    ranks = Arrays.copyOf(ranks, pageIds.length);
+                }
+                pageIds[size] = pageId;
+                ranks[size] = rank;
+                state = new State(pageIds, ranks, size + 1);
+                return;
+            }
+            int found = Arrays.binarySearch(current.pageIds, 0, size, pageId);
+            if (found >= 0) {
+                // Опубликованные снимки читают массив rank без блокировок, поэтому он копируется
+                float[] ranks = Arrays.copyOf(current.ranks, current.ranks.length);
+                ranks[found] = rank;
+                state = new State(current.pageIds, ranks, size);
+                return;
+            }
+            int at = -found - 1;
+            int[] pageIds = new int[Math.max(size + 1, current.pageIds.length)];
+            float[] ranks = new float[pageIds.length];
+            System.arraycopy(current.pageIds, 0, pageIds, 0, at);
+            System.arraycopy(current.ranks, 0, ranks, 0, at);
+            pageIds[at] = pageId;
+            ranks[at] = rank;
+            System.arraycopy(current.pageIds, at, pageIds, at + 1, size - at);
+            System.arraycopy(current.ranks, at, ranks, at + 1, size - at);
+            state = new State(pageIds, ranks, size + 1);
+        }
+
+        synchronized void remove(int pageId) {
+            State current = state;
+            int found = Arrays.binarySearch(current.pageIds, 0, current.size, pageId);
+            if (found < 0) {
+                return;
+            }
+            int[] pageIds = new int[current.pageIds.length];
+            float[] ranks = new float[pageIds.length];
+            System.arraycopy(current.pageIds, 0, pageIds, 0, found);
+            System.arraycopy(current.ranks, 0, ranks, 0, found);
+            System.arraycopy(current.pageIds, found + 1, pageIds, found, current.size - found - 1);
+            System.arraycopy(current.ranks, found + 1, ranks, found, current.size - found - 1);
+            state = new State(pageIds, ranks, current.size - 1);
+        }
+
+        // Слияние с загруженными из базы строками: уже известные и удалённые страницы не трогаем
+        synchronized void merge(int[] loadedPageIds, float[] loadedRanks, Set<Integer> removed) {
+            if (!removed.isEmpty()) {
+                int kept = 0;
+                for (int i = 0; i < loadedPageIds.length; i++) {
+                    if (!removed.contains(loadedPageIds[i])) {
+                        loadedPageIds[kept] = loadedPageIds[i];
+                        loadedRanks[kept++] = loadedRanks[i];
+                    }
+                }
+                if (kept < loadedPageIds.length) {
+                    loadedPageIds = Arrays.copyOf(loadedPageIds, kept);
+                    loadedRanks = Arrays.copyOf(loadedRanks, kept);
+                }
+            }
+            State current = state;
+            if (current.size == 0) {
+                state = new State(loadedPageIds, loadedRanks, loadedPageIds.length);
+                return;
+            }
+            int[] pageIds = new int[current.size + loadedPageIds.length];
+            float[] ranks = new float[pageIds.length];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < current.size || j < loadedPageIds.length) {
+                if (j == loadedPageIds.length
+                        || i < current.size && current.pageIds[i] <= loadedPageIds[j]) {
+                    if (j < loadedPageIds.length && current.pageIds[i] == loadedPageIds[j]) {
+                        j++;
+                    }
+                    pageIds[n] = current.pageIds[i];
+                    ranks[n++] = current.ranks[i++];
+                } else {
+                    pageIds[n] = loadedPageIds[j];
+                    ranks[n++] = loadedRanks[j++];
+                }
+            }
+            state = new State(pageIds, ranks, n);
+        }
+
+        // Оставляет только страницы, которые ещё есть в индексе; возвращает число убранных
+        synchronized int retainPages(PageGenerations pages) {
+            State current = state;
+            int[] pageIds = new int[current.size];
+            float[] ranks = new float[current.size];
+            int n = 0;
+            for (int i = 0; i < current.size; i++) {
+                if (pages.get(current.pageIds[i]) >= 0) {
+                    pageIds[n] = current.pageIds[i];
+                    ranks[n++] = current.ranks[i];
+                }
+            }
+            if (n < current.size) {
+                state = new State(Arrays.copyOf(pageIds, n), Arrays.copyOf(ranks, n), n);
+            }
+            return current.size - n;
+        }
+
+        private record LiveCount(State state, long version, int count) {
+        }
+
+        private static class State {
+            private final int[] pageIds;
+            private final float[] ranks;
+            private final int size;
+
+            State(int[] pageIds, float[] ranks, int size) {
+                this.pageIds = pageIds;
+                this.ranks = ranks;
+                this.size = size;
+            }
+        }
+    }
+
+    // Число страниц и сумма длин ведутся по паре (сайт, поколение)
+    static class PageGenerations {
+        private volatile int[] generations = new int[0];
+        private volatile int[] lengths = new int[0];
+        private int[] sites = new int[0];
+        private final Map<Long, Integer> generationCounts = new HashMap<>();
+        private final Map<Long, Long> generationLengths = new HashMap<>();
+        private int count;
+
+        // -1 — страницы нет
+        int get(int pageId) {
+            int[] current = generations;
+            return pageId < current.length ? current[pageId] - 1 : -1;
+        }
+
+        synchronized void set(int pageId, int siteId, int generation) {
+            int[] current = generations;
+            if (pageId >= current.length) {
+                int length = Math.max(pageId + 1, current.length * 3 / 2 + 16);
+                current = Arrays.copyOf(current, length);
+                sites = Arrays.copyOf(sites, length);
+                lengths = Arrays.copyOf(lengths, length);
+            }
+            if (current[pageId] == 0) {
+                count++;
+            } else {
+                // Страница уже учтена: переносим её из прежней пары (сайт, поколение)
+                long previous = key(sites[pageId], current[pageId] - 1);
+                generationCounts.merge(previous, -1, Integer::sum);
+                generationLengths.merge(previous, (long) -lengths[pageId], Long::sum);
+            }
+            long key = key(siteId, generation);
+            generationCounts.merge(key, 1, Integer::sum);
+            generationLengths.merge(key, (long) lengths[pageId], Long::sum);
+            // Хранится поколение + 1, чтобы 0 означал отсутствие страницы
+            current[pageId] = generation + 1;
+            sites[pageId] = siteId;
+            generations = current;
+        }
+
+        synchronized void remove(int pageId) {
+            int[] current = generations;
+            if (pageId < current.length && current[pageId] != 0) {
+                setLength(pageId, 0);
+                generationCounts.merge(key(sites[pageId], current[pageId] - 1), -1, Integer::sum);
+                current[pageId] = 0;
+                count--;
+            }
+        }
+
+        synchronized void removeSite(int siteId) {
+            int[] current = generations;
+            for (int pageId = 0; pageId < current.length; pageId++) {
+                if (current[pageId] != 0 && sites[pageId] == siteId) {
+                    remove(pageId);
+                }
+            }
+        }
+
+        // -1 — страницы нет
+        int site(int pageId) {
+            int[] current = generations;
+            return pageId < current.length && current[pageId] != 0 ? sites[pageId] : -1;
+        }
+
+        int length(int pageId) {
+            int[] current = lengths;
+            return pageId < current.length ? current[pageId] : 0;
+        }
+
+        // Страница уже должна быть добавлена через set
+        synchronized void setLength(int pageId, int length) {
+            if (pageId >= lengths.length || generations[pageId] == 0) {
+                return;
+            }
+            int delta = length - lengths[pageId];
+            lengths[pageId] = length;
+            generationLengths.merge(key(sites[pageId], generations[pageId] - 1), (long) delta, Long::sum);
+        }
+
+        // Для загрузки: длины, записанные индексацией во время загрузки, не перезаписываются
+        synchronized void setLengthIfAbsent(int pageId, int length) {
+            if (generations.length > pageId && generations[pageId] != 0 && lengths[pageId] == 0) {
+                setLength(pageId, length);
+            }
+        }
+
+        // Страницы живых поколений: сайта siteId или всех сайтов при null
+        synchronized int liveCount(Map<Integer, Integer> liveGenerations, Integer siteId) {
+            int pages = 0;
+            for (Map.Entry<Long, Integer> entry : generationCounts.entrySet()) {
+                if (isLive(entry.getKey(), liveGenerations, siteId)) {
+                    pages += entry.getValue();
+                }
+            }
+            return pages;
+        }
+
+        synchronized double liveAverageLength(Map<Integer, Integer> liveGenerations, Integer siteId) {
+            int pages = liveCount(liveGenerations, siteId);
+            if (pages == 0) {
+                return 0;
+            }
+            long total = 0;
+            for (Map.Entry<Long, Long> entry : generationLengths.entrySet()) {
+                if (isLive(entry.getKey(), liveGenerations, siteId)) {
+                    total += entry.getValue();
+                }
+            }
+            return (double) total / pages;
+        }
+
+        synchronized int count() {
+            return count;
+        }
+
+        private static boolean isLive(long key, Map<Integer, Integer> liveGenerations, Integer siteId) {
+            int site = (int) (key >>> 32);
+            return (siteId == null || siteId == site) && (int) key == liveGenerations.getOrDefault(site, 0);
+        }
+
+        private static long key(int siteId, int generation) {
+            return ((long) siteId << 32) | (generation & 0xFFFFFFFFL);
+        }
+
+        long memoryBytes() {
+            return generations.length * 12L;
+        }
+    }
+}
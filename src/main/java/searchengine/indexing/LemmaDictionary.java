@@ -0,0 +1,229 @@
+package searchengine.indexing;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.CrawlSettings;
+import searchengine.repository.LemmaBulkRepository;
+import searchengine.services.MetricsSource;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Лемма → id и накопленное приращение частоты; приращения сбрасываются в базу пакетом в фоне.
+// Пока сайт обходится, записи не удаляются: приращение в уже сброшенную и убранную запись потерялось бы
+@Component
+public class LemmaDictionary implements MetricsSource {
+    private static final Logger logger = LoggerFactory.getLogger(LemmaDictionary.class);
+
+    private final LemmaBulkRepository lemmaBulkRepository;
+    private final CrawlSettings settings;
+    private final TransactionTemplate newTransaction;
+    private final ScheduledExecutorService flusher;
+    private final Map<Integer, Map<String, Entry>> sites = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private volatile long lastFlushMillis;
+
+    public LemmaDictionary(LemmaBulkRepository lemmaBulkRepository, PlatformTransactionManager transactionManager,
+                           CrawlSettings settings) {
+        this.lemmaBulkRepository = lemmaBulkRepository;
+        this.settings = settings;
+        // Новые леммы фиксируются сразу: id попадает в словарь, даже если транзакция страницы откатится
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lemma-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Сброс запускается, когда бин уже собран целиком
+    @PostConstruct
+    public void startFlusher() {
+        long interval = Math.max(1, settings.getLemmaFlushIntervalSeconds());
+        flusher.scheduleWithFixedDelay(this::flushAll, interval, interval, TimeUnit.SECONDS);
+    }
+
+    // Недостающие леммы создаются в базе одним запросом
+    public Map<String, Integer> resolve(int siteId, Collection<String> lemmas) {
+        Map<String, Entry> dictionary = sites.computeIfAbsent(siteId, id -> new ConcurrentHashMap<>());
+        Map<String, Integer> ids = new HashMap<>(lemmas.size() * 4 / 3 + 1);
+        Map<String, Integer> missing = new HashMap<>();
+        for (String lemma : lemmas) {
+            Entry entry = dictionary.get(lemma);
+            if (entry != null) {
+                ids.put(lemma, entry.id);
+            } else {
+                missing.put(lemma, 0);
+            }
+        }
+        hits.add(ids.size());
+        if (missing.isEmpty()) {
+            return ids;
+        }
+        misses.add(missing.size());
+
+        // Нулевое приращение: строка создаётся или находится, частота растёт только через add()
+        Map<String, Integer> created = newTransaction.execute(status -> lemmaBulkRepository.upsert(siteId, missing));
+        if (created != null) {
+            for (Map.Entry<String, Integer> lemma : created.entrySet()) {
+                Entry entry = dictionary.computeIfAbsent(lemma.getKey(), key -> new Entry(lemma.getValue()));
+                ids.put(lemma.getKey(), entry.id);
+            }
+        }
+        return ids;
+    }
+
+    public void add(int siteId, Map<String, Integer> counts, Map<String, Integer> ids) {
+        Map<String, Entry> dictionary = sites.get(siteId);
+        Map<Integer, Long> direct = new HashMap<>();
+        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+            Entry entry = dictionary == null ? null : dictionary.get(count.getKey());
+            if (entry != null) {
+                entry.pending.add(count.getValue());
+            } else if (ids.containsKey(count.getKey())) {
+                // Словарь сайта уже освобождён после обхода — пишем приращение сразу
+                direct.merge(ids.get(count.getKey()), (long) count.getValue(), Long::sum);
+            }
+        }
+        if (!direct.isEmpty()) {
+            // Вызывается и после фиксации транзакции страницы: запись идёт в своей транзакции
+            newTransaction.executeWithoutResult(status -> lemmaBulkRepository.addFrequencies(direct));
+        }
+    }
+
+    // Вхождения учитываются после фиксации транзакции: откатившаяся страница в частоты не попадает
+    public void addAfterCommit(int siteId, Map<String, Integer> counts, Map<String, Integer> ids) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(siteId, counts, ids);
+                }
+            });
+        } else {
+            add(siteId, counts, ids);
+        }
+    }
+
+    public void flush(int siteId) {
+        Map<String, Entry> dictionary = sites.get(siteId);
+        if (dictionary != null) {
+            flush(dictionary.values());
+        }
+    }
+
+    public void flushAll() {
+        for (Map<String, Entry> dictionary : sites.values()) {
+            flush(dictionary.values());
+        }
+    }
+
+    private void flush(Collection<Entry> entries) {
+        Map<Integer, Long> deltas = new HashMap<>();
+        List<Entry> drained = new ArrayList<>();
+        for (Entry entry : entries) {
+            long delta = entry.pending.sumThenReset();
+            if (delta != 0) {
+                deltas.put(entry.id, delta);
+                drained.add(entry);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            lemmaBulkRepository.addFrequencies(deltas);
+            flushes.increment();
+            flushedRows.add(deltas.size());
+            lastFlushMillis = System.currentTimeMillis() - start;
+        } catch (RuntimeException e) {
+            // Приращения возвращаются в счётчики и уйдут при следующем сбросе
+            for (Entry entry : drained) {
+                entry.pending.add(deltas.get(entry.id));
+            }
+            logger.error("❌ Ошибка сброса частот лемм ({} строк): {}", deltas.size(), e.getMessage(), e);
+        }
+    }
+
+    public void release(int siteId) {
+        Map<String, Entry> dictionary = sites.remove(siteId);
+        if (dictionary != null) {
+            flush(dictionary.values());
+            logger.info("📕 Словарь лемм сайта {} сброшен в базу: {} лемм", siteId, dictionary.size());
+        }
+    }
+
+    // Леммы сайта удалены из базы: словарь забывается без записи
+    public void clear(int siteId) {
+        sites.remove(siteId);
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "lemmaDictionary";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        int lemmas = 0;
+        long pending = 0;
+        for (Map<String, Entry> dictionary : sites.values()) {
+            lemmas += dictionary.size();
+            for (Entry entry : dictionary.values()) {
+                pending += entry.pending.sum();
+            }
+        }
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("sites", sites.size());
+        metrics.put("lemmas", lemmas);
+        metrics.put("pendingOccurrences", pending);
+        metrics.put("hits", hitCount);
+        metrics.put("misses", missCount);
+        metrics.put("hitRate", hitCount + missCount == 0 ? 0.0
+                : Math.round(hitCount * 10000.0 / (hitCount + missCount)) / 10000.0);
+        metrics.put("flushes", flushes.sum());
+        metrics.put("flushedRows", flushedRows.sum());
+        metrics.put("lastFlushMillis", lastFlushMillis);
+        return metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+        flushAll();
+    }
+
+    private static class Entry {
+        private final int id;
+        private final LongAdder pending = new LongAdder();
+
+        Entry(int id) {
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package searchengine.indexing;
+
+import org.jsoup.Jsoup;
+import org.springframework.stereotype.Component;
+import searchengine.model.Page;
+import searchengine.model.PageContent;
+import searchengine.repository.PageContentRepository;
+import searchengine.services.MetricsSource;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Сжатый HTML и извлечённый при обходе текст страницы в page_content.
+// У страниц из page.content текст извлекается из HTML до переиндексации
+@Component
+public class PageContentStore implements MetricsSource {
+    private final PageContentRepository pageContentRepository;
+
+    private final LongAdder pagesStored = new LongAdder();
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder textChars = new LongAdder();
+
+    public PageContentStore(PageContentRepository pageContentRepository) {
+        this.pageContentRepository = pageContentRepository;
+    }
+
+    public void save(int pageId, String html, String title, String text) {
+        byte[] raw = html.getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = compress(raw);
+        pageContentRepository.save(new PageContent(pageId, compressed, truncate(title, 1000), text));
+        pagesStored.increment();
+        rawBytes.add(raw.length);
+        compressedBytes.add(compressed.length);
+        textChars.add(text.length());
+    }
+
+    public String getText(Page page) {
+        return pageContentRepository.findTextByPageId(page.getId())
+                .orElseGet(() -> legacyText(page));
+    }
+
+    // id страницы → {title, text}
+    public Map<Integer, String[]> getTexts(Collection<Page> pages) {
+        Map<Integer, String[]> texts = new HashMap<>(pages.size() * 4 / 3 + 1);
+        if (pages.isEmpty()) {
+            return texts;
+        }
+        List<Integer> ids = pages.stream().map(Page::getId).toList();
+        for (Object[] row : pageContentRepository.findTextsByPageIds(ids)) {
+            texts.put((Integer) row[0], new String[]{(String) row[1], (String) row[2]});
+        }
+        for (Page page : pages) {
+            if (!texts.containsKey(page.getId())) {
+                String html = page.getContent() == null ? "" : page.getContent();
+                org.jsoup.nodes.Document document = Jsoup.parse(html);
+                texts.put(page.getId(), new String[]{document.title(), document.text()});
+            }
+        }
+        return texts;
+    }
+
+    // null, если страница не сохранялась как HTML
+    public String getHtml(Page page) {
+        return pageContentRepository.findHtmlByPageId(page.getId())
+                .map(html -> new String(decompress(html), StandardCharsets.UTF_8))
+                .orElse(page.getContent());
+    }
+
+    public void deleteByPageId(int pageId) {
+        pageContentRepository.deleteById(pageId);
+    }
+
+    private static String legacyText(Page page) {
+        return page.getContent() == null ? "" : Jsoup.parse(page.getContent()).text();
+    }
+
+    private static String truncate(String value, int maxLength) {
+        return value != null && value.length() > maxLength ? value.substring(0, maxLength) : value;
+    }
+
+    static byte[] compress(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static byte[] decompress(byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                out.write(buffer, 0, length);
+                if (length == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Повреждённое содержимое страницы");
+                }
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Повреждённое содержимое страницы", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "pageStorage";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        long raw = rawBytes.sum();
+        long compressed = compressedBytes.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("pagesStored", pagesStored.sum());
+        metrics.put("htmlBytes", raw);
+        metrics.put("compressedBytes", compressed);
+        metrics.put("textChars", textChars.sum());
+        metrics.put("compressionRatio", compressed == 0 ? 0 : Math.round(raw * 100.0 / compressed) / 100.0);
+        return metrics;
+    }
+}
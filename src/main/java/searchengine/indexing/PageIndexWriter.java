@@ -0,0 +1,53 @@
+package searchengine.indexing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import searchengine.model.Page;
+import searchengine.repository.IndexBulkRepository;
+import searchengine.utils.TermPositions;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Запись индексов страницы, общая для обхода сайтов и индексации отдельной страницы
+@Component
+public class PageIndexWriter {
+    private static final Logger logger = LoggerFactory.getLogger(PageIndexWriter.class);
+
+    private final LemmaDictionary lemmaDictionary;
+    private final IndexBulkRepository indexBulkRepository;
+    private final InvertedIndex invertedIndex;
+
+    public PageIndexWriter(LemmaDictionary lemmaDictionary, IndexBulkRepository indexBulkRepository,
+                           InvertedIndex invertedIndex) {
+        this.lemmaDictionary = lemmaDictionary;
+        this.indexBulkRepository = indexBulkRepository;
+        this.invertedIndex = invertedIndex;
+    }
+
+    // Вызывается в транзакции записи страницы: ошибка откатывает страницу вместе с её индексами.
+    // Частоты лемм и обратный индекс учитывают страницу только после фиксации этой транзакции
+    public int write(Page page, Map<String, TermPositions> lemmas) {
+        if (lemmas.isEmpty()) {
+            return 0;
+        }
+        int siteId = page.getSite().getId();
+        Map<String, Integer> lemmaIds = lemmaDictionary.resolve(siteId, lemmas.keySet());
+
+        Map<Integer, TermPositions> postings = new HashMap<>(lemmas.size() * 4 / 3 + 1);
+        for (Map.Entry<String, TermPositions> entry : lemmas.entrySet()) {
+            Integer lemmaId = lemmaIds.get(entry.getKey());
+            if (lemmaId == null) {
+                logger.warn("⚠️ Не найден id леммы '{}' для страницы {}", entry.getKey(), page.getPath());
+                continue;
+            }
+            postings.put(lemmaId, entry.getValue());
+        }
+        int saved = indexBulkRepository.insert(page.getId(), postings);
+
+        lemmaDictionary.addAfterCommit(siteId, TermPositions.counts(lemmas), lemmaIds);
+        invertedIndex.addPage(page, lemmaIds, lemmas);
+        return saved;
+    }
+}
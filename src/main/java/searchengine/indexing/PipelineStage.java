@@ -0,0 +1,137 @@
+package searchengine.indexing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Стадия с ограниченной очередью: при заполненной очереди поставщик ждёт, а не копит задачи в памяти
+public class PipelineStage {
+    private static final Logger logger = LoggerFactory.getLogger(PipelineStage.class);
+
+    private final String name;
+    private final int threads;
+    private final int queueCapacity;
+    private final ThreadPoolExecutor executor;
+    private final long startedAt = System.nanoTime();
+
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+    private final AtomicInteger active = new AtomicInteger();
+
+    public PipelineStage(String name, int threads, int queueCapacity) {
+        this.name = name;
+        this.threads = Math.max(1, threads);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(this.threads, this.threads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                PipelineStage::blockUntilQueued);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Ставит задачу в очередь, при заполненной очереди ждёт места. Если стадию остановят,
+    // пока задача ждёт в очереди, вместо неё выполняется onDropped.
+    // RejectedExecutionException — задача не принята, onDropped не вызывается
+    public void submit(Task task, Runnable onDropped) {
+        executor.execute(new Queued(() -> run(task), onDropped));
+    }
+
+    private void run(Task task) {
+        long start = System.nanoTime();
+        active.incrementAndGet();
+        try {
+            task.run();
+            processed.increment();
+        } catch (Exception e) {
+            failed.increment();
+            logger.error("❌ Ошибка на стадии {}: {}", name, e.getMessage(), e);
+        } finally {
+            active.decrementAndGet();
+            busyNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public Map<String, Object> getMetrics() {
+        long done = processed.sum();
+        long busy = busyNanos.sum();
+        double uptimeSeconds = Math.max(1e-3, (System.nanoTime() - startedAt) / 1e9);
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("threads", threads);
+        metrics.put("active", active.get());
+        metrics.put("queueSize", executor.getQueue().size());
+        metrics.put("queueCapacity", queueCapacity);
+        metrics.put("processed", done);
+        metrics.put("failed", failed.sum());
+        metrics.put("throughputPerSecond", Math.round(done / uptimeSeconds * 100) / 100.0);
+        metrics.put("avgTaskMillis", done == 0 ? 0 : Math.round(busy / 1e4 / done) / 100.0);
+        // Доля времени, когда потоки стадии заняты: близкая к 1 стадия — узкое место
+        metrics.put("utilization", Math.round(busy / 1e9 / (uptimeSeconds * threads) * 1000) / 1000.0);
+        return metrics;
+    }
+
+    public void shutdownNow() {
+        List<Runnable> dropped = executor.shutdownNow();
+        for (Runnable task : dropped) {
+            try {
+                ((Queued) task).onDropped.run();
+            } catch (RuntimeException e) {
+                logger.error("❌ Ошибка отмены задачи стадии {}: {}", name, e.getMessage(), e);
+            }
+        }
+        if (!dropped.isEmpty()) {
+            logger.info("⏹️ Стадия {} остановлена, снято задач из очереди: {}", name, dropped.size());
+        }
+    }
+
+    private static void blockUntilQueued(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Стадия остановлена");
+        }
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(e);
+        }
+        // Остановка могла очистить очередь, пока поставщик ждал места: тогда задачу уже никто не выполнит
+        if (executor.isShutdown() && executor.getQueue().remove(task)) {
+            throw new RejectedExecutionException("Стадия остановлена");
+        }
+    }
+
+    private record Queued(Runnable task, Runnable onDropped) implements Runnable {
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+
+    @FunctionalInterface
+    public interface Task {
+        void run() throws Exception;
+    }
+}
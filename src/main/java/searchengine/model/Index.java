@@ -25,6 +25,10 @@ public class Index {
     @JoinColumn(name = "lemma_id", nullable = false)
     private Lemma lemma;
 
-    @Column(name = "'rank'", nullable = false)
+    @Column(name = "`rank`", nullable = false)
     private Float rank;
+
+    // Позиции вхождений леммы на странице (см. TermPositions); null у индексов, записанных до их появления
+    @Column(name = "positions", columnDefinition = "MEDIUMBLOB")
+    private byte[] positions;
 }
@@ -4,13 +4,14 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 
 @Entity
 @Table(
         name = "page",
-        indexes = {@jakarta.persistence.Index(name = "idx_path", columnList = "path")}
+        indexes = {
+                @jakarta.persistence.Index(name = "idx_path", columnList = "path"),
+                @jakarta.persistence.Index(name = "idx_page_site_generation", columnList = "site_id, generation")
+        }
 )
 @Data
 @NoArgsConstructor
@@ -28,27 +29,43 @@ public class Page {
     @Column(length = 500, nullable = false)
     private String path;
 
+    // Поколение сайта, к которому относится страница (см. Site.generation)
+    @Column(nullable = false)
+    private int generation;
+
 
     @Column(nullable = false)
     private int code;
 
+    // HTML страницы хранится сжатым в page_content; здесь — пустая строка для HTML,
+    // ссылка для файлов и изображений или HTML страниц, сохранённых до появления page_content
     @Column(columnDefinition = "MEDIUMTEXT", nullable = false)
     private String content;
 
     @Column(length = 500)
     private String contentType;
 
+    // Валидаторы и хеш содержимого для инкрементальной переиндексации
+    @Column(length = 500)
+    private String etag;
+
+    @Column(name = "last_modified", length = 100)
+    private String lastModified;
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
     @Transient
     private String title;
 
     @Transient
     private String text;
 
-    public String getText() {
-        if (content != null) {
-            Document doc = Jsoup.parse(content);
-            return doc.text();
+    // Новая страница попадает в строящееся поколение сайта, если оно есть
+    @PrePersist
+    private void assignGeneration() {
+        if (site != null) {
+            generation = site.getWriteGeneration();
         }
-        return null;
     }
 }
@@ -0,0 +1,29 @@
+package searchengine.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Entity
+@Table(name = "page_content")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PageContent {
+
+    @Id
+    @Column(name = "page_id", nullable = false)
+    private Integer pageId;
+
+    // HTML страницы, сжатый deflate
+    @Lob
+    @Column(name = "html", columnDefinition = "LONGBLOB", nullable = false)
+    private byte[] html;
+
+    @Column(name = "title", length = 1000)
+    private String title;
+
+    @Column(name = "text", columnDefinition = "MEDIUMTEXT", nullable = false)
+    private String text;
+}
@@ -41,7 +41,19 @@ public class Site {
     @Column(length = 500, nullable = false)
     private String name;
 
+    // Поколение страниц, по которому отвечает поиск
+    @Column(nullable = false)
+    private int generation;
+
+    // Поколение, которое строит полная переиндексация; null, если она не идёт
+    @Column(name = "build_generation")
+    private Integer buildGeneration;
+
     @OneToMany(mappedBy = "site", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonIgnore // Если вы хотите игнорировать это поле при сериализации
     private List<Page> pages = new ArrayList<>();
+
+    public int getWriteGeneration() {
+        return buildGeneration != null ? buildGeneration : generation;
+    }
 }
@@ -0,0 +1,88 @@
+package searchengine.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.List;
+
+@Repository
+public class GenerationBulkRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public GenerationBulkRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public List<Integer> findPageIds(int siteId, int generation, int limit) {
+        return jdbcTemplate.queryForList(
+                "SELECT id FROM page WHERE site_id = ? AND generation = ? ORDER BY id LIMIT ?",
+                Integer.class, siteId, generation, limit);
+    }
+
+    // Леммы общие для поколений: из их частот вычитается вклад страниц, сами леммы остаются.
+    // Вызывается в транзакции
+    public int deletePages(List<Integer> pageIds) {
+        if (pageIds.isEmpty()) {
+            return 0;
+        }
+        String in = inClause(pageIds.size());
+        Object[] args = pageIds.toArray();
+        jdbcTemplate.update("UPDATE lemma l JOIN (SELECT lemma_id, SUM(`rank`) AS total FROM `index`"
+                + " WHERE page_id IN " + in + " GROUP BY lemma_id) d ON d.lemma_id = l.id"
+                + " SET l.frequency = l.frequency - ROUND(d.total)", args);
+        jdbcTemplate.update("DELETE FROM `index` WHERE page_id IN " + in, args);
+        jdbcTemplate.update("DELETE FROM page_content WHERE page_id IN " + in, args);
+        return jdbcTemplate.update("DELETE FROM page WHERE id IN " + in, args);
+    }
+
+    public int deleteUnusedLemmas(int siteId) {
+        return jdbcTemplate.update("DELETE FROM lemma WHERE site_id = ? AND frequency <= 0"
+                + " AND NOT EXISTS (SELECT 1 FROM `index` i WHERE i.lemma_id = lemma.id)", siteId);
+    }
+
+    // Копия страницы в другом поколении, возвращает id копии.
+    // clearContent — HTML старой страницы переносится в page_content отдельно
+    public int copyPage(int pageId, int generation, boolean clearContent) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement("INSERT INTO page"
+                    + " (site_id, path, generation, code, content, content_type, etag, last_modified, content_hash)"
+                    + " SELECT site_id, path, ?, code, IF(?, '', content), content_type, etag, last_modified, content_hash"
+                    + " FROM page WHERE id = ?", Statement.RETURN_GENERATED_KEYS);
+            statement.setInt(1, generation);
+            statement.setBoolean(2, clearContent);
+            statement.setInt(3, pageId);
+            return statement;
+        }, keyHolder);
+        Number key = keyHolder.getKey();
+        if (key == null) {
+            throw new IllegalStateException("Страница id=" + pageId + " не найдена");
+        }
+        return key.intValue();
+    }
+
+    public int copyContent(int fromPageId, int toPageId) {
+        return jdbcTemplate.update("INSERT INTO page_content (page_id, html, title, text)"
+                + " SELECT ?, html, title, text FROM page_content WHERE page_id = ?", toPageId, fromPageId);
+    }
+
+    // Последняя страница поколения, у которой уже есть копия в строящемся; null — копий нет
+    public Integer findLastCopiedPageId(int siteId, int generation, int buildGeneration) {
+        return jdbcTemplate.queryForObject("SELECT MAX(p.id) FROM page p JOIN page c"
+                + " ON c.site_id = p.site_id AND c.path = p.path AND c.generation = ?"
+                + " WHERE p.site_id = ? AND p.generation = ?",
+                Integer.class, buildGeneration, siteId, generation);
+    }
+
+    private static String inClause(int size) {
+        StringBuilder sql = new StringBuilder(size * 3 + 2).append('(');
+        for (int i = 0; i < size; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        return sql.append(')').toString();
+    }
+}
@@ -0,0 +1,77 @@
+package searchengine.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import searchengine.services.MetricsSource;
+import searchengine.utils.TermPositions;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Hibernate не объединяет вставки с IDENTITY в пакеты, поэтому строки index пишутся многострочным INSERT
+@Repository
+public class IndexBulkRepository implements MetricsSource {
+    // Строк в одном INSERT: четыре параметра на строку, запрос остаётся в пределах max_allowed_packet
+    private static final int CHUNK_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+
+    public IndexBulkRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public int insert(int pageId, Map<Integer, TermPositions> postings) {
+        if (postings.isEmpty()) {
+            return 0;
+        }
+        List<Map.Entry<Integer, TermPositions>> entries = new ArrayList<>(postings.entrySet());
+        long start = System.nanoTime();
+        int inserted = 0;
+        for (int from = 0; from < entries.size(); from += CHUNK_SIZE) {
+            List<Map.Entry<Integer, TermPositions>> chunk = entries.subList(from, Math.min(from + CHUNK_SIZE, entries.size()));
+            StringBuilder sql = new StringBuilder(80 + chunk.size() * 14)
+                    .append("INSERT INTO `index` (page_id, lemma_id, `rank`, positions) VALUES ");
+            Object[] args = new Object[chunk.size() * 4];
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+                TermPositions positions = chunk.get(i).getValue();
+                args[i * 4] = pageId;
+                args[i * 4 + 1] = chunk.get(i).getKey();
+                args[i * 4 + 2] = (float) positions.size();
+                args[i * 4 + 3] = positions.encode();
+            }
+            inserted += jdbcTemplate.update(sql.toString(), args);
+            statements.increment();
+        }
+        rows.add(inserted);
+        writeNanos.add(System.nanoTime() - start);
+        return inserted;
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "indexWriter";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        long rowCount = rows.sum();
+        long statementCount = statements.sum();
+        double seconds = writeNanos.sum() / 1e9;
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("rows", rowCount);
+        metrics.put("statements", statementCount);
+        metrics.put("avgRowsPerStatement", statementCount == 0 ? 0 : rowCount / statementCount);
+        metrics.put("writeSeconds", Math.round(seconds * 1000) / 1000.0);
+        // Скорость записи за время, проведённое в INSERT, без учёта простоя между страницами
+        metrics.put("rowsPerSecond", seconds == 0 ? 0 : Math.round(rowCount / seconds));
+        return metrics;
+    }
+}
@@ -9,6 +9,9 @@ import searchengine.model.Index;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface IndexRepository extends JpaRepository<Index, Integer> {
 
     @Modifying
@@ -16,4 +19,47 @@ public interface IndexRepository extends JpaRepository<Index, Integer> {
     @Query("DELETE FROM Index i WHERE i.page.site.id = :siteId")
     int deleteBySiteId(@Param("siteId") int siteId);
 
+    @Query("SELECT i FROM Index i JOIN FETCH i.lemma WHERE i.page.id = :pageId")
+    List<Index> findByPageIdWithLemma(@Param("pageId") int pageId);
+
+    // Позиции лемм запроса на найденных страницах: id страницы, лемма, позиции (null у старых индексов)
+    @Query("SELECT i.page.id, i.lemma.lemma, i.positions FROM Index i"
+            + " WHERE i.page.id IN :pageIds AND i.lemma.lemma IN :lemmas")
+    List<Object[]> findPositions(@Param("pageIds") Collection<Integer> pageIds,
+                                 @Param("lemmas") Collection<String> lemmas);
+
+    // rank лемм запроса на найденных страницах: id страницы, лемма, rank
+    @Query("SELECT i.page.id, i.lemma.lemma, i.rank FROM Index i"
+            + " WHERE i.page.id IN :pageIds AND i.lemma.lemma IN :lemmas")
+    List<Object[]> findRanks(@Param("pageIds") Collection<Integer> pageIds,
+                             @Param("lemmas") Collection<String> lemmas);
+
+    // Длины страниц в словах: id страницы, сумма rank всех её лемм
+    @Query("SELECT i.page.id, SUM(i.rank) FROM Index i WHERE i.page.id IN :pageIds GROUP BY i.page.id")
+    List<Object[]> sumRanksByPageIds(@Param("pageIds") Collection<Integer> pageIds);
+
+    // Число страниц текущих поколений с каждой из лемм: лемма, число страниц
+    @Query("SELECT i.lemma.lemma, COUNT(DISTINCT i.page.id) FROM Index i WHERE i.lemma.lemma IN :lemmas"
+            + " AND i.page.generation = i.page.site.generation GROUP BY i.lemma.lemma")
+    List<Object[]> countLivePagesByLemmas(@Param("lemmas") Collection<String> lemmas);
+
+    @Query("SELECT i.lemma.lemma, COUNT(DISTINCT i.page.id) FROM Index i WHERE i.lemma.lemma IN :lemmas"
+            + " AND i.page.site.url = :site AND i.page.generation = i.page.site.generation GROUP BY i.lemma.lemma")
+    List<Object[]> countLivePagesByLemmas(@Param("lemmas") Collection<String> lemmas, @Param("site") String site);
+
+    // Статистика корпуса для BM25 по страницам текущих поколений, у которых есть индексы:
+    // число страниц и сумма их длин (rank всех лемм)
+    @Query("SELECT COUNT(DISTINCT i.page.id), COALESCE(SUM(i.rank), 0) FROM Index i"
+            + " WHERE i.page.generation = i.page.site.generation")
+    List<Object[]> liveCorpusStatistics();
+
+    @Query("SELECT COUNT(DISTINCT i.page.id), COALESCE(SUM(i.rank), 0) FROM Index i"
+            + " WHERE i.page.site.url = :site AND i.page.generation = i.page.site.generation")
+    List<Object[]> liveCorpusStatistics(@Param("site") String site);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM Index i WHERE i.page.id = :pageId")
+    int deleteByPageId(@Param("pageId") int pageId);
+
 }
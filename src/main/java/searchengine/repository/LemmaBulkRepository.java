@@ -0,0 +1,101 @@
+package searchengine.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Частоты лемм увеличиваются на стороне базы через ON DUPLICATE KEY UPDATE: параллельные потоки не затирают друг друга
+@Repository
+public class LemmaBulkRepository {
+    // Ограничение на число строк в одном запросе, чтобы не упереться в max_allowed_packet
+    private static final int CHUNK_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public LemmaBulkRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Возвращает лемма → id
+    public Map<String, Integer> upsert(int siteId, Map<String, Integer> increments) {
+        if (increments.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        // Единый порядок ключей: параллельные транзакции блокируют строки в одной последовательности
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(new TreeMap<>(increments).entrySet());
+
+        for (int from = 0; from < entries.size(); from += CHUNK_SIZE) {
+            List<Map.Entry<String, Integer>> chunk = entries.subList(from, Math.min(from + CHUNK_SIZE, entries.size()));
+            StringBuilder sql = new StringBuilder("INSERT INTO lemma (site_id, lemma, frequency) VALUES ");
+            Object[] args = new Object[chunk.size() * 3];
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+                args[i * 3] = siteId;
+                args[i * 3 + 1] = chunk.get(i).getKey();
+                args[i * 3 + 2] = chunk.get(i).getValue();
+            }
+            sql.append(" ON DUPLICATE KEY UPDATE frequency = frequency + VALUES(frequency)");
+            jdbcTemplate.update(sql.toString(), args);
+        }
+        return findIds(siteId, entries);
+    }
+
+    // Леммы с нулевой частотой остаются: их id уже могли получить потоки записи.
+    // Удаляются они после обхода
+    public void subtract(Map<Integer, Integer> decrements) {
+        if (decrements.isEmpty()) {
+            return;
+        }
+        Map<Integer, Long> deltas = new HashMap<>();
+        decrements.forEach((id, count) -> deltas.put(id, -(long) count));
+        addFrequencies(deltas);
+    }
+
+    public void addFrequencies(Map<Integer, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        List<Object[]> batch = new ArrayList<>(deltas.size());
+        for (Map.Entry<Integer, Long> entry : new TreeMap<>(deltas).entrySet()) {
+            batch.add(new Object[]{entry.getValue(), entry.getKey()});
+        }
+        jdbcTemplate.batchUpdate("UPDATE lemma SET frequency = frequency + ? WHERE id = ?", batch);
+    }
+
+    private Map<String, Integer> findIds(int siteId, List<Map.Entry<String, Integer>> entries) {
+        Map<String, Integer> ids = new HashMap<>(entries.size() * 4 / 3 + 1);
+        for (int from = 0; from < entries.size(); from += CHUNK_SIZE) {
+            List<Map.Entry<String, Integer>> chunk = entries.subList(from, Math.min(from + CHUNK_SIZE, entries.size()));
+            StringBuilder sql = new StringBuilder("SELECT id, lemma FROM lemma WHERE site_id = ? AND lemma IN (");
+            Object[] args = new Object[chunk.size() + 1];
+            args[0] = siteId;
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+                args[i + 1] = chunk.get(i).getKey();
+            }
+            sql.append(")");
+            jdbcTemplate.query(sql.toString(), rs -> {
+                ids.put(rs.getString("lemma"), rs.getInt("id"));
+            }, args);
+        }
+        // Коллация столбца может считать разные строки равными (например, «е» и «ё»):
+        // тогда база вернула существующее написание, и id ищется по каждой такой лемме отдельно
+        for (Map.Entry<String, Integer> entry : entries) {
+            if (!ids.containsKey(entry.getKey())) {
+                List<Integer> found = jdbcTemplate.queryForList(
+                        "SELECT id FROM lemma WHERE site_id = ? AND lemma = ? LIMIT 1",
+                        Integer.class, siteId, entry.getKey());
+                if (!found.isEmpty()) {
+                    ids.put(entry.getKey(), found.get(0));
+                }
+            }
+        }
+        return ids;
+    }
+}
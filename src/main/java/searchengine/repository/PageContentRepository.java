@@ -0,0 +1,24 @@
+package searchengine.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import searchengine.model.PageContent;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface PageContentRepository extends JpaRepository<PageContent, Integer> {
+
+    // Заголовок и текст без HTML: столбец со сжатым HTML не читается
+    @Query("SELECT c.pageId, c.title, c.text FROM PageContent c WHERE c.pageId IN :pageIds")
+    List<Object[]> findTextsByPageIds(@Param("pageIds") Collection<Integer> pageIds);
+
+    // html — обычный @Lob и при findById читается вместе со строкой, поэтому столбцы выбираются явно
+    @Query("SELECT c.text FROM PageContent c WHERE c.pageId = :pageId")
+    Optional<String> findTextByPageId(@Param("pageId") int pageId);
+
+    @Query("SELECT c.html FROM PageContent c WHERE c.pageId = :pageId")
+    Optional<byte[]> findHtmlByPageId(@Param("pageId") int pageId);
+}
@@ -1,5 +1,6 @@
 package searchengine.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -8,8 +9,10 @@ import org.springframework.data.jpa.repository.Modifying;
 import searchengine.model.Page;
 import searchengine.model.Site;
 import org.springframework.data.repository.query.Param;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 
 @Repository
@@ -24,19 +27,49 @@ public interface PageRepository extends JpaRepository<Page, Integer> {
     boolean existsByPathAndSiteId(String path, int siteId);
 
 
-    @Query("SELECT DISTINCT p FROM Page p WHERE p.id IN " +
-            "(SELECT i.page.id FROM Index i WHERE i.lemma.lemma IN :lemmas)")
-    List<Page> findPagesByLemmas(@Param("lemmas") List<String> lemmas);
+    // Поиск видит только текущее поколение страниц сайта, строящееся остаётся скрытым;
+    // страница подходит, если на ней есть все :count различных лемм запроса
+    @Query("SELECT p FROM Page p WHERE p.generation = p.site.generation AND p.id IN " +
+            "(SELECT i.page.id FROM Index i WHERE i.lemma.lemma IN :lemmas " +
+            "GROUP BY i.page.id HAVING COUNT(DISTINCT i.lemma.lemma) = :count)")
+    List<Page> findPagesWithAllLemmas(@Param("lemmas") Collection<String> lemmas, @Param("count") long count);
 
-    @Query("SELECT DISTINCT p FROM Page p WHERE p.site.url = :site AND p.id IN " +
-            "(SELECT i.page.id FROM Index i WHERE i.lemma.lemma IN :lemmas)")
-    List<Page> findPagesByLemmas(@Param("lemmas") List<String> lemmas, @Param("site") String site);
+    @Query("SELECT p FROM Page p WHERE p.site.url = :site AND p.generation = p.site.generation AND p.id IN " +
+            "(SELECT i.page.id FROM Index i WHERE i.lemma.lemma IN :lemmas " +
+            "GROUP BY i.page.id HAVING COUNT(DISTINCT i.lemma.lemma) = :count)")
+    List<Page> findPagesWithAllLemmas(@Param("lemmas") Collection<String> lemmas, @Param("count") long count,
+                                      @Param("site") String site);
 
 
     boolean existsByPath(String path);
 
+    @Query("SELECT p FROM Page p JOIN FETCH p.site WHERE p.id IN :ids")
+    List<Page> findWithSiteByIdIn(@Param("ids") Collection<Integer> ids);
 
-    int countBySiteUrl(String siteUrl);
+    @Query("SELECT p.path FROM Page p WHERE p.site.id = :siteId AND p.generation = :generation")
+    Stream<String> streamPaths(@Param("siteId") int siteId, @Param("generation") int generation);
+
+    @Query("SELECT p.id, p.path, p.etag, p.lastModified, p.contentHash FROM Page p"
+            + " WHERE p.site.id = :siteId AND p.generation = p.site.generation")
+    List<Object[]> findValidatorsBySiteId(@Param("siteId") int siteId);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Page p SET p.etag = :etag, p.lastModified = :lastModified WHERE p.id = :pageId")
+    int updateValidators(@Param("pageId") int pageId, @Param("etag") String etag, @Param("lastModified") String lastModified);
+
+
+    @Query("SELECT COUNT(p) FROM Page p WHERE p.site.url = :siteUrl AND p.generation = p.site.generation")
+    int countBySiteUrl(@Param("siteUrl") String siteUrl);
+
+    // Страницы текущего поколения сайта по возрастанию id, включая изображения, файлы и ошибки.
+    // Текст берётся из page_content; у страниц, сохранённых до неё, HTML ещё лежит в content
+    @Query("SELECT p.id, p.code, p.content, c.text FROM Page p LEFT JOIN PageContent c ON c.pageId = p.id"
+            + " WHERE p.site.id = :siteId AND p.generation = p.site.generation AND p.id > :afterId ORDER BY p.id")
+    List<Object[]> findPageChunk(@Param("siteId") int siteId, @Param("afterId") int afterId, Pageable pageable);
+
+    @Query("SELECT COUNT(p) FROM Page p WHERE p.site.id = :siteId AND p.generation = p.site.generation AND p.id > :afterId")
+    long countPagesAfter(@Param("siteId") int siteId, @Param("afterId") int afterId);
 
 
 
@@ -0,0 +1,46 @@
+package searchengine.services;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+// Индекс меняет только один процесс: полный обход, переиндексация или индексация страницы.
+// Режим занимается сравнением с обменом, поэтому проверка и запуск не разделены
+@Component
+public class IndexingMode {
+
+    public enum Mode {
+        IDLE(null),
+        CRAWL("Индексация уже запущена"),
+        REINDEX("Идёт переиндексация"),
+        PAGE("Идёт индексация страницы");
+
+        private final String busyMessage;
+
+        Mode(String busyMessage) {
+            this.busyMessage = busyMessage;
+        }
+    }
+
+    private final AtomicReference<Mode> current = new AtomicReference<>(Mode.IDLE);
+
+    // null — режим занят вызывающим, иначе причина отказа
+    public String tryEnter(Mode mode) {
+        while (!current.compareAndSet(Mode.IDLE, mode)) {
+            Mode busy = current.get();
+            if (busy != Mode.IDLE) {
+                return busy.busyMessage;
+            }
+        }
+        return null;
+    }
+
+    // Освобождает только свой режим: запоздалый выход не снимает чужой
+    public void exit(Mode mode) {
+        current.compareAndSet(mode, Mode.IDLE);
+    }
+
+    public Mode current() {
+        return current.get();
+    }
+}
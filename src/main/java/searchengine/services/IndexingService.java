@@ -1,25 +1,39 @@
 package searchengine.services;
 
-import org.apache.lucene.morphology.LuceneMorphology;
-import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
-import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
-import org.jsoup.Jsoup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
-import java.util.stream.Collectors;
 
-import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.CrawlSettings;
 import searchengine.config.SitesList;
+import searchengine.crawler.CrawlScheduler;
+import searchengine.crawler.KnownPage;
+import searchengine.crawler.KnownPages;
+import searchengine.crawler.CrawlBudget;
+import searchengine.crawler.CrawlCheckpointStore;
+import searchengine.crawler.PageFetcher;
+import searchengine.crawler.RobotsTxtCache;
+import searchengine.crawler.SitePathIndex;
+import searchengine.crawler.SitemapReader;
+import searchengine.indexing.GenerationCollector;
+import searchengine.indexing.IndexingPipeline;
+import searchengine.indexing.InvertedIndex;
+import searchengine.indexing.LemmaDictionary;
+import searchengine.indexing.PageContentStore;
+import searchengine.indexing.PageIndexWriter;
+import searchengine.utils.LemmaEngine;
+import searchengine.utils.TermPositions;
 import searchengine.model.*;
 import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
 
-import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.*;
 import searchengine.repository.LemmaRepository;
 import searchengine.repository.IndexRepository;
+import searchengine.repository.LemmaBulkRepository;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -41,13 +55,54 @@ public class IndexingService {
     private final PageRepository pageRepository;
     private final LemmaRepository lemmaRepository;
     private final IndexRepository indexRepository;
+    private final CrawlScheduler crawlScheduler;
+    private final CrawlSettings crawlSettings;
+    private final SitePathIndex pathIndex;
+    private final RobotsTxtCache robotsTxtCache;
+    private final SitemapReader sitemapReader;
+    private final PageFetcher pageFetcher;
+    private final CrawlCheckpointStore checkpointStore;
+    private final IndexingPipeline pipeline;
+    private final LemmaEngine lemmaEngine;
+    private final LemmaBulkRepository lemmaBulkRepository;
+    private final LemmaDictionary lemmaDictionary;
+    private final PageIndexWriter pageIndexWriter;
+    private final PageContentStore contentStore;
+    private final GenerationCollector generationCollector;
+    private final InvertedIndex invertedIndex;
+    private final IndexingMode indexingMode;
+    private final TransactionTemplate transactionTemplate;
 
     private volatile boolean indexingInProgress = false;
     private ExecutorService executorService;
     private ForkJoinPool forkJoinPool;
 
-    public IndexingService(SitesList sitesList,LemmaRepository lemmaRepository, IndexRepository indexRepository, SiteRepository siteRepository,  PageRepository pageRepository ) {
+    public IndexingService(SitesList sitesList,LemmaRepository lemmaRepository, IndexRepository indexRepository, SiteRepository siteRepository,  PageRepository pageRepository, CrawlScheduler crawlScheduler, CrawlSettings crawlSettings, SitePathIndex pathIndex,
+                           RobotsTxtCache robotsTxtCache, SitemapReader sitemapReader,
+                           PageFetcher pageFetcher, CrawlCheckpointStore checkpointStore,
+                           IndexingPipeline pipeline, LemmaEngine lemmaEngine,
+                           LemmaBulkRepository lemmaBulkRepository, LemmaDictionary lemmaDictionary,
+                           PageIndexWriter pageIndexWriter, PageContentStore contentStore,
+                           GenerationCollector generationCollector, InvertedIndex invertedIndex,
+                           IndexingMode indexingMode, PlatformTransactionManager transactionManager) {
+        this.lemmaEngine = lemmaEngine;
+        this.indexingMode = indexingMode;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.invertedIndex = invertedIndex;
+        this.generationCollector = generationCollector;
+        this.contentStore = contentStore;
+        this.pageIndexWriter = pageIndexWriter;
+        this.lemmaDictionary = lemmaDictionary;
+        this.lemmaBulkRepository = lemmaBulkRepository;
+        this.pageFetcher = pageFetcher;
+        this.pipeline = pipeline;
+        this.checkpointStore = checkpointStore;
         this.sitesList = sitesList;
+        this.robotsTxtCache = robotsTxtCache;
+        this.sitemapReader = sitemapReader;
+        this.pathIndex = pathIndex;
+        this.crawlSettings = crawlSettings;
+        this.crawlScheduler = crawlScheduler;
         this.siteRepository = siteRepository;
         this.pageRepository = pageRepository;
         this.indexRepository = indexRepository;
@@ -59,22 +114,30 @@ public class IndexingService {
         return indexingInProgress;
     }
 
-    public synchronized void startFullIndexing() {
-        if (indexingInProgress) {
-            logger.warn("Попытка запустить индексацию, которая уже выполняется.");
-            throw new IllegalStateException("Индексация уже запущена.");
+    public void startFullIndexing() {
+        startFullIndexing(crawlSettings.isIncremental());
+    }
+
+    // incremental: true — перепроверить известные страницы, false — построить новое поколение
+    // Режим освобождается, когда обход действительно закончился, а не по запросу остановки
+    public synchronized void startFullIndexing(boolean incremental) {
+        String busy = indexingMode.tryEnter(IndexingMode.Mode.CRAWL);
+        if (busy != null) {
+            logger.warn("Попытка запустить индексацию: {}", busy);
+            throw new IllegalStateException(busy);
         }
         indexingInProgress = true;
-        logger.info("Индексация начата.");
+        logger.info("Индексация начата ({}).", incremental ? "инкрементальная" : "в новое поколение страниц");
 
         executorService = Executors.newSingleThreadExecutor();
         executorService.submit(() -> {
             try {
-                performIndexing();
+                performIndexing(incremental);
             } catch (Exception e) {
                 logger.error("Ошибка во время индексации: ", e);
             } finally {
                 indexingInProgress = false;
+                indexingMode.exit(IndexingMode.Mode.CRAWL);
                 logger.info("Индексация завершена.");
             }
         });
@@ -89,9 +152,9 @@ public class IndexingService {
         logger.info("Остановка индексации по запросу пользователя.");
         indexingInProgress = false;
 
-        if (executorService != null) {
-            executorService.shutdownNow();
-        }
+        // Потоки сайтов не прерываем: отменённый обход дожидается своих страниц в конвейере,
+        // и только затем сайт освобождает словарь лемм и удаляет неиспользуемые леммы
+        crawlScheduler.cancelAll();
         if (forkJoinPool != null) {
             forkJoinPool.shutdownNow();
         }
@@ -101,7 +164,7 @@ public class IndexingService {
 
 
 
-    private void performIndexing() {
+    private void performIndexing(boolean incremental) {
         List<searchengine.config.ConfigSite> sites = sitesList.getSites();
         if (sites == null || sites.isEmpty()) {
             logger.warn("Список сайтов для индексации пуст.");
@@ -125,18 +188,57 @@ public class IndexingService {
 
                         logger.info("Индексация сайта: {} ({})", site.getName(), site.getUrl());
                         startIndexingForSite(site.getUrl());
+                        // Обход меняет страницы и индексы: незавершённую переиндексацию уже не продолжить
+                        checkpointStore.clearReindex(site.getUrl());
                         try {
-                            deleteSiteData(site.getUrl());
-                            searchengine.model.Site newSite = new searchengine.model.Site();
-                            newSite.setName(site.getName());
-                            newSite.setUrl(site.getUrl());
+                            // Прерванный обход с контрольной точкой продолжаем без удаления сайта
+                            searchengine.model.Site existingSite = siteRepository.findByUrl(site.getUrl());
+                            boolean resume = existingSite != null
+                                    && existingSite.getStatus() != IndexingStatus.INDEXED
+                                    && checkpointStore.exists(site.getUrl());
+                            if (existingSite != null) {
+                                // Удаление прошлого поколения сайта должно закончиться до нового обхода
+                                generationCollector.await(existingSite.getId());
+                                if (!resume) {
+                                    generationCollector.discardBuild(existingSite);
+                                }
+                            }
+                            searchengine.model.Site newSite = existingSite;
+                            KnownPages knownPages = null;
+                            if (resume) {
+                                logger.info("▶️ Продолжаем прерванную индексацию {}", site.getUrl());
+                                // Продолжение инкрементального обхода перепроверяет оставшиеся известные страницы
+                                // и затем удаляет исчезнувшие, как и непрерванный обход
+                                if (checkpointStore.isIncremental(site.getUrl())) {
+                                    knownPages = KnownPages.load(pageRepository, newSite.getId());
+                                }
+                                newSite.setName(site.getName());
+                                newSite.setLastError(null);
+                            } else if (newSite != null && incremental) {
+                                // Инкрементальный режим: сайт не удаляем, перепроверяем известные страницы
+                                knownPages = KnownPages.load(pageRepository, newSite.getId());
+                                logger.info("♻️ Инкрементальная индексация {}: известно страниц {}", site.getUrl(), knownPages.size());
+                                newSite.setName(site.getName());
+                                newSite.setLastError(null);
+                            } else if (newSite != null) {
+                                // Полная переиндексация строит новое поколение страниц; до его готовности
+                                // поиск отвечает по текущему
+                                newSite.setBuildGeneration(newSite.getGeneration() + 1);
+                                newSite.setName(site.getName());
+                                newSite.setLastError(null);
+                                logger.info("🏗️ Полная индексация {} в поколение {}", site.getUrl(), newSite.getBuildGeneration());
+                            } else {
+                                newSite = new searchengine.model.Site();
+                                newSite.setName(site.getName());
+                                newSite.setUrl(site.getUrl());
+                            }
                             newSite.setStatus(IndexingStatus.INDEXING);
                             newSite.setStatusTime(LocalDateTime.now());
                             siteRepository.save(newSite);
 
                             SitesList sitesList = getSitesList();
 
-                            PageCrawler.startCrawling(
+                            CrawlBudget budget = PageCrawler.startCrawling(
                                     newSite,
                                     site.getUrl(),
                                     lemmaRepository,
@@ -144,8 +246,26 @@ public class IndexingService {
                                     indexRepository,
                                     pageRepository,
                                     this,
-                                    sitesList
+                                    sitesList,
+                                    crawlScheduler,
+                                    crawlSettings,
+                                    pathIndex,
+                                    robotsTxtCache,
+                                    sitemapReader,
+                                    pageFetcher,
+                                    checkpointStore,
+                                    pipeline,
+                                    contentStore,
+                                    transactionTemplate,
+                                    resume,
+                                    knownPages
                             );
+                            lemmaDictionary.flush(newSite.getId());
+
+                            // Обход, остановленный по лимиту, видел не все страницы: ничего не удаляем
+                            if (knownPages != null && indexingInProgress && !budget.isExhausted()) {
+                                removeDisappearedPages(knownPages);
+                            }
 
                             if (indexingInProgress) {
                                 updateSiteStatusToIndexed(newSite);
@@ -155,6 +275,14 @@ public class IndexingService {
                         } catch (Exception e) {
                             handleIndexingError(site.getUrl(), e);
                         } finally {
+                            // startCrawling возвращается, только когда страницы сайта прошли конвейер
+                            searchengine.model.Site indexedSite = siteRepository.findByUrl(site.getUrl());
+                            if (indexedSite != null) {
+                                pathIndex.evict(indexedSite.getId());
+                                lemmaDictionary.release(indexedSite.getId());
+                                // Леммы с нулевой частотой удаляются, только когда обход сайта закончен
+                                generationCollector.collectUnusedLemmas(indexedSite.getId());
+                            }
                             stopIndexingForSite(site.getUrl());
                         }
                     });
@@ -193,27 +321,37 @@ public class IndexingService {
         return false;
     }
 
-    @Transactional
-    public void deleteSiteData(String siteUrl) {
-        searchengine.model.Site site = siteRepository.findByUrl(siteUrl);
-        if (site != null) {
-            Long siteId = (long) site.getId();
-
-            int indexesDeleted = indexRepository.deleteBySiteId(site.getId());
-
-            int lemmasDeleted = lemmaRepository.deleteBySiteId(siteId);
-
-            int pagesDeleted = pageRepository.deleteAllBySiteId(site.getId());
+    private void removeDisappearedPages(KnownPages knownPages) {
+        List<KnownPage> disappeared = knownPages.unseenPages();
+        for (KnownPage known : disappeared) {
+            // Индексы, частоты лемм, содержимое и сама страница удаляются в одной транзакции
+            transactionTemplate.executeWithoutResult(status ->
+                    pageRepository.findById(known.getId()).ifPresent(page -> {
+                        removePageContribution(page);
+                        contentStore.deleteByPageId(page.getId());
+                        pageRepository.delete(page);
+                        // Страницы больше нет: обратный индекс перестаёт учитывать её в числе и длинах страниц
+                        invertedIndex.dropPages(List.of(page.getId()));
+                    }));
+        }
+        logger.info("🗑️ Удалено исчезнувших страниц: {}", disappeared.size());
+    }
 
-            siteRepository.delete(site);
+    // Вызывается в транзакции, которая затем сохраняет или удаляет страницу: при сбое старый вклад остаётся целиком
+    @Transactional
+    public void removePageContribution(Page page) {
+        List<Index> indexes = indexRepository.findByPageIdWithLemma(page.getId());
+        if (indexes.isEmpty()) {
+            return;
+        }
+        indexRepository.deleteByPageId(page.getId());
 
-            logger.info("Удалено {} записей из таблицы index.", indexesDeleted);
-            logger.info("Удалено {} записей из таблицы lemma.", lemmasDeleted);
-            logger.info("Удалено {} записей из таблицы page для сайта {}.", pagesDeleted, siteUrl);
-            logger.info("Сайт {} успешно удален.", siteUrl);
-        } else {
-            logger.warn("Сайт {} не найден в базе данных.", siteUrl);
+        Map<Integer, Integer> decrements = new HashMap<>();
+        for (Index index : indexes) {
+            decrements.merge(index.getLemma().getId(), Math.round(index.getRank()), Integer::sum);
         }
+        lemmaBulkRepository.subtract(decrements);
+        invertedIndex.removePage(page.getId(), decrements.keySet());
     }
 
     private void updateSiteStatusToIndexed(searchengine.model.Site site) {
@@ -224,7 +362,7 @@ public class IndexingService {
 
         site.setStatus(IndexingStatus.INDEXED);
         site.setStatusTime(LocalDateTime.now());
-        siteRepository.save(site);
+        generationCollector.switchGeneration(site);
         logger.info("Сайт {} изменил статус на INDEXED.", site.getUrl());
     }
 
@@ -277,95 +415,17 @@ public class IndexingService {
         return true;
     }
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public void processPageContent(Page page) {
-        try {
-            String text = extractTextFromHtml(page.getContent());
-            Map<String, Integer> lemmas = lemmatizeText(text);
-
-            Map<String, Lemma> lemmaCache = new HashMap<>();
-            List<Lemma> lemmasToSave = new ArrayList<>();
-            List<Index> indexesToSave = new ArrayList<>();
-
-            for (Map.Entry<String, Integer> entry : lemmas.entrySet()) {
-                String lemmaText = entry.getKey();
-                int count = entry.getValue();
-
-                Lemma lemma = lemmaCache.get(lemmaText);
-                if (lemma != null) {
-                    lemma.setFrequency(lemma.getFrequency() + count);
-                    continue;
-                }
-
-                Optional<Lemma> existingLemmaOpt = lemmaRepository.findByLemmaAndSite(lemmaText, page.getSite());
-                if (existingLemmaOpt.isPresent()) {
-                    lemma = existingLemmaOpt.get();
-                    lemma.setFrequency(lemma.getFrequency() + count);
-                } else {
-                    lemma = new Lemma(null, page.getSite(), lemmaText, count);
-                    lemmasToSave.add(lemma);
-                }
-                lemmaCache.put(lemmaText, lemma);
-            }
-
-            for (Map.Entry<String, Integer> entry : lemmas.entrySet()) {
-                Lemma lemma = lemmaCache.get(entry.getKey());
-                indexesToSave.add(new Index(null, page, lemma, (float) entry.getValue()));
-            }
-
-            if (!lemmasToSave.isEmpty()) {
-                logger.info("📌 Сохраняем новые леммы: {}", lemmasToSave.stream()
-                        .map(Lemma::getLemma)
-                        .collect(Collectors.joining(", ")));
-                lemmaRepository.saveAll(lemmasToSave);
-            }
-
-            if (!indexesToSave.isEmpty()) {
-                logger.info("📌 Сохраняем индексы для лемм: {}", indexesToSave.stream()
-                        .map(index -> index.getLemma().getLemma())
-                        .collect(Collectors.joining(", ")));
-                indexRepository.saveAll(indexesToSave);
-            }
-
-        } catch (IOException e) {
-            logger.error("❌ Ошибка при обработке страницы: {}", page.getPath(), e);
-        } catch (Exception e) {
-            logger.error("Ошибка при обработке лемм и индексов: {}", e.getMessage(), e);
+    @Transactional
+    public void savePageLemmas(Page page, Map<String, TermPositions> lemmas) {
+        int saved = pageIndexWriter.write(page, lemmas);
+        if (saved > 0) {
+            logger.info("📌 Сохранено {} лемм и индексов для страницы {}", saved, page.getPath());
         }
     }
 
 
 
-    private String extractTextFromHtml(String html) {
-        return Jsoup.parse(html).text();
-    }
-
-
-    private Map<String, Integer> lemmatizeText(String text) throws IOException {
-        Map<String, Integer> lemmaFrequencies = new HashMap<>();
-
-        LuceneMorphology russianMorph = new RussianLuceneMorphology();
-        LuceneMorphology englishMorph = new EnglishLuceneMorphology();
-
-        String[] words = text.toLowerCase().split("\\P{L}+");
-
-        for (String word : words) {
-            if (word.length() < 2) continue;
-
-            List<String> normalForms;
-            if (word.matches("[а-яё]+")) {
-                normalForms = russianMorph.getNormalForms(word);
-            } else if (word.matches("[a-z]+")) {
-                normalForms = englishMorph.getNormalForms(word);
-            } else {
-                continue;
-            }
-
-            for (String lemma : normalForms) {
-                lemmaFrequencies.put(lemma, lemmaFrequencies.getOrDefault(lemma, 0) + 1);
-            }
-        }
-
-        return lemmaFrequencies;
+    public Map<String, TermPositions> lemmatizeText(String text) {
+        return lemmaEngine.indexLemmas(text, 2);
     }
 }
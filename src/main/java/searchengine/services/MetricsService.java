@@ -0,0 +1,24 @@
+package searchengine.services;
+
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Service
+public class MetricsService {
+    private final List<MetricsSource> sources;
+
+    public MetricsService(List<MetricsSource> sources) {
+        this.sources = sources;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new TreeMap<>();
+        for (MetricsSource source : sources) {
+            metrics.put(source.getMetricsName(), source.getMetrics());
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,11 @@
+package searchengine.services;
+
+import java.util.Map;
+
+// Компонент со счётчиками для /api/metrics
+public interface MetricsSource {
+
+    String getMetricsName();
+
+    Map<String, Object> getMetrics();
+}
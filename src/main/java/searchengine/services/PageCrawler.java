@@ -1,49 +1,88 @@
 package searchengine.services;
 
-import org.jsoup.Jsoup;
+import org.jsoup.HttpStatusException;
 import org.jsoup.nodes.Element;
 import java.net.URI;
 
 import org.jsoup.nodes.Document;
 import org.jsoup.select.Elements;
+import searchengine.crawler.ContentHash;
+import searchengine.crawler.CrawlBudget;
+import searchengine.crawler.CrawlCheckpointStore;
+import searchengine.crawler.CrawlJob;
+import searchengine.crawler.CrawlRequest;
+import searchengine.crawler.CrawlScheduler;
+import searchengine.crawler.CrawlTaskHandler;
+import searchengine.crawler.FetchedPage;
+import searchengine.crawler.KnownPage;
+import searchengine.crawler.KnownPages;
+import searchengine.crawler.PageFetcher;
+import searchengine.crawler.RobotsTxt;
+import searchengine.crawler.RobotsTxtCache;
+import searchengine.crawler.SitemapReader;
+import searchengine.crawler.SitePathIndex;
+import searchengine.crawler.VisitedUrlSet;
+import searchengine.indexing.IndexingPipeline;
+import searchengine.indexing.PageContentStore;
 import searchengine.model.*;
 import searchengine.repository.PageRepository;
 import searchengine.repository.LemmaRepository;
 import searchengine.repository.IndexRepository;
+import searchengine.config.ConfigSite;
+import searchengine.config.CrawlSettings;
 import searchengine.config.SitesList;
+import searchengine.utils.TermPositions;
 import java.io.IOException;
-import java.util.concurrent.ForkJoinPool;
 import searchengine.repository.SiteRepository;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
-import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.util.List;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Lazy
-public class PageCrawler extends RecursiveAction {
+public class PageCrawler implements CrawlTaskHandler<FetchedPage> {
     private static final Logger logger = LoggerFactory.getLogger(PageCrawler.class);
     private final Site site;
     private final IndexingService indexingService;
-    private final String url;
-    private final Set<String> visitedUrls;
+    private final VisitedUrlSet visitedUrls;
     private final PageRepository pageRepository;
     private final LemmaRepository lemmaRepository;
     private final IndexRepository indexRepository;
-    private final Set<String> visitedPages = new ConcurrentSkipListSet<>();
     private final SiteRepository siteRepository;
     private final SitesList sitesList;
-    private final int depth;  // <-- Добавляем глубину
+    private final KnownPages knownPages; // null при полной переиндексации
+    private final SitePathIndex pathIndex;
+    private final RobotsTxt robots;
+    private final PageFetcher pageFetcher;
+    private final CrawlBudget budget;
+    private final IndexingPipeline pipeline;
+    private final PageContentStore contentStore;
+    private final TransactionTemplate transactionTemplate;
 
     public PageCrawler(Site site, LemmaRepository lemmaRepository, SiteRepository siteRepository,
-                       IndexRepository indexRepository, String url, Set<String> visitedUrls,
+                       IndexRepository indexRepository, VisitedUrlSet visitedUrls,
                        PageRepository pageRepository, IndexingService indexingService,
-                       SitesList sitesList, int depth) {  // <-- Добавляем параметр depth
+                       SitesList sitesList, KnownPages knownPages, SitePathIndex pathIndex,
+                       RobotsTxt robots, PageFetcher pageFetcher, CrawlBudget budget,
+                       IndexingPipeline pipeline, PageContentStore contentStore,
+                       TransactionTemplate transactionTemplate) {
         this.site = site;
-        this.url = url;
+        this.transactionTemplate = transactionTemplate;
+        this.contentStore = contentStore;
+        this.pipeline = pipeline;
+        this.budget = budget;
+        this.pageFetcher = pageFetcher;
+        this.robots = robots;
+        this.pathIndex = pathIndex;
+        this.knownPages = knownPages;
         this.visitedUrls = visitedUrls;
         this.pageRepository = pageRepository;
         this.indexRepository = indexRepository;
@@ -51,97 +90,248 @@ public class PageCrawler extends RecursiveAction {
         this.indexingService = indexingService;
         this.siteRepository = siteRepository;
         this.sitesList = sitesList;
-        this.depth = depth;  // <-- Сохраняем глубину
     }
 
+    // Выполняется в потоке загрузки
     @Override
-    protected void compute() {
-        if (!indexingService.isIndexingInProgress() || depth > 3 || !visitedPages.add(url) || shouldSkipUrl(url) ||
-                pageRepository.existsByPath(url.replace(site.getUrl(), ""))) {
-            return;
+    public FetchedPage fetch(CrawlRequest request) {
+        String url = request.getUrl();
+        int depth = request.getDepth();
+
+        if (!indexingService.isIndexingInProgress()) {
+            request.getJob().cancel();
+            return null;
+        }
+        String path = url.replace(site.getUrl(), "");
+        KnownPage known = knownPages != null ? knownPages.get(path) : null;
+        // Повторы отсеиваются при постановке в очередь, см. visitKey
+        if (!budget.allowsDepth(depth) || shouldSkipUrl(url) ||
+                (known == null && pathIndex.contains(site.getId(), path))) {
+            return null;
+        }
+        if (!robots.isAllowed(robotsPath(url))) {
+            logger.info("🤖 Запрещено robots.txt: {}", url);
+            return null;
+        }
+        if (known != null && !modifiedSince(request.getLastModified(), known.getLastModified())) {
+            // По lastmod из карты сайта страница не менялась: даже условный запрос не нужен
+            knownPages.markSeen(path);
+            logger.info("♻️ Страница не изменилась (lastmod): {}", url);
+            return null;
         }
 
-        long startTime = System.currentTimeMillis();
+        if (!budget.tryAcquirePage()) {
+            // Бюджет исчерпан: остальная очередь снимается, загруженное дообрабатывается
+            request.getJob().close("исчерпан бюджет (" + budget.getExhaustedReason() + ")");
+            return null;
+        }
+
+        // Паузу между запросами к хосту выдерживает CrawlScheduler, поток здесь не спит
+        logger.info("🌍 Загружаем страницу (глубина {}): {}", depth, url);
+
+        Map<String, String> headers = new HashMap<>();
+        if (known != null) {
+            // Условный запрос: сервер ответит 304, если страница не менялась
+            if (known.getEtag() != null) {
+                headers.put("If-None-Match", known.getEtag());
+            }
+            if (known.getLastModified() != null) {
+                headers.put("If-Modified-Since", known.getLastModified());
+            }
+        }
 
         try {
-            // Добавляем задержку для предотвращения перегрузки сервера
-            long delay = 4000 + (long) (Math.random() * 8000);
-            try {
-                Thread.sleep(delay);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                logger.error("Поток прерван: {}", e.getMessage());
-                return;
+            FetchedPage fetched = pageFetcher.fetch(url, headers);
+            if (fetched == null) {
+                // Тело больше лимита: страницу не индексируем, но и не удаляем
+                if (known != null) {
+                    knownPages.markSeen(path);
+                }
+                return null;
+            }
+            if (fetched.isHtml()) {
+                budget.addBytes(fetched.getBody().length);
+                if (budget.isExhausted()) {
+                    request.getJob().close("исчерпан бюджет (" + budget.getExhaustedReason() + ")");
+                }
+            }
+            if (known != null && fetched.isNotModified()) {
+                knownPages.markSeen(path);
+                logger.info("♻️ Страница не изменилась (304): {}", url);
+                return null;
+            }
+            return fetched;
+        } catch (HttpStatusException e) {
+            // 404/410 у известной страницы: она исчезла и будет удалена после обхода
+            if (known != null && e.getStatusCode() != 404 && e.getStatusCode() != 410) {
+                knownPages.markSeen(path);
             }
+            logger.warn("⚠️ Код {} при загрузке: {}. Пропускаем.", e.getStatusCode(), url);
+            return null;
+        } catch (IOException e) {
+            if (known != null) {
+                knownPages.markSeen(path);
+            }
+            logger.warn("⚠️ Тайм-аут при загрузке: {}. Пропускаем.", url);
+            return null;
+        }
+    }
+
+    @Override
+    public void process(CrawlRequest request, FetchedPage response) throws IOException {
+        // Перенаправленная страница сохраняется и разбирается по адресу, где она на самом деле находится
+        String url = response.getFinalUrl();
+        int depth = request.getDepth();
+        long startTime = System.currentTimeMillis();
+        boolean handedOff = false;
 
+        try {
             if (!indexingService.isIndexingInProgress()) {
                 return;
             }
 
-            site.setStatusTime(LocalDateTime.now());
-            siteRepository.save(site);
-
-            logger.info("🌍 Загружаем страницу (глубина {}): {}", depth, url);
-
-            // Получаем и парсим страницу
-            try {
-                Document document = Jsoup.connect(url)
-                        .userAgent("Mozilla/5.0")
-                        .referrer("http://www.google.com")
-                        .ignoreContentType(true)
-                        .timeout(10000)
-                        .get();
-
-                if (!indexingService.isIndexingInProgress()) {
+            if (response.isRedirected() && !acceptRedirect(request.getUrl(), url)) {
+                return;
+            }
+            String path = url.replace(site.getUrl(), "");
+            KnownPage known = knownPages != null ? knownPages.get(path) : null;
+            // Хеш считается только для HTML: файлы и медиа заново не скачиваются
+            String contentHash = response.isHtml() ? ContentHash.sha256(response.getBody()) : null;
+
+            if (known != null) {
+                knownPages.markSeen(path);
+                if (contentHash != null && contentHash.equals(known.getContentHash())) {
+                    // Содержимое то же: леммы и индексы не трогаем, обновляем только валидаторы
+                    pageRepository.updateValidators(known.getId(), response.getEtag(), response.getLastModified());
+                    logger.info("♻️ Содержимое не изменилось: {}", url);
                     return;
                 }
+            }
 
-                // Получаем код ответа и тип контента
-                String contentType = document.connection().response().contentType();
-                int responseCode = document.connection().response().statusCode();
-
-                Page page = new Page();
-                page.setPath(url.replace(site.getUrl(), ""));
-                page.setSite(site);
-                page.setCode(responseCode);
+            Document document = response.isHtml() ? response.parse() : null;
+            String html;
+            String title = null;
+            String text;
+            List<String[]> media;
+            if (document != null) {
+                html = document.html();
+                title = document.title();
+                text = document.text();
+                media = collectFilesAndImages(document);
+            } else {
+                // Тело файла не скачивалось: сохраняем только ссылку
+                logger.debug("Файл {} ({}), тело не загружалось", url, response.getContentType());
+                html = "FILE: " + url;
+                text = html;
+                media = List.of();
+            }
+            pathIndex.add(site.getId(), path);
+
+            // Лемматизация и запись идут в своих стадиях конвейера; адрес завершится после записи
+            Runnable done = request.deferCompletion();
+            String pageTitle = title;
+            pipeline.submit(text, indexingService::lemmatizeText,
+                    lemmas -> persistPage(url, path, known, response, contentHash, html, pageTitle, text,
+                            media, lemmas, startTime, depth),
+                    () -> {
+                        finalizeIndexing(url);
+                        done.run();
+                    });
+            handedOff = true;
+
+            // 🔥 Ставим в очередь внутренние ссылки, пока следующий уровень в пределах бюджета
+            if (document != null && budget.allowsDepth(depth + 1) && indexingService.isIndexingInProgress()) {
+                processLinks(request.getJob(), document, url, depth);
+            }
 
-                if (contentType.startsWith("text/html")) {
-                    page.setContent(document.html());
-                    indexFilesAndImages(document);
-                } else if (contentType.startsWith("image/") || contentType.startsWith("application/")) {
-                    page.setContent("FILE: " + url);
-                }
+        } finally {
+            if (!handedOff) {
+                finalizeIndexing(url);
+            }
+        }
+    }
 
-                pageRepository.save(page);
-                indexingService.processPageContent(page);
+    // Адрес перенаправления должен быть на том же сайте и ещё не встречаться в обходе
+    private boolean acceptRedirect(String requestedUrl, String finalUrl) {
+        if (!finalUrl.startsWith(site.getUrl()) || shouldSkipUrl(finalUrl)) {
+            logger.info("↪️ {} перенаправляет за пределы сайта: {}. Пропускаем.", requestedUrl, finalUrl);
+            return false;
+        }
+        String finalKey = visitKey(finalUrl);
+        if (finalKey == null || finalKey.equals(visitKey(requestedUrl))) {
+            return finalKey != null;
+        }
+        String finalPath = finalUrl.replace(site.getUrl(), "");
+        boolean known = knownPages != null && knownPages.get(finalPath) != null;
+        // Целевой адрес уже в обходе или сохранён раньше: обработается (или обработан) под своим адресом
+        if (!visitedUrls.add(finalKey) || (!known && pathIndex.contains(site.getId(), finalPath))) {
+            logger.info("↪️ {} перенаправляет на уже известный адрес {}", requestedUrl, finalUrl);
+            return false;
+        }
+        logger.info("↪️ {} перенаправляет на {}", requestedUrl, finalUrl);
+        return true;
+    }
 
-                long endTime = System.currentTimeMillis();
-                logger.info("✅ [{}] Проиндексировано за {} мс (глубина {}): {}",
-                        responseCode, (endTime - startTime), depth, url);
+    // Стадия записи: страница, её содержимое, найденные на ней файлы и изображения, леммы и индексы
+    private void persistPage(String url, String path, KnownPage known, FetchedPage response, String contentHash,
+                             String html, String title, String text, List<String[]> media,
+                             Map<String, TermPositions> lemmas, long startTime, int depth) {
+        if (!indexingService.isIndexingInProgress()) {
+            return;
+        }
+        // Страница, снятие вклада её старой версии и новые индексы фиксируются вместе или не фиксируются вовсе
+        transactionTemplate.executeWithoutResult(status -> savePage(path, known, response, contentHash, html,
+                title, text, media, lemmas));
 
-                // 🔥 Запускаем обработку внутренних ссылок только если глубина < 3
-                if (depth < 3 && indexingService.isIndexingInProgress()) {
-                    processLinks(document, depth + 1);
-                }
+        long endTime = System.currentTimeMillis();
+        logger.info("✅ [{}] Проиндексировано за {} мс (глубина {}): {}",
+                response.getStatusCode(), (endTime - startTime), depth, url);
+    }
 
-            } catch (IOException e) {
-                logger.warn("⚠️ Тайм-аут при загрузке: {}. Пропускаем.", url);
+    private void savePage(String path, KnownPage known, FetchedPage response, String contentHash, String html,
+                          String title, String text, List<String[]> media, Map<String, TermPositions> lemmas) {
+        site.setStatusTime(LocalDateTime.now());
+        siteRepository.save(site);
+
+        Page page = null;
+        if (known != null) {
+            page = pageRepository.findById(known.getId()).orElse(null);
+            if (page != null) {
+                // Снимаем вклад старой версии страницы в частоты лемм
+                indexingService.removePageContribution(page);
             }
+        }
+        if (page == null) {
+            page = new Page();
+        }
+        page.setPath(path);
+        page.setSite(site);
+        page.setCode(response.getStatusCode());
+        page.setEtag(response.getEtag());
+        page.setLastModified(response.getLastModified());
+        page.setContentHash(contentHash);
+        // HTML уходит сжатым в page_content, в строке page остаётся только ссылка на файл
+        page.setContent(response.isHtml() ? "" : html);
+        pageRepository.save(page);
+        if (response.isHtml()) {
+            contentStore.save(page.getId(), html, title, text);
+        }
 
-        } finally {
-            finalizeIndexing();
+        for (String[] item : media) {
+            saveMedia(item[0], item[1]);
         }
+        indexingService.savePageLemmas(page, lemmas);
     }
 
 
 
-    private void finalizeIndexing() {
+    private void finalizeIndexing(String url) {
         indexingService.checkAndUpdateStatus(site.getUrl());
         logger.info("Индексация завершена для URL: {}", url);
     }
 
 
-    private boolean checkAndLogStopCondition(String stage) {
+    private boolean checkAndLogStopCondition(String stage, String url) {
         if (!indexingService.isIndexingInProgress()) {
             logger.info("Индексация прервана на этапе {} для URL: {}", stage, url);
             return false;
@@ -149,21 +339,24 @@ public class PageCrawler extends RecursiveAction {
         return true;
     }
 
-    private void indexFilesAndImages(Document document) {
+    // Адреса изображений и документов страницы: {адрес, тип}; сохраняются на стадии записи
+    private List<String[]> collectFilesAndImages(Document document) {
         Elements images = document.select("img[src]");
         Elements files = document.select("a[href]");
+        List<String[]> media = new ArrayList<>();
 
         for (var img : images) {
             String imgUrl = cleanUrl(img.absUrl("src"));
-            saveMedia(imgUrl, "image");
+            media.add(new String[]{imgUrl, "image"});
         }
 
         for (var file : files) {
             String fileUrl = cleanUrl(file.absUrl("href"));
             if (fileUrl.matches(".*\\.(pdf|docx|xlsx|zip|rar)$")) {
-                saveMedia(fileUrl, "file");
+                media.add(new String[]{fileUrl, "file"});
             }
         }
+        return media;
     }
 
     private void saveMedia(String url, String type) {
@@ -171,13 +364,18 @@ public class PageCrawler extends RecursiveAction {
             logger.info("🚨 Медиа-ссылка {} пропущена (фильтр URL)", url);
             return;
         }
+        String path = url.replace(site.getUrl(), "");
+        if (pathIndex.contains(site.getId(), path)) {
+            return;
+        }
 
         Page mediaPage = new Page();
-        mediaPage.setPath(url.replace(site.getUrl(), ""));
+        mediaPage.setPath(path);
         mediaPage.setSite(site);
         mediaPage.setCode(200);
         mediaPage.setContent(type.toUpperCase() + ": " + url);
         pageRepository.save(mediaPage);
+        pathIndex.add(site.getId(), path);
 
         logger.info("📂 Добавлен {}: {}", type, url);
     }
@@ -188,32 +386,141 @@ public class PageCrawler extends RecursiveAction {
     }
 
 
-    public static void startCrawling(Site site, String startUrl,
+    // Бюджет позволяет отличить полный обход от остановленного по лимиту
+    public static CrawlBudget startCrawling(Site site, String startUrl,
                                      LemmaRepository lemmaRepository,
                                      SiteRepository siteRepository,
                                      IndexRepository indexRepository,
                                      PageRepository pageRepository,
                                      IndexingService indexingService,
-                                     SitesList sitesList) {
+                                     SitesList sitesList,
+                                     CrawlScheduler crawlScheduler,
+                                     CrawlSettings crawlSettings,
+                                     SitePathIndex pathIndex,
+                                     RobotsTxtCache robotsTxtCache,
+                                     SitemapReader sitemapReader,
+                                     PageFetcher pageFetcher,
+                                     CrawlCheckpointStore checkpointStore,
+                                     IndexingPipeline pipeline,
+                                     PageContentStore contentStore,
+                                     TransactionTemplate transactionTemplate,
+                                     boolean resume,
+                                     KnownPages knownPages) throws InterruptedException {
+
+        // Пути сайта читаем из базы один раз, дальше проверки идут по памяти
+        pathIndex.load(site.getId(), site.getWriteGeneration());
+
+        // robots.txt: правила Disallow проверяются при загрузке, Crawl-delay задаёт паузу хоста
+        RobotsTxt robots = robotsTxtCache.get(startUrl);
+        if (robots.getCrawlDelayMs() != null) {
+            crawlScheduler.setCrawlDelay(CrawlRequest.hostOf(startUrl), robots.getCrawlDelayMs());
+        }
 
-        ForkJoinPool forkJoinPool = new ForkJoinPool();
-        try {
-            // Invoke PageCrawler with necessary parameters, including SitesList and IndexingService
-            forkJoinPool.invoke(new PageCrawler(
-                    site,                          // Site object
-                    lemmaRepository,               // LemmaRepository object
-                    siteRepository,                // SiteRepository object
-                    indexRepository,               // IndexRepository object
-                    startUrl,                      // Starting URL for indexing
-                    new HashSet<>(),               // Set of visited URLs
-                    pageRepository,                // PageRepository object
-                    indexingService,               // IndexingService object
-                    sitesList,                      // SitesList object
-                    0                               // <-- Начальная глубина (0)
-            ));
+        // Все сайты обходятся общим пулом планировщика, здесь только ждём окончания обхода
+        ConfigSite configSite = sitesList.getSites().stream()
+                .filter(s -> s.getUrl().equals(site.getUrl()))
+                .findFirst()
+                .orElse(null);
+        CrawlBudget budget = CrawlBudget.of(crawlSettings, configSite);
+
+        // При возобновлении посещённые адреса, очередь и уже перепроверенные страницы берутся из контрольной точки
+        VisitedUrlSet visitedUrls = new VisitedUrlSet(crawlSettings.getVisitedSetMaxBytes(),
+                crawlSettings.getVisitedBloomFilterBytes());
+        CrawlCheckpointStore.Checkpoint checkpoint = resume ? checkpointStore.load(site.getUrl(), visitedUrls, knownPages) : null;
+        if (resume && checkpoint == null) {
+            visitedUrls = new VisitedUrlSet(crawlSettings.getVisitedSetMaxBytes(),
+                    crawlSettings.getVisitedBloomFilterBytes());
+        }
+
+        PageCrawler crawler = new PageCrawler(
+                site,                          // Site object
+                lemmaRepository,               // LemmaRepository object
+                siteRepository,                // SiteRepository object
+                indexRepository,               // IndexRepository object
+                visitedUrls,                   // Отпечатки посещённых URL
+                pageRepository,                // PageRepository object
+                indexingService,               // IndexingService object
+                sitesList,                     // SitesList object
+                knownPages,                    // Известные страницы (инкрементальный режим)
+                pathIndex,                     // Пути страниц сайта в памяти
+                robots,                        // Правила robots.txt
+                pageFetcher,                   // Загрузка с проверкой заголовков
+                budget,                        // Лимиты обхода сайта
+                pipeline,                      // Стадии лемматизации и записи
+                contentStore,                  // Сжатый HTML и текст страниц
+                transactionTemplate            // Транзакция записи страницы
+        );
+
+        CrawlJob job = configSite != null && configSite.getMaxConcurrentFetches() != null
+                ? crawlScheduler.newJob(site.getUrl(), crawler, configSite.getMaxConcurrentFetches())
+                : crawlScheduler.newJob(site.getUrl(), crawler);
+        if (checkpoint != null) {
+            for (CrawlCheckpointStore.Entry entry : checkpoint.getFrontier()) {
+                job.enqueue(entry.getUrl(), entry.getDepth(), entry.getLastModified());
+            }
+            logger.info("▶️ Обход {} продолжен с контрольной точки: адресов в очереди {}",
+                    site.getUrl(), checkpoint.getFrontier().size());
+        } else {
+            seedFrontier(crawler, job, site, startUrl, robots, crawlSettings, sitemapReader, knownPages);
+        }
 
+        ScheduledFuture<?> checkpointTask = checkpointStore.schedule(site.getUrl(), job, crawler.visitedUrls, knownPages);
+        boolean completed = false;
+        try {
+            job.awaitCompletion();
+            completed = !job.isCancelled();
         } finally {
-            forkJoinPool.shutdown();
+            if (!completed) {
+                // Страницы остановленного обхода ещё могут быть в конвейере: сайт освобождается только после них
+                job.cancel();
+                job.awaitDrained();
+            }
+            if (checkpointTask != null) {
+                checkpointTask.cancel(false);
+            }
+            // Завершённому обходу точка не нужна; остановленный сохраняем для продолжения
+            if (completed) {
+                checkpointStore.delete(site.getUrl());
+            } else {
+                checkpointStore.save(site.getUrl(), job, crawler.visitedUrls, knownPages);
+            }
+        }
+
+        logger.info("📊 Посещённых адресов {}: {}, память {} КБ", site.getUrl(),
+                crawler.visitedUrls.size(), crawler.visitedUrls.memoryBytes() / 1024);
+        logger.info("📊 Загружено {}: {} страниц, {} КБ{}", site.getUrl(), budget.getPages(),
+                budget.getBytes() / 1024,
+                budget.isExhausted() ? ", остановлено по лимиту: " + budget.getExhaustedReason() : "");
+        return budget;
+    }
+
+    // Начальная очередь нового обхода: стартовая страница, карты сайта и известные страницы
+    private static void seedFrontier(PageCrawler crawler, CrawlJob job, Site site, String startUrl,
+                                     RobotsTxt robots, CrawlSettings crawlSettings,
+                                     SitemapReader sitemapReader, KnownPages knownPages) {
+        crawler.visitedUrls.add(visitKey(startUrl));
+        job.enqueue(startUrl, 0); // <-- Начальная глубина (0)
+        if (crawlSettings.isUseSitemaps()) {
+            // Адреса из карт сайта сразу попадают в очередь вместе с lastmod
+            List<String> sitemaps = robots.getSitemaps().isEmpty()
+                    ? List.of(site.getUrl().replaceAll("/$", "") + "/sitemap.xml")
+                    : robots.getSitemaps();
+            sitemapReader.read(sitemaps, (sitemapUrl, lastModified) -> {
+                if (sitemapUrl.startsWith(site.getUrl()) && !crawler.shouldSkipUrl(sitemapUrl)
+                        && crawler.visitedUrls.add(visitKey(sitemapUrl))) {
+                    job.enqueue(sitemapUrl, 1, lastModified);
+                }
+                return !job.isCancelled();
+            });
+        }
+        if (knownPages != null) {
+            // Ранее скачанные страницы перепроверяем напрямую: ссылки неизменённых страниц не разбираются
+            for (KnownPage known : knownPages.crawledPages()) {
+                String knownUrl = site.getUrl() + known.getPath();
+                if (crawler.visitedUrls.add(visitKey(knownUrl))) {
+                    job.enqueue(knownUrl, 1);
+                }
+            }
         }
     }
 
@@ -251,17 +558,12 @@ public class PageCrawler extends RecursiveAction {
                 .anyMatch(configSite -> url.startsWith(configSite.getUrl()));
     }
 
-    private void processLinks(Document document, int currentDepth) {
-        if (currentDepth >= 3) {
-            logger.debug("Достигнута максимальная глубина индексации ({}). Остановка обработки ссылок.", currentDepth);
-            return;
-        }
-
+    private void processLinks(CrawlJob job, Document document, String url, int currentDepth) {
         Elements links = document.select("a[href]");
-        List<PageCrawler> subtasks = new ArrayList<>();
+        int queued = 0;
 
         for (Element link : links) {
-            if (!checkAndLogStopCondition("При обработке ссылок")) return;
+            if (!checkAndLogStopCondition("При обработке ссылок", url)) return;
 
             String childUrl = link.absUrl("href");
 
@@ -292,48 +594,63 @@ public class PageCrawler extends RecursiveAction {
             }
 
             // Извлечение пути из URL
-            String childPath = null;
-            try {
-                URI childUri = new URI(childUrl);
-                childPath = childUri.getPath();
-            } catch (Exception e) {
-                logger.warn("Ошибка извлечения пути из URL: {}", childUrl);
-            }
+            String childPath = visitKey(childUrl);
 
             // Добавление в очередь на обработку, если ссылка еще не была обработана
             if (childPath != null) {
-                synchronized (visitedUrls) {
-                    if (!visitedUrls.contains(childPath)) {
-                        visitedUrls.add(childPath);
-                        subtasks.add(new PageCrawler(
-                                site,                          // Site object
-                                lemmaRepository,               // LemmaRepository object
-                                siteRepository,                // SiteRepository object
-                                indexRepository,               // IndexRepository object
-                                childUrl,                      // Starting URL for indexing
-                                visitedUrls,                   // Set of visited URLs
-                                pageRepository,                // PageRepository object
-                                indexingService,               // IndexingService object
-                                sitesList,                     // SitesList object
-                                currentDepth + 1               // Передаём увеличенную глубину
-                        ));
-                        logger.debug("Добавлена ссылка в обработку (глубина {}): {}", currentDepth + 1, childUrl);
-                    } else {
-                        logger.debug("Ссылка уже обработана: {}", childUrl);
-                    }
+                if (visitedUrls.add(childPath)) {
+                    job.enqueue(childUrl, currentDepth + 1); // Передаём увеличенную глубину
+                    queued++;
+                    logger.debug("Добавлена ссылка в обработку (глубина {}): {}", currentDepth + 1, childUrl);
+                } else {
+                    // Ещё одна ссылка на адрес из очереди поднимает его приоритет
+                    job.addInlink(childUrl);
+                    logger.debug("Ссылка уже обработана: {}", childUrl);
                 }
             }
         }
 
-        // Запуск подзадач
-        if (!subtasks.isEmpty()) {
-            invokeAll(subtasks);
+        logger.debug("🔗 Поставлено в очередь ссылок: {}", queued);
+    }
+
+    // Путь с query для сопоставления с правилами robots.txt
+    private static String robotsPath(String url) {
+        try {
+            URI uri = new URI(url);
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            return uri.getRawQuery() == null ? path : path + "?" + uri.getRawQuery();
+        } catch (Exception e) {
+            return url;
+        }
+    }
+
+    // Менялась ли страница после сохранённого Last-Modified, по lastmod из карты сайта
+    private static boolean modifiedSince(Instant sitemapLastModified, String storedLastModified) {
+        if (sitemapLastModified == null || storedLastModified == null) {
+            return true;
+        }
+        try {
+            Instant stored = ZonedDateTime.parse(storedLastModified, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return sitemapLastModified.isAfter(stored);
+        } catch (DateTimeParseException e) {
+            return true;
+        }
+    }
+
+    // Ключ дедупликации: путь URL без query и фрагмента
+    private static String visitKey(String url) {
+        try {
+            String path = new URI(url).getPath();
+            return path == null || path.isEmpty() ? "/" : path;
+        } catch (Exception e) {
+            logger.warn("Ошибка извлечения пути из URL: {}", url);
+            return null;
         }
     }
 
     private void savePhoneLink(String telUrl) {
         String phoneNumber = telUrl.substring(4); // Убираем "tel:"
-        if (pageRepository.existsByPathAndSiteId(phoneNumber, site.getId())) {
+        if (pathIndex.contains(site.getId(), phoneNumber)) {
             logger.info("Телефонный номер {} уже сохранён. Пропускаем.", phoneNumber);
             return;
         }
@@ -344,12 +661,13 @@ public class PageCrawler extends RecursiveAction {
         page.setCode(0); // Код 0 для телефонных ссылок
         page.setContent("Телефонный номер: " + phoneNumber);
         pageRepository.save(page);
+        pathIndex.add(site.getId(), phoneNumber);
 
         logger.info("Сохранён телефонный номер: {}", phoneNumber);
     }
 
     private void saveJavaScriptLink(String jsUrl) {
-        if (pageRepository.existsByPathAndSiteId(jsUrl, site.getId())) {
+        if (pathIndex.contains(site.getId(), jsUrl)) {
             logger.info("JavaScript ссылка {} уже сохранена. Пропускаем.", jsUrl);
             return;
         }
@@ -360,6 +678,7 @@ public class PageCrawler extends RecursiveAction {
         page.setCode(0); // Код 0 для JavaScript ссылок
         page.setContent("JavaScript ссылка: " + jsUrl);
         pageRepository.save(page);
+        pathIndex.add(site.getId(), jsUrl);
 
         logger.info("Сохранена JavaScript ссылка: {}", jsUrl);
     }
@@ -1,21 +1,35 @@
 package searchengine.services;
 
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.select.Elements;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import searchengine.model.Lemma;
-import searchengine.model.Index;
 import java.util.Map;
-import java.util.HashMap;
 import java.util.List;
-import java.util.HashSet;
 
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import searchengine.config.SitesList;
 import searchengine.config.ConfigSite;
+import searchengine.utils.LemmaEngine;
+import searchengine.utils.TermPositions;
+import searchengine.indexing.LemmaDictionary;
+import searchengine.indexing.PageContentStore;
+import searchengine.indexing.PageIndexWriter;
+import searchengine.crawler.CrawlBudget;
+import searchengine.crawler.CrawlJob;
+import searchengine.crawler.CrawlRequest;
+import searchengine.crawler.CrawlScheduler;
+import searchengine.crawler.CrawlTaskHandler;
+import searchengine.crawler.FetchedPage;
+import searchengine.crawler.PageFetcher;
+import searchengine.crawler.RobotsTxt;
+import searchengine.crawler.RobotsTxtCache;
+import searchengine.crawler.SitePathIndex;
+import searchengine.crawler.VisitedUrlSet;
+import searchengine.config.CrawlSettings;
 import searchengine.model.Page;
 import searchengine.model.Site;
 import searchengine.model.IndexingStatus;
@@ -26,15 +40,7 @@ import searchengine.repository.SiteRepository;
 import java.io.IOException;
 import java.time.LocalDateTime;
 
-import java.util.ArrayList;
-import org.apache.lucene.morphology.LuceneMorphology;
-import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
-import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
 
-import java.util.Set;
-import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.RecursiveTask;
 
 @Service
 public class PageIndexingService {
@@ -45,102 +51,54 @@ public class PageIndexingService {
     private final SitesList sitesList;
     private final LemmaRepository lemmaRepository;
     private final IndexRepository indexRepository;
-    private LuceneMorphology russianMorphology;
-    private LuceneMorphology englishMorphology;
-    private final Set<String> visitedPages = new ConcurrentSkipListSet<>();
-
-    public PageIndexingService(PageRepository pageRepository,LemmaRepository lemmaRepository,IndexRepository indexRepository, SiteRepository siteRepository, SitesList sitesList) {
+    private final CrawlScheduler crawlScheduler;
+    private final CrawlSettings crawlSettings;
+    private final SitePathIndex pathIndex;
+    private final RobotsTxtCache robotsTxtCache;
+    private final PageFetcher pageFetcher;
+    private final LemmaEngine lemmaEngine;
+    private final LemmaDictionary lemmaDictionary;
+    private final PageIndexWriter pageIndexWriter;
+    private final PageContentStore contentStore;
+    private final IndexingMode indexingMode;
+    private final TransactionTemplate transactionTemplate;
+
+    public PageIndexingService(PageRepository pageRepository,LemmaRepository lemmaRepository,IndexRepository indexRepository, SiteRepository siteRepository, SitesList sitesList, CrawlScheduler crawlScheduler, CrawlSettings crawlSettings, SitePathIndex pathIndex, RobotsTxtCache robotsTxtCache, PageFetcher pageFetcher, LemmaEngine lemmaEngine, LemmaDictionary lemmaDictionary, PageIndexWriter pageIndexWriter, PageContentStore contentStore, IndexingMode indexingMode, PlatformTransactionManager transactionManager) {
         this.pageRepository = pageRepository;
+        this.indexingMode = indexingMode;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.contentStore = contentStore;
+        this.pageIndexWriter = pageIndexWriter;
+        this.lemmaDictionary = lemmaDictionary;
+        this.lemmaEngine = lemmaEngine;
+        this.pageFetcher = pageFetcher;
+        this.robotsTxtCache = robotsTxtCache;
+        this.pathIndex = pathIndex;
+        this.crawlSettings = crawlSettings;
+        this.crawlScheduler = crawlScheduler;
         this.siteRepository = siteRepository;
         this.sitesList = sitesList;
         this.indexRepository = indexRepository;
         this.lemmaRepository = lemmaRepository;
-
-        try {
-            this.russianMorphology = new RussianLuceneMorphology();
-            this.englishMorphology = new EnglishLuceneMorphology();
-        } catch (IOException e) {
-            throw new RuntimeException("Ошибка инициализации морфологии", e);
-        }
     }
 
 
     @Transactional
-    public void processPageContent(Page page) {
-        String text = extractTextFromHtml(page.getContent());
-        Map<String, Integer> lemmas = lemmatizeText(text);
-
-        Set<String> processedLemmas = new HashSet<>();
-        List<Lemma> lemmasToSave = new ArrayList<>();
-        List<Index> indexesToSave = new ArrayList<>();
-
-        for (Map.Entry<String, Integer> entry : lemmas.entrySet()) {
-            String lemmaText = entry.getKey();
-            int count = entry.getValue();
-
-            // Логируем найденные леммы
-            logger.info("🔤 Найдена лемма: '{}', частота: {}", lemmaText, count);
-
-            // Ищем лемму в базе
-            List<Lemma> foundLemmas = lemmaRepository.findByLemma(lemmaText);
-            Lemma lemma;
-
-            if (foundLemmas.isEmpty()) {
-                // Если лемма не найдена, создаем новую
-                lemma = new Lemma(null, page.getSite(), lemmaText, 0);
-            } else {
-                // Если лемма найдена, берем первую из списка
-                lemma = foundLemmas.get(0);
-            }
-
-            // Увеличиваем frequency только если эта лемма впервые встречается на странице
-            if (!processedLemmas.contains(lemmaText)) {
-                lemma.setFrequency(lemma.getFrequency() + 1);
-                processedLemmas.add(lemmaText);
-            }
-
-            lemmasToSave.add(lemma);
-
-            // Создаем связь леммы с текущей страницей
-            Index index = new Index(null, page, lemma, (float) count);
-            indexesToSave.add(index);
-        }
-
-        // Сохраняем все данные за 2 запроса
-        lemmaRepository.saveAll(lemmasToSave);
-        indexRepository.saveAll(indexesToSave);
-    }
-
-    // 🔹 Метод для извлечения чистого текста из HTML
-    private String extractTextFromHtml(String html) {
-        return Jsoup.parse(html).text();
+    public void processPageContent(Page page, Map<String, TermPositions> lemmas) {
+        pageIndexWriter.write(page, lemmas);
     }
 
     // 🔹 Метод для лемматизации текста
-    private Map<String, Integer> lemmatizeText(String text) {
-        Map<String, Integer> lemmas = new HashMap<>();
-        String[] words = text.toLowerCase().replaceAll("[^а-яa-z\\s]", "").split("\\s+");
-
-        for (String word : words) {
-            if (word.length() < 3) continue; // Пропускаем короткие слова
-
-            List<String> normalForms;
-            if (word.matches("[а-я]+")) {
-                normalForms = russianMorphology.getNormalForms(word);
-            } else if (word.matches("[a-z]+")) {
-                normalForms = englishMorphology.getNormalForms(word);
-            } else {
-                continue;
-            }
-
-            for (String lemma : normalForms) {
-                lemmas.put(lemma, lemmas.getOrDefault(lemma, 0) + 1);
-            }
-        }
-        return lemmas;
+    private Map<String, TermPositions> lemmatizeText(String text) {
+        return lemmaEngine.indexLemmas(text, 3); // Пропускаем короткие слова
     }
 
+    // IllegalStateException — индекс сейчас меняет обход или переиндексация
     public boolean indexPage(String baseUrl) {
+        String busy = indexingMode.tryEnter(IndexingMode.Mode.PAGE);
+        if (busy != null) {
+            throw new IllegalStateException(busy);
+        }
         long startTime = System.currentTimeMillis();
         Site site = null;
 
@@ -161,8 +119,16 @@ public class PageIndexingService {
             site = siteRepository.saveAndFlush(site);
 
             logger.info("🔄 Начинаем индексацию сайта: {}", baseUrl);
-            ForkJoinPool forkJoinPool = new ForkJoinPool();
-            forkJoinPool.invoke(new PageCrawler(site, baseUrl)); // ❗ deleteSiteData вызывается внутри PageCrawler
+            pathIndex.load(site.getId(), site.getWriteGeneration());
+            RobotsTxt robots = robotsTxtCache.get(baseUrl);
+            if (robots.getCrawlDelayMs() != null) {
+                crawlScheduler.setCrawlDelay(CrawlRequest.hostOf(baseUrl), robots.getCrawlDelayMs());
+            }
+            PageCrawler crawler = new PageCrawler(site, robots, CrawlBudget.of(crawlSettings, configSite));
+            CrawlJob job = crawlScheduler.newJob(baseUrl, crawler);
+            crawler.visitedPages.add(baseUrl);
+            job.enqueue(baseUrl, 0);
+            job.awaitCompletion(); // ❗ deleteSiteData вызывается внутри PageCrawler
 
             // 🔹 После успешного завершения меняем статус на INDEXED
             site.setStatus(IndexingStatus.INDEXED);
@@ -184,6 +150,12 @@ public class PageIndexingService {
             }
 
             return false;
+        } finally {
+            if (site != null) {
+                lemmaDictionary.release(site.getId());
+                pathIndex.evict(site.getId());
+            }
+            indexingMode.exit(IndexingMode.Mode.PAGE);
         }
     }
 
@@ -195,79 +167,123 @@ public class PageIndexingService {
     }
 
     // 🔹 Класс для обхода страниц сайта
-    private class PageCrawler extends RecursiveTask<Void> {
+    private class PageCrawler implements CrawlTaskHandler<FetchedPage> {
         private final Site site;
-        private final String url;
+        // Отпечатки адресов этого обхода; повторы отсеиваются до постановки в очередь
+        private final VisitedUrlSet visitedPages;
+        private final RobotsTxt robots;
+        private final CrawlBudget budget;
 
-        public PageCrawler(Site site, String url) {
+        public PageCrawler(Site site, RobotsTxt robots, CrawlBudget budget) {
             this.site = site;
-            this.url = url;
+            this.robots = robots;
+            this.budget = budget;
+            this.visitedPages = new VisitedUrlSet(crawlSettings.getVisitedSetMaxBytes(), crawlSettings.getVisitedBloomFilterBytes());
         }
 
+        // Сетевая стадия: паузу между запросами к хосту выдерживает CrawlScheduler
         @Override
-        protected Void compute() {
-            if (!visitedPages.add(url) || shouldSkipUrl(url) || pageRepository.existsByPath(url.replace(site.getUrl(), ""))) {
+        public FetchedPage fetch(CrawlRequest request) {
+            String url = request.getUrl();
+            if (!budget.allowsDepth(request.getDepth()) || shouldSkipUrl(url)
+                    || pathIndex.contains(site.getId(), url.replace(site.getUrl(), ""))) {
+                return null;
+            }
+            if (!robots.isAllowed(url.replace(site.getUrl(), ""))) {
+                logger.info("🤖 Запрещено robots.txt: {}", url);
                 return null;
             }
 
-            long startTime = System.currentTimeMillis();
+            if (!budget.tryAcquirePage()) {
+                request.getJob().close("исчерпан бюджет (" + budget.getExhaustedReason() + ")");
+                return null;
+            }
+
+            logger.info("🌍 Загружаем страницу: {}", url);
 
             try {
-                long delay = 500 + (long) (Math.random() * 4500);
-                Thread.sleep(delay);
+                // Файлы и медиа проверяются по заголовкам, тело читается только у HTML
+                FetchedPage fetched = pageFetcher.fetch(url, Map.of());
+                if (fetched != null && fetched.isHtml()) {
+                    budget.addBytes(fetched.getBody().length);
+                    if (budget.isExhausted()) {
+                        request.getJob().close("исчерпан бюджет (" + budget.getExhaustedReason() + ")");
+                    }
+                }
+                return fetched;
+            } catch (IOException e) {
+                handleException("❌ Ошибка при загрузке", url, e);
+                return null;
+            }
+        }
 
+        // Стадия обработки: разбор, сохранение и лемматизация в пуле платформенных потоков
+        @Override
+        public void process(CrawlRequest request, FetchedPage response) {
+            // Страница сохраняется по адресу после перенаправлений
+            String url = response.getFinalUrl();
+            long startTime = System.currentTimeMillis();
+
+            try {
+                if (!url.startsWith(site.getUrl())
+                        || (response.isRedirected() && pathIndex.contains(site.getId(), url.replace(site.getUrl(), "")))) {
+                    logger.info("↪️ {} перенаправляет на {}. Пропускаем.", request.getUrl(), url);
+                    return;
+                }
                 site.setStatusTime(LocalDateTime.now());
                 siteRepository.save(site);
 
-                logger.info("🌍 Загружаем страницу: {}", url);
-
-                Document document = Jsoup.connect(url)
-                        .userAgent("Mozilla/5.0")
-                        .referrer("http://www.google.com")
-                        .ignoreContentType(true)  // Позволяет загружать файлы, а не только HTML
-                        .get();
+                Document document = response.isHtml() ? response.parse() : null;
 
-                String contentType = document.connection().response().contentType();
-                int responseCode = document.connection().response().statusCode();
+                int responseCode = response.getStatusCode();
 
                 Page page = new Page();
                 page.setPath(url.replace(site.getUrl(), ""));
                 page.setSite(site);
                 page.setCode(responseCode);
 
-                if (contentType.startsWith("text/html")) {
-                    page.setContent(document.html());
+                String text;
+                if (document != null) {
+                    page.setContent(""); // HTML хранится сжатым в page_content
+                    text = document.text();
                     indexFilesAndImages(document);
-                } else if (contentType.startsWith("image/") || contentType.startsWith("application/")) {
+                } else {
                     page.setContent("FILE: " + url); // Для файлов сохраняем ссылку
+                    text = page.getContent();
                 }
 
-                pageRepository.save(page);
-
-                // 🔹 Вызываем метод лемматизации после сохранения страницы
-                processPageContent(page);
+                // 🔹 Лемматизация вне транзакции; страница, её содержимое и индексы пишутся одной транзакцией
+                Map<String, TermPositions> lemmas = lemmatizeText(text);
+                String html = document != null ? document.html() : null;
+                String title = document != null ? document.title() : null;
+                transactionTemplate.executeWithoutResult(status -> {
+                    pageRepository.save(page);
+                    if (html != null) {
+                        contentStore.save(page.getId(), html, title, text);
+                    }
+                    processPageContent(page, lemmas);
+                });
+                pathIndex.add(site.getId(), page.getPath());
 
                 long endTime = System.currentTimeMillis();
                 logger.info("✅ [{}] Проиндексировано за {} мс: {}", responseCode, (endTime - startTime), url);
+                if (document == null || !budget.allowsDepth(request.getDepth() + 1)) {
+                    return;
+                }
 
                 Elements links = document.select("a[href]");
-                List<PageCrawler> subTasks = links.stream()
+                List<String> childUrls = links.stream()
                         .map(link -> cleanUrl(link.absUrl("href")))
                         .filter(link -> link.startsWith(site.getUrl()) && !shouldSkipUrl(link))
-                        .map(link -> new PageCrawler(site, link))
+                        .filter(visitedPages::add)
                         .toList();
 
-                logger.info("🔗 Найдено ссылок: {}", subTasks.size());
-                invokeAll(subTasks);
+                logger.info("🔗 Найдено ссылок: {}", childUrls.size());
+                childUrls.forEach(link -> request.getJob().enqueue(link, request.getDepth() + 1));
 
             } catch (IOException e) {
-                handleException("❌ Ошибка при загрузке", e);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                handleException("⏳ Поток прерван", e);
+                handleException("❌ Ошибка при разборе", url, e);
             }
-
-            return null;
         }
 
         private void indexFilesAndImages(Document document) {
@@ -294,11 +310,12 @@ public class PageIndexingService {
             mediaPage.setCode(200);
             mediaPage.setContent(type.toUpperCase() + ": " + url);
             pageRepository.save(mediaPage);
+            pathIndex.add(site.getId(), mediaPage.getPath());
 
             logger.info("📂 Добавлен {}: {}", type, url);
         }
 
-        private void handleException(String message, Exception e) {
+        private void handleException(String message, String url, Exception e) {
             logger.error("{} {}: {}", message, url, e.getMessage(), e);
             site.setStatus(IndexingStatus.FAILED);
             site.setStatusTime(LocalDateTime.now());
@@ -0,0 +1,307 @@
+package searchengine.services;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.CrawlSettings;
+import searchengine.config.SitesList;
+import searchengine.crawler.CrawlCheckpointStore;
+import searchengine.indexing.GenerationCollector;
+import searchengine.indexing.InvertedIndex;
+import searchengine.indexing.PageContentStore;
+import searchengine.model.Site;
+import searchengine.repository.GenerationBulkRepository;
+import searchengine.repository.IndexBulkRepository;
+import searchengine.repository.LemmaBulkRepository;
+import searchengine.repository.PageRepository;
+import searchengine.repository.SiteRepository;
+import searchengine.utils.LemmaEngine;
+import searchengine.utils.TermPositions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Перестроение lemma и index из сохранённого HTML без обхода.
+// Страницы копируются в новое поколение сайта вместе с индексами; поиск отвечает по старому, пока оно не достроено.
+// Порции идут по возрастанию id, каждая в своей транзакции: после сбоя продолжаем с первой страницы без копии
+@Service
+public class ReindexService implements MetricsSource {
+    private static final Logger logger = LoggerFactory.getLogger(ReindexService.class);
+
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final LemmaBulkRepository lemmaBulkRepository;
+    private final IndexBulkRepository indexBulkRepository;
+    private final GenerationBulkRepository generationBulkRepository;
+    private final LemmaEngine lemmaEngine;
+    private final CrawlCheckpointStore checkpointStore;
+    private final PageContentStore contentStore;
+    private final GenerationCollector generationCollector;
+    private final InvertedIndex invertedIndex;
+    private final CrawlSettings settings;
+    private final SitesList sitesList;
+    private final IndexingMode indexingMode;
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile boolean running;
+    private volatile String state = "idle";
+    private volatile String currentSite;
+    private volatile String lastError;
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private final AtomicLong pagesTotal = new AtomicLong();
+    private final AtomicLong pagesDone = new AtomicLong();
+    private final AtomicLong indexRows = new AtomicLong();
+    private final AtomicLong migratedPages = new AtomicLong();
+
+    public ReindexService(SiteRepository siteRepository, PageRepository pageRepository,
+                          LemmaBulkRepository lemmaBulkRepository, IndexBulkRepository indexBulkRepository,
+                          GenerationBulkRepository generationBulkRepository, LemmaEngine lemmaEngine,
+                          CrawlCheckpointStore checkpointStore, PageContentStore contentStore,
+                          GenerationCollector generationCollector, InvertedIndex invertedIndex, CrawlSettings settings, SitesList sitesList,
+                          IndexingMode indexingMode, PlatformTransactionManager transactionManager) {
+        this.siteRepository = siteRepository;
+        this.pageRepository = pageRepository;
+        this.lemmaBulkRepository = lemmaBulkRepository;
+        this.indexBulkRepository = indexBulkRepository;
+        this.generationBulkRepository = generationBulkRepository;
+        this.lemmaEngine = lemmaEngine;
+        this.checkpointStore = checkpointStore;
+        this.contentStore = contentStore;
+        this.generationCollector = generationCollector;
+        this.invertedIndex = invertedIndex;
+        this.settings = settings;
+        this.sitesList = sitesList;
+        this.indexingMode = indexingMode;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    // null — переиндексация запущена, иначе текст ошибки
+    public synchronized String start(String siteUrl) {
+        String busy = indexingMode.tryEnter(IndexingMode.Mode.REINDEX);
+        if (busy != null) {
+            return busy;
+        }
+        List<Site> sites = new ArrayList<>();
+        if (siteUrl != null && !siteUrl.isBlank()) {
+            Site site = siteRepository.findByUrl(siteUrl);
+            if (site == null) {
+                indexingMode.exit(IndexingMode.Mode.REINDEX);
+                return "Сайт не найден в базе";
+            }
+            sites.add(site);
+        } else {
+            for (searchengine.config.ConfigSite configSite : sitesList.getSites()) {
+                Site site = siteRepository.findByUrl(configSite.getUrl());
+                if (site != null) {
+                    sites.add(site);
+                }
+            }
+        }
+        if (sites.isEmpty()) {
+            indexingMode.exit(IndexingMode.Mode.REINDEX);
+            return "Нет сохранённых сайтов для переиндексации";
+        }
+
+        running = true;
+        state = "running";
+        lastError = null;
+        startedAt = System.currentTimeMillis();
+        finishedAt = 0;
+        pagesTotal.set(0);
+        pagesDone.set(0);
+        indexRows.set(0);
+        migratedPages.set(0);
+        Thread worker = new Thread(() -> run(sites), "reindex");
+        worker.setDaemon(true);
+        worker.start();
+        return null;
+    }
+
+    public void stop() {
+        if (running) {
+            logger.info("⏹️ Остановка переиндексации по запросу пользователя.");
+            running = false;
+        }
+    }
+
+    private void run(List<Site> sites) {
+        int threads = settings.getReindexThreads() > 0
+                ? settings.getReindexThreads() : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (Site site : sites) {
+                if (!running) {
+                    break;
+                }
+                reindexSite(site, pool);
+            }
+            state = running ? "done" : "stopped";
+        } catch (Exception e) {
+            state = "failed";
+            lastError = e.getMessage();
+            logger.error("❌ Ошибка переиндексации сайта {}: {}", currentSite, e.getMessage(), e);
+        } finally {
+            pool.shutdownNow();
+            finishedAt = System.currentTimeMillis();
+            running = false;
+            currentSite = null;
+            indexingMode.exit(IndexingMode.Mode.REINDEX);
+        }
+    }
+
+    private void reindexSite(Site site, ForkJoinPool pool) throws InterruptedException, ExecutionException {
+        currentSite = site.getUrl();
+        int siteId = site.getId();
+        generationCollector.await(siteId);
+        int afterId;
+        if (site.getBuildGeneration() != null && checkpointStore.isReindexMarked(site.getUrl())) {
+            // Порции копируются по возрастанию id в одной транзакции: всё до последней скопированной страницы готово
+            Integer lastCopied = generationBulkRepository.findLastCopiedPageId(
+                    siteId, site.getGeneration(), site.getBuildGeneration());
+            afterId = lastCopied == null ? 0 : lastCopied;
+            logger.info("🔁 Продолжаем переиндексацию {} после страницы id={}", site.getUrl(), afterId);
+        } else {
+            // Недостроенное поколение прерванного обхода продолжать уже не будут
+            if (site.getBuildGeneration() != null) {
+                generationCollector.discardBuild(site);
+                checkpointStore.delete(site.getUrl());
+            }
+            site.setBuildGeneration(site.getGeneration() + 1);
+            siteRepository.save(site);
+            // Отметка ставится после записи номера: продолжать можно только сборку, известную сайту
+            checkpointStore.markReindex(site.getUrl());
+            logger.info("🏗️ Переиндексация {} в поколение {}", site.getUrl(), site.getBuildGeneration());
+            afterId = 0;
+        }
+        int build = site.getBuildGeneration();
+        pagesTotal.addAndGet(pageRepository.countPagesAfter(siteId, afterId));
+
+        int chunkSize = Math.max(1, settings.getReindexChunkSize());
+        while (running) {
+            List<Object[]> rows = pageRepository.findPageChunk(siteId, afterId, PageRequest.of(0, chunkSize));
+            if (rows.isEmpty()) {
+                break;
+            }
+            List<PageLemmas> chunk = pool.submit(() -> rows.parallelStream()
+                    .map(this::lemmatize)
+                    .toList()).get();
+            transactionTemplate.executeWithoutResult(status -> write(siteId, build, chunk));
+
+            afterId = chunk.get(chunk.size() - 1).pageId;
+            long done = pagesDone.addAndGet(chunk.size());
+            logger.info("📈 Переиндексация {}: {} из {} страниц", site.getUrl(), done, pagesTotal.get());
+        }
+        if (running) {
+            generationCollector.switchGeneration(site);
+            checkpointStore.clearReindex(site.getUrl());
+            logger.info("✅ Переиндексация {} завершена", site.getUrl());
+        }
+    }
+
+    // Строка: id страницы, код ответа, page.content и текст из page_content (null у ещё не перенесённых страниц)
+    private PageLemmas lemmatize(Object[] row) {
+        int pageId = (Integer) row[0];
+        int code = (Integer) row[1];
+        String content = (String) row[2];
+        String text = (String) row[3];
+        // Записи изображений, файлов и ошибок копируются без лемматизации
+        if (code < 200 || code >= 400 || content.startsWith("IMAGE: ") || content.startsWith("FILE: ")) {
+            return new PageLemmas(pageId, null, null, text != null);
+        }
+        if (text != null) {
+            return new PageLemmas(pageId, lemmaEngine.indexLemmas(text, 2), null, true);
+        }
+        Document document = Jsoup.parse(content);
+        return new PageLemmas(pageId, lemmaEngine.indexLemmas(document.text(), 2), document, false);
+    }
+
+    private void write(int siteId, int build, List<PageLemmas> chunk) {
+        for (PageLemmas page : chunk) {
+            page.copyId = generationBulkRepository.copyPage(page.pageId, build, page.legacyDocument != null);
+            if (page.legacyDocument != null) {
+                // Старая страница: HTML копии переносится в сжатое хранилище вместе с извлечённым текстом
+                Document document = page.legacyDocument;
+                contentStore.save(page.copyId, document.html(), document.title(), document.text());
+                migratedPages.incrementAndGet();
+            } else if (page.hasContent) {
+                generationBulkRepository.copyContent(page.pageId, page.copyId);
+            }
+        }
+        Map<String, Integer> increments = new HashMap<>();
+        for (PageLemmas page : chunk) {
+            if (page.lemmas != null) {
+                page.lemmas.forEach((lemma, positions) -> increments.merge(lemma, positions.size(), Integer::sum));
+            }
+        }
+        Map<String, Integer> lemmaIds = lemmaBulkRepository.upsert(siteId, increments);
+        for (PageLemmas page : chunk) {
+            if (page.lemmas == null) {
+                continue;
+            }
+            Map<Integer, TermPositions> postings = new HashMap<>(page.lemmas.size() * 4 / 3 + 1);
+            page.lemmas.forEach((lemma, positions) -> {
+                Integer lemmaId = lemmaIds.get(lemma);
+                if (lemmaId != null) {
+                    postings.put(lemmaId, positions);
+                }
+            });
+            indexRows.addAndGet(indexBulkRepository.insert(page.copyId, postings));
+            invertedIndex.addPage(page.copyId, siteId, build, lemmaIds, page.lemmas);
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "reindex";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        long done = pagesDone.get();
+        long elapsed = startedAt == 0 ? 0
+                : (finishedAt == 0 ? System.currentTimeMillis() : finishedAt) - startedAt;
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("state", state);
+        metrics.put("site", currentSite);
+        metrics.put("pagesTotal", pagesTotal.get());
+        metrics.put("pagesDone", done);
+        metrics.put("indexRows", indexRows.get());
+        metrics.put("migratedPages", migratedPages.get());
+        metrics.put("pagesPerSecond", elapsed == 0 ? 0 : Math.round(done * 100000.0 / elapsed) / 100.0);
+        metrics.put("lastError", lastError);
+        return metrics;
+    }
+
+    private static class PageLemmas {
+        private final int pageId;
+        // null у страниц, которые не лемматизируются
+        private final Map<String, TermPositions> lemmas;
+        private final Document legacyDocument;
+        private final boolean hasContent;
+        // id копии в строящемся поколении
+        private int copyId;
+
+        PageLemmas(int pageId, Map<String, TermPositions> lemmas, Document legacyDocument, boolean hasContent) {
+            this.pageId = pageId;
+            this.lemmas = lemmas;
+            this.legacyDocument = legacyDocument;
+            this.hasContent = hasContent;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package searchengine.services;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+import searchengine.utils.SearchQuery;
+import searchengine.utils.TopScores;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Ранжированные id страниц с оценками по запросу и сайту; сниппеты строятся заново для каждого окна.
+// Запись устаревает при смене версии индекса сайта или по времени жизни
+@Component
+public class SearchResultCache implements MetricsSource {
+    private final SearchSettings settings;
+    private final Map<String, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stale = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public SearchResultCache(SearchSettings settings) {
+        this.settings = settings;
+        this.entries = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > settings.getResultCacheSize()) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public static String key(SearchQuery searchQuery, Integer siteId) {
+        return (siteId == null ? "*" : siteId) + "|" + searchQuery.normalized();
+    }
+
+    // null, если записи нет, она устарела или не покрывает первые windowEnd мест
+    public Ranking get(String key, long version, int windowEnd) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.version != version) {
+                entries.remove(key);
+                stale.increment();
+                entry = null;
+            } else if (entry != null && entry.expiresAt < System.currentTimeMillis()) {
+                entries.remove(key);
+                expired.increment();
+                entry = null;
+            }
+        }
+        if (entry == null || !entry.ranking.covers(windowEnd)) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.ranking;
+    }
+
+    public void put(String key, long version, Ranking ranking) {
+        if (settings.getResultCacheSize() <= 0) {
+            return;
+        }
+        long expiresAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(settings.getResultCacheTtlSeconds());
+        synchronized (entries) {
+            entries.put(key, new Entry(ranking, version, expiresAt));
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "searchCache";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        synchronized (entries) {
+            metrics.put("entries", entries.size());
+        }
+        metrics.put("hits", hitCount);
+        metrics.put("misses", missCount);
+        metrics.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        metrics.put("invalidated", stale.sum());
+        metrics.put("expired", expired.sum());
+        metrics.put("evicted", evictions.sum());
+        return metrics;
+    }
+
+    public static class Ranking {
+        private final TopScores top;
+        private final int total;
+
+        public Ranking(TopScores top, int total) {
+            this.top = top;
+            this.total = total;
+        }
+
+        public TopScores getTop() {
+            return top;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        // Места до windowEnd известны, если они все в списке или найденных страниц меньше
+        boolean covers(int windowEnd) {
+            return windowEnd <= top.size() || top.size() >= total;
+        }
+    }
+
+    private static class Entry {
+        private final Ranking ranking;
+        private final long version;
+        private final long expiresAt;
+
+        Entry(Ranking ranking, long version, long expiresAt) {
+            this.ranking = ranking;
+            this.version = version;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -11,23 +11,50 @@ import searchengine.repository.SiteRepository;
 import searchengine.repository.LemmaRepository;
 import searchengine.repository.IndexRepository;
 
+import searchengine.config.SearchSettings;
+import searchengine.indexing.InvertedIndex;
+import searchengine.indexing.PageContentStore;
+import searchengine.utils.Bm25;
+import searchengine.utils.LemmaEngine;
 import searchengine.utils.LemmaProcessor;
+import searchengine.utils.SearchQuery;
+import searchengine.utils.TermPositions;
+import searchengine.utils.TopScores;
 import searchengine.model.Page;
-import java.util.stream.Collectors;
+import searchengine.model.Site;
 import java.util.*;
 
 @Service
 
 public class SearchServiceImpl implements SearchService {
+    // Страниц в одном запросе позиций или rank
+    private static final int POSITIONS_CHUNK = 1000;
+    // Надбавка к релевантности, когда все слова запроса стоят подряд; с расстоянием убывает
+    private static final double PROXIMITY_WEIGHT = 1.0;
+    private static final int SNIPPET_LENGTH = 200;
+    private static final int SNIPPET_FRAGMENTS = 3;
+
     private final PageRepository pageRepository;
     private final LemmaRepository lemmaRepository;
     private final IndexRepository indexRepository;
     private final LemmaProcessor lemmaProcessor;
     private final SiteRepository siteRepository;
+    private final PageContentStore contentStore;
+    private final LemmaEngine lemmaEngine;
+    private final InvertedIndex invertedIndex;
+    private final SearchSettings searchSettings;
+    private final Bm25 bm25;
+    private final SearchResultCache resultCache;
     private static final Logger logger = LoggerFactory.getLogger(IndexingService.class);
 
-    public SearchServiceImpl(PageRepository pageRepository,SiteRepository siteRepository, LemmaRepository lemmaRepository, IndexRepository indexRepository, LemmaProcessor lemmaProcessor) {
+    public SearchServiceImpl(PageRepository pageRepository,SiteRepository siteRepository, LemmaRepository lemmaRepository, IndexRepository indexRepository, LemmaProcessor lemmaProcessor, PageContentStore contentStore, LemmaEngine lemmaEngine, InvertedIndex invertedIndex, SearchSettings searchSettings, SearchResultCache resultCache) {
         this.pageRepository = pageRepository;
+        this.lemmaEngine = lemmaEngine;
+        this.invertedIndex = invertedIndex;
+        this.searchSettings = searchSettings;
+        this.resultCache = resultCache;
+        this.bm25 = new Bm25(searchSettings.getBm25K1(), searchSettings.getBm25B());
+        this.contentStore = contentStore;
         this. siteRepository =  siteRepository;
         this.lemmaRepository = lemmaRepository;
         this.indexRepository = indexRepository;
@@ -41,65 +68,519 @@ public class SearchServiceImpl implements SearchService {
         }
 
         logger.info("🔎 Получен поисковый запрос: '{}'", query);
+        offset = Math.max(offset, 0);
 
-        // Извлекаем леммы
-        List<String> lemmas = lemmaProcessor.extractLemmas(query);
+        // Извлекаем леммы и фразы в кавычках
+        SearchQuery searchQuery = SearchQuery.parse(query, lemmaProcessor, lemmaEngine);
+        List<String> lemmas = searchQuery.getLemmas();
         if (lemmas.isEmpty()) {
             return new SearchResponse("❌ Не удалось обработать запрос");
         }
         logger.info("📌 Извлеченные леммы: {}", lemmas);
 
-        // Получаем страницы с этими леммами
-        List<Page> pages;
-        if (site == null || site.isEmpty()) {
-            pages = new ArrayList<>(new HashSet<>(pageRepository.findPagesByLemmas(lemmas)));
+        Integer siteId = null;
+        if (site != null && !site.isEmpty()) {
+            Site siteEntity = siteRepository.findByUrl(site);
+            if (siteEntity == null) {
+                return new SearchResponse("❌ Нет результатов по вашему запросу.");
+            }
+            siteId = siteEntity.getId();
+        }
+
+        // Версия индекса читается до отбора: изменения во время поиска сделают запись кеша устаревшей
+        String cacheKey = SearchResultCache.key(searchQuery, siteId);
+        long version = invertedIndex.version(siteId);
+        int windowEnd = windowEnd(offset, limit);
+        Map<Integer, Map<String, TermPositions>> positions = new HashMap<>();
+        Map<Integer, List<Integer>> phraseOffsets = new HashMap<>();
+        SearchResultCache.Ranking ranking = resultCache.get(cacheKey, version, windowEnd);
+        if (ranking != null) {
+            logger.info("📌 Ранжирование взято из кеша: {} страниц", ranking.getTotal());
         } else {
-            pages = new ArrayList<>(new HashSet<>(pageRepository.findPagesByLemmas(lemmas, site)));
+            int depth = Math.max(windowEnd, searchSettings.getResultCacheDepth());
+            ranking = invertedIndex.isReady()
+                    ? rankInMemory(searchQuery, siteId, depth, positions, phraseOffsets)
+                    : rankInDatabase(searchQuery, site, depth, positions, phraseOffsets);
+            resultCache.put(cacheKey, version, ranking);
+        }
+        if (ranking.getTotal() == 0) {
+            return new SearchResponse("❌ Нет результатов по вашему запросу.");
+        }
+
+        List<SearchResult> results = buildResults(ranking.getTop(), offset, windowEnd, searchQuery,
+                positions, phraseOffsets);
+        logger.info("✅ Поиск завершен. Отдано результатов: {}", results.size());
+        return new SearchResponse(true, ranking.getTotal(), results);
+    }
+
+    // Пока обратный индекс в памяти загружается
+    private SearchResultCache.Ranking rankInDatabase(SearchQuery searchQuery, String site, int depth,
+                                                     Map<Integer, Map<String, TermPositions>> positions,
+                                                     Map<Integer, List<Integer>> phraseOffsets) {
+        // Обратный индекс ещё загружается: статистика и страницы со всеми леммами — запросами к базе
+        List<String> lemmas = searchQuery.getLemmas();
+        boolean allSites = site == null || site.isEmpty();
+        Set<String> distinctLemmas = new LinkedHashSet<>(lemmas);
+        // Как и в памяти, N и средняя длина — по страницам текущего поколения с индексами:
+        // файлы, страницы с ошибками и строящееся поколение не учитываются
+        Object[] corpus = (allSites ? indexRepository.liveCorpusStatistics()
+                : indexRepository.liveCorpusStatistics(site)).get(0);
+        long totalPages = Math.max(((Number) corpus[0]).longValue(), 1);
+        Map<String, Integer> documentFrequencies = new HashMap<>();
+        for (Object[] row : allSites
+                ? indexRepository.countLivePagesByLemmas(distinctLemmas)
+                : indexRepository.countLivePagesByLemmas(distinctLemmas, site)) {
+            documentFrequencies.put((String) row[0], ((Number) row[1]).intValue());
+        }
+        List<String> kept = selectLemmas(distinctLemmas, documentFrequencies, totalPages,
+                searchSettings.getFrequentLemmaShare());
+        if (kept.isEmpty()) {
+            return new SearchResultCache.Ranking(new TopScores(0), 0);
         }
+        List<Page> pages = allSites
+                ? pageRepository.findPagesWithAllLemmas(kept, kept.size())
+                : pageRepository.findPagesWithAllLemmas(kept, kept.size(), site);
 
         if (pages.isEmpty()) {
-            return new SearchResponse("❌ Нет результатов по вашему запросу.");
+            return new SearchResultCache.Ranking(new TopScores(0), 0);
         }
 
         logger.info("📌 Найдено страниц: {}", pages.size());
 
-        // Подсчитываем частоту лемм
-        Map<String, Integer> lemmaFrequencyMap = new HashMap<>();
+        positions.putAll(loadPositions(pages.stream().map(Page::getId).toList(), searchQuery.positionLemmas()));
+
+        // Фразы: слова стоят подряд; страницы без позиций в индексе проверяются по тексту
+        if (!searchQuery.getPhrases().isEmpty()) {
+            Map<Integer, String[]> texts = contentStore.getTexts(pages.stream()
+                    .filter(page -> !positions.containsKey(page.getId()))
+                    .toList());
+            pages.removeIf(page -> {
+                Map<String, TermPositions> pagePositions = positions.get(page.getId());
+                if (pagePositions == null) {
+                    String text = texts.get(page.getId())[1];
+                    return !searchQuery.getPhrases().stream().allMatch(phrase -> phrase.occursIn(text));
+                }
+                List<Integer> found = searchQuery.findPhrases(pagePositions);
+                phraseOffsets.put(page.getId(), found);
+                return found.isEmpty();
+            });
+            logger.info("📌 Фразы найдены на {} страницах", pages.size());
+        }
+
+        // Статистика корпуса для BM25 — несколько запросов на весь поиск, а не на каждую страницу
+        double averageLength = ((Number) corpus[1]).doubleValue() / totalPages;
+        Map<String, Double> idf = new HashMap<>();
+        for (String lemma : kept) {
+            idf.put(lemma, bm25.idf(documentFrequencies.get(lemma), totalPages));
+        }
+        Map<Integer, Integer> lengths = new HashMap<>();
+        Map<Integer, Map<String, Float>> ranks = loadRanks(pages.stream().map(Page::getId).toList(), kept, lengths);
+
+        // В куче остаются только лучшие страницы, которые пойдут в выдачу и кеш
+        TopScores top = new TopScores(depth);
+        for (Page page : pages) {
+            double relevance = 0;
+            int length = lengths.getOrDefault(page.getId(), 0);
+            for (Map.Entry<String, Float> rank : ranks.getOrDefault(page.getId(), Map.of()).entrySet()) {
+                relevance += bm25.score(rank.getValue(), idf.getOrDefault(rank.getKey(), 0.0), length, averageLength);
+            }
+            top.offer(page.getId(), relevance * proximityBoost(positions.get(page.getId()), lemmas));
+        }
+        top.sort();
+        return new SearchResultCache.Ranking(top, pages.size());
+    }
+
+    private SearchResultCache.Ranking rankInMemory(SearchQuery searchQuery, Integer siteId, int depth,
+                                                   Map<Integer, Map<String, TermPositions>> positions,
+                                                   Map<Integer, List<Integer>> phraseOffsets) {
+        List<String> lemmas = searchQuery.getLemmas().stream().distinct().toList();
+
+        Candidates candidates = intersectPostings(lemmas, siteId);
+        logger.info("📌 Найдено страниц: {}", candidates.size);
+
+        if (!searchQuery.getPhrases().isEmpty()) {
+            candidates = filterPhrases(candidates, searchQuery, siteId, positions, phraseOffsets);
+            logger.info("📌 Фразы найдены на {} страницах", candidates.size);
+        }
+        if (candidates.size == 0) {
+            return new SearchResultCache.Ranking(new TopScores(0), 0);
+        }
+
+        // Лучшие страницы по rank пересортировываются с учётом близости слов
+        TopScores pool = new TopScores(Math.max(depth, searchSettings.getRerankPoolSize()));
+        for (int i = 0; i < candidates.size; i++) {
+            pool.offer(candidates.pageIds[i], candidates.scores[i]);
+        }
+        List<Integer> withoutPositions = new ArrayList<>(pool.size());
+        for (int i = 0; i < pool.size(); i++) {
+            if (!positions.containsKey(pool.id(i))) {
+                withoutPositions.add(pool.id(i));
+            }
+        }
+        positions.putAll(loadPositions(withoutPositions, searchQuery.positionLemmas()));
+
+        TopScores top = new TopScores(depth);
+        for (int i = 0; i < pool.size(); i++) {
+            int pageId = pool.id(i);
+            top.offer(pageId, pool.score(i) * proximityBoost(positions.get(pageId), lemmas));
+        }
+        top.sort();
+        return new SearchResultCache.Ranking(top, candidates.size);
+    }
+
+    // Позиции слов, не загруженные при отборе (ранжирование из кеша), читаются здесь для страниц окна
+    private List<SearchResult> buildResults(TopScores top, int offset, int windowEnd, SearchQuery searchQuery,
+                                            Map<Integer, Map<String, TermPositions>> positions,
+                                            Map<Integer, List<Integer>> phraseOffsets) {
+        int end = Math.min(top.size(), windowEnd);
+        if (offset >= end) {
+            return List.of();
+        }
+        List<Integer> window = new ArrayList<>(end - offset);
+        for (int i = offset; i < end; i++) {
+            window.add(top.id(i));
+        }
+        positions.putAll(loadPositions(window.stream().filter(pageId -> !positions.containsKey(pageId)).toList(),
+                searchQuery.positionLemmas()));
+        if (!searchQuery.getPhrases().isEmpty()) {
+            for (Integer pageId : window) {
+                if (positions.containsKey(pageId) && !phraseOffsets.containsKey(pageId)) {
+                    phraseOffsets.put(pageId, searchQuery.findPhrases(positions.get(pageId)));
+                }
+            }
+        }
+
+        // Из базы — только страницы окна с сайтами, их заголовки и тексты
+        Map<Integer, Page> pages = new HashMap<>();
+        for (Page page : pageRepository.findWithSiteByIdIn(window)) {
+            pages.put(page.getId(), page);
+        }
+        Map<Integer, String[]> texts = contentStore.getTexts(pages.values());
+
+        List<String> lemmas = searchQuery.getLemmas().stream().distinct().toList();
+        List<SearchResult> results = new ArrayList<>(window.size());
+        for (int i = offset; i < end; i++) {
+            int pageId = top.id(i);
+            Page page = pages.get(pageId);
+            if (page == null) {
+                continue; // Страница удалена после отбора
+            }
+            String siteUrl = page.getSite().getUrl().replaceAll("/$", "");
+            String pagePath = page.getPath().replaceAll("^/", "");
+            String[] titleAndText = texts.get(pageId);
+            Map<String, TermPositions> pagePositions = positions.get(pageId);
+            String snippet = pagePositions == null
+                    ? generateSnippet(titleAndText[1], lemmas)
+                    : generateSnippet(titleAndText[1], pagePositions, phraseOffsets.getOrDefault(pageId, List.of()));
+            results.add(new SearchResult(siteUrl, page.getSite().getName(), "/" + pagePath,
+                    titleAndText[0], snippet, top.score(i)));
+        }
+        return results;
+    }
+
+    // Число лучших страниц, нужных для окна выдачи
+    private static int windowEnd(int offset, int limit) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) offset + Math.max(limit, 0));
+    }
+
+    // Пересечение идёт от самой редкой леммы: в остальных списках ищется только следующий кандидат
+    private Candidates intersectPostings(List<String> lemmas, Integer siteId) {
+        int totalPages = Math.max(invertedIndex.pageCount(siteId), 1);
+        double averageLength = invertedIndex.averageDocumentLength(siteId);
+        Map<String, List<InvertedIndex.Postings>> lists = new HashMap<>();
+        Map<String, Integer> documentFrequencies = new HashMap<>();
         for (String lemma : lemmas) {
-            int frequency = Optional.ofNullable(lemmaRepository.countByLemma(lemma)).orElse(0);
-            lemmaFrequencyMap.put(lemma, frequency);
-        }
-
-        // Формируем результаты поиска
-        List<SearchResult> results = pages.stream()
-                .map(page -> {
-                    String siteUrl = page.getSite().getUrl().replaceAll("/$", "");
-                    String siteName = page.getSite().getName();
-                    String pagePath = page.getPath().replaceAll("^/", "");
-                    String fullUrl = siteUrl + "/" + pagePath;
-
-                    return new SearchResult(
-                            siteUrl,
-                            siteName,
-                            "/" + pagePath,
-                            page.getTitle(),
-                            generateSnippet(page.getContent(), lemmas),
-                            calculateRelevance(page, lemmas, lemmaFrequencyMap)
-                    );
-                })
-                .sorted(Comparator.comparingDouble(SearchResult::getRelevance).reversed())
-                .skip(offset)
-                .limit(limit)
-                .collect(Collectors.toList());
+            List<InvertedIndex.Postings> lemmaLists = invertedIndex.postings(lemma, siteId);
+            lists.put(lemma, lemmaLists);
+            // Только страницы поколения, по которому отвечает поиск: строящееся поколение не искажает idf
+            documentFrequencies.put(lemma, lemmaLists.stream().mapToInt(InvertedIndex.Postings::liveSize).sum());
+        }
+        List<QueryTerm> kept = new ArrayList<>(lemmas.size());
+        for (String lemma : selectLemmas(lemmas, documentFrequencies, totalPages, searchSettings.getFrequentLemmaShare())) {
+            int documentFrequency = documentFrequencies.get(lemma);
+            kept.add(new QueryTerm(lemma, lists.get(lemma), documentFrequency, bm25.idf(documentFrequency, totalPages)));
+        }
+        if (kept.isEmpty()) {
+            return new Candidates(0);
+        }
 
-        logger.info("✅ Поиск завершен. Отдано результатов: {}", results.size());
+        QueryTerm rarest = kept.get(0);
+        Candidates candidates = new Candidates(rarest.documentFrequency);
+        // Страница принадлежит одному сайту, а у каждого сайта свои леммы: пересекаем по сайтам
+        sites:
+        for (InvertedIndex.Postings first : rarest.lists) {
+            List<InvertedIndex.Postings> others = new ArrayList<>(kept.size() - 1);
+            for (QueryTerm term : kept.subList(1, kept.size())) {
+                InvertedIndex.Postings list = term.listOf(first.getSiteId());
+                if (list == null) {
+                    continue sites;
+                }
+                others.add(list);
+            }
+            int[] cursors = new int[others.size()];
+            int i = 0;
+            pages:
+            while (i < first.size()) {
+                int pageId = first.pageId(i);
+                int length = invertedIndex.documentLength(pageId);
+                double score = bm25.score(first.rank(i), rarest.idf, length, averageLength);
+                for (int k = 0; k < others.size(); k++) {
+                    InvertedIndex.Postings list = others.get(k);
+                    cursors[k] = list.seek(cursors[k], pageId);
+                    if (cursors[k] == list.size()) {
+                        continue sites;
+                    }
+                    int next = list.pageId(cursors[k]);
+                    if (next != pageId) {
+                        // Страницы до next в этом списке нет — кандидатов до неё можно не проверять
+                        i = first.seek(i + 1, next);
+                        continue pages;
+                    }
+                    score += bm25.score(list.rank(cursors[k]), kept.get(k + 1).idf, length, averageLength);
+                }
+                if (first.isVisible(i)) {
+                    candidates.add(pageId, score);
+                }
+                i++;
+            }
+        }
+        return candidates;
+    }
+
+    // Сначала в памяти отсеиваются страницы без слов фразы, затем оставшиеся сверяются по позициям из базы
+    private Candidates filterPhrases(Candidates candidates, SearchQuery searchQuery, Integer siteId,
+                                     Map<Integer, Map<String, TermPositions>> positions,
+                                     Map<Integer, List<Integer>> phraseOffsets) {
+        List<List<InvertedIndex.Postings>> slots = new ArrayList<>();
+        for (SearchQuery.Phrase phrase : searchQuery.getPhrases()) {
+            for (List<String> forms : phrase.getForms()) {
+                List<InvertedIndex.Postings> slot = new ArrayList<>();
+                for (String form : forms) {
+                    slot.addAll(invertedIndex.postings(form, siteId));
+                }
+                slots.add(slot);
+            }
+        }
+        List<Integer> probable = new ArrayList<>();
+        for (int i = 0; i < candidates.size; i++) {
+            int pageId = candidates.pageIds[i];
+            if (slots.stream().allMatch(slot -> slot.stream().anyMatch(list -> list.indexOf(pageId) >= 0))) {
+                probable.add(pageId);
+            }
+        }
+        positions.putAll(loadPositions(probable, searchQuery.positionLemmas()));
+
+        // Страницы без позиций в индексе проверяются по тексту
+        List<Integer> withoutPositions = probable.stream()
+                .filter(pageId -> !positions.containsKey(pageId))
+                .toList();
+        Map<Integer, String[]> texts = withoutPositions.isEmpty()
+                ? Map.of()
+                : contentStore.getTexts(pageRepository.findAllById(withoutPositions));
 
-        return new SearchResponse(true, results.size(), results);
+        Map<Integer, Double> scores = new HashMap<>();
+        for (int i = 0; i < candidates.size; i++) {
+            scores.put(candidates.pageIds[i], candidates.scores[i]);
+        }
+        Candidates filtered = new Candidates(probable.size());
+        for (int pageId : probable) {
+            Map<String, TermPositions> pagePositions = positions.get(pageId);
+            boolean matched;
+            if (pagePositions != null) {
+                List<Integer> found = searchQuery.findPhrases(pagePositions);
+                phraseOffsets.put(pageId, found);
+                matched = !found.isEmpty();
+            } else {
+                String[] titleAndText = texts.get(pageId);
+                matched = titleAndText != null && searchQuery.getPhrases().stream()
+                        .allMatch(phrase -> phrase.occursIn(titleAndText[1]));
+            }
+            if (matched) {
+                filtered.add(pageId, scores.get(pageId));
+            }
+        }
+        return filtered;
+    }
+
+    // От самой редкой к самой частой; пусто, если какой-то леммы нет ни на одной странице.
+    // Одно правило для отбора в памяти и через базу
+    static List<String> selectLemmas(Collection<String> lemmas, Map<String, Integer> documentFrequencies,
+                                     long totalPages, double frequentShare) {
+        List<String> sorted = new ArrayList<>(new LinkedHashSet<>(lemmas));
+        for (String lemma : sorted) {
+            if (documentFrequencies.getOrDefault(lemma, 0) == 0) {
+                logger.info("📌 Лемма '{}' не встречается ни на одной странице", lemma);
+                return List.of();
+            }
+        }
+        sorted.sort(Comparator.comparingInt(documentFrequencies::get));
+
+        List<String> kept = new ArrayList<>(sorted.size());
+        for (String lemma : sorted) {
+            double share = (double) documentFrequencies.get(lemma) / Math.max(totalPages, 1);
+            if (kept.isEmpty() || share <= frequentShare) {
+                kept.add(lemma);
+            } else {
+                logger.info("📌 Лемма '{}' есть на {}% страниц и не участвует в отборе",
+                        lemma, Math.round(share * 100));
+            }
+        }
+        return kept;
+    }
+
+    // Лемма запроса: списки страниц по сайтам, число страниц и вес
+    private static class QueryTerm {
+        private final String lemma;
+        private final List<InvertedIndex.Postings> lists;
+        private final int documentFrequency;
+        private final double idf;
+
+        QueryTerm(String lemma, List<InvertedIndex.Postings> lists, int documentFrequency, double idf) {
+            this.lemma = lemma;
+            this.lists = lists;
+            this.documentFrequency = documentFrequency;
+            this.idf = idf;
+        }
+
+        InvertedIndex.Postings listOf(int siteId) {
+            for (InvertedIndex.Postings list : lists) {
+                if (list.getSiteId() == siteId) {
+                    return list;
+                }
+            }
+            return null;
+        }
+    }
+
+    // Кандидаты поиска: id страниц и их оценки
+    private static class Candidates {
+        private int[] pageIds;
+        private double[] scores;
+        private int size;
+
+        Candidates(int capacity) {
+            pageIds = new int[Math.max(capacity, 4)];
+            scores = new double[pageIds.length];
+        }
+
+        void add(int pageId, double score) {
+            if (size == pageIds.length) {
+                pageIds = Arrays.copyOf(pageIds, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            pageIds[size] = pageId;
+            scores[size++] = score;
+        }
+    }
+
+    // Позиции лемм на страницах; страницы, проиндексированные без позиций, в карту не попадают
+    private Map<Integer, Map<String, TermPositions>> loadPositions(List<Integer> ids, Collection<String> lemmas) {
+        Map<Integer, Map<String, TermPositions>> positions = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += POSITIONS_CHUNK) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + POSITIONS_CHUNK, ids.size()));
+            for (Object[] row : indexRepository.findPositions(chunk, lemmas)) {
+                if (row[2] != null) {
+                    positions.computeIfAbsent((Integer) row[0], id -> new HashMap<>())
+                            .put((String) row[1], TermPositions.decode((byte[]) row[2]));
+                }
+            }
+        }
+        return positions;
+    }
+
+    // rank лемм запроса на страницах; длины страниц в словах складываются в lengths
+    private Map<Integer, Map<String, Float>> loadRanks(List<Integer> ids, Collection<String> lemmas,
+                                                       Map<Integer, Integer> lengths) {
+        Map<Integer, Map<String, Float>> ranks = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += POSITIONS_CHUNK) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + POSITIONS_CHUNK, ids.size()));
+            for (Object[] row : indexRepository.findRanks(chunk, lemmas)) {
+                ranks.computeIfAbsent((Integer) row[0], id -> new HashMap<>()).put((String) row[1], (Float) row[2]);
+            }
+            for (Object[] row : indexRepository.sumRanksByPageIds(chunk)) {
+                lengths.put((Integer) row[0], ((Number) row[1]).intValue());
+            }
+        }
+        return ranks;
+    }
+
+    // Чем плотнее слова запроса стоят на странице, тем выше надбавка
+    private double proximityBoost(Map<String, TermPositions> pagePositions, List<String> lemmas) {
+        if (pagePositions == null) {
+            return 1.0;
+        }
+        List<TermPositions> present = lemmas.stream()
+                .distinct()
+                .map(pagePositions::get)
+                .filter(Objects::nonNull)
+                .toList();
+        if (present.size() < 2) {
+            return 1.0;
+        }
+        int slack = Math.max(TermPositions.minimalSpan(present) - (present.size() - 1), 0);
+        return 1.0 + PROXIMITY_WEIGHT / (1 + slack);
     }
 
+    // По сохранённым смещениям слов, без поиска по тексту
+    private String generateSnippet(String content, Map<String, TermPositions> pagePositions, List<Integer> phraseOffsets) {
+        TreeSet<Integer> highlights = new TreeSet<>();
+        for (TermPositions positions : pagePositions.values()) {
+            for (int i = 0; i < positions.size(); i++) {
+                int offset = positions.offset(i);
+                if (offset < content.length() && Character.isLetter(content.charAt(offset))) {
+                    highlights.add(offset);
+                }
+            }
+        }
+        if (highlights.isEmpty()) {
+            return "...Совпадений не найдено...";
+        }
+
+        List<Integer> anchors = new ArrayList<>(phraseOffsets);
+        anchors.addAll(highlights);
+        List<int[]> fragments = new ArrayList<>();
+        for (int anchor : anchors) {
+            if (fragments.size() >= SNIPPET_FRAGMENTS) {
+                break;
+            }
+            if (anchor >= content.length()
+                    || fragments.stream().anyMatch(f -> anchor >= f[0] && anchor < f[1])) {
+                continue;
+            }
+            int start = Math.max(anchor - 50, 0);
+            if (start > 0) {
+                // Фрагмент начинается с целого слова
+                int space = content.indexOf(' ', start);
+                start = space >= 0 && space < anchor ? space + 1 : start;
+            }
+            int end = Math.min(start + SNIPPET_LENGTH, content.length());
+            fragments.add(new int[]{start, end});
+        }
+
+        StringBuilder snippetBuilder = new StringBuilder();
+        for (int[] fragment : fragments) {
+            int cursor = fragment[0];
+            snippetBuilder.append("...");
+            for (int offset : highlights.subSet(fragment[0], fragment[1])) {
+                if (offset < cursor) {
+                    continue;
+                }
+                int wordEnd = offset;
+                while (wordEnd < fragment[1]
+                        && (Character.isLetter(content.charAt(wordEnd)) || content.charAt(wordEnd) == '\u00AD')) {
+                    wordEnd++;
+                }
+                snippetBuilder.append(content, cursor, offset)
+                        .append("<b>").append(content, offset, wordEnd).append("</b>");
+                cursor = wordEnd;
+            }
+            snippetBuilder.append(content, cursor, fragment[1]).append("...");
+        }
+        return snippetBuilder.toString();
+    }
 
     private String generateSnippet(String content, List<String> lemmas) {
-        int snippetLength = 200;
+        int snippetLength = SNIPPET_LENGTH;
         String lowerContent = content.toLowerCase();
 
         TreeMap<Integer, String> positions = new TreeMap<>();
@@ -133,20 +614,4 @@ public class SearchServiceImpl implements SearchService {
 
         return snippetBuilder.toString();
     }
-
-    private double calculateRelevance(Page page, List<String> lemmas, Map<String, Integer> lemmaFrequencyMap) {
-        double relevance = 0.0;
-        long totalPages = pageRepository.count();
-
-        for (String lemma : lemmas) {
-            int frequency = lemmaFrequencyMap.getOrDefault(lemma, 1);
-            int docsWithLemma = Math.max(Optional.ofNullable(lemmaRepository.countByLemma(lemma)).orElse(1), 1);
-
-            double tf = (double) frequency / Math.max(page.getContent().length(), 1);
-            double idf = Math.log((double) totalPages / docsWithLemma + 1);
-
-            relevance += tf * idf;
-        }
-        return relevance;
-    }
 }
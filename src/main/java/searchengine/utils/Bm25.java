@@ -0,0 +1,22 @@
+package searchengine.utils;
+
+// Длина страницы — сумма rank всех её лемм, то есть число значимых слов
+public class Bm25 {
+    private final double k1;
+    private final double b;
+
+    public Bm25(double k1, double b) {
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    // Не бывает отрицательным даже для лемм, которые есть почти везде
+    public double idf(int documentFrequency, long totalPages) {
+        return Math.log(1.0 + (totalPages - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    public double score(double termFrequency, double idf, int length, double averageLength) {
+        double norm = averageLength > 0 ? 1 - b + b * length / averageLength : 1;
+        return idf * termFrequency * (k1 + 1) / (termFrequency + k1 * norm);
+    }
+}
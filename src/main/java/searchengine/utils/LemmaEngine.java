@@ -0,0 +1,250 @@
+package searchengine.utils;
+
+import org.apache.lucene.morphology.LuceneMorphology;
+import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
+import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import searchengine.services.MetricsSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+// Общий лемматизатор: словари загружаются один раз на процесс, разборы словоформ — в сегментированном LRU-кеше
+public class LemmaEngine implements MetricsSource {
+    private static final Logger logger = LoggerFactory.getLogger(LemmaEngine.class);
+
+    public static final int DEFAULT_CACHE_SIZE = 200_000;
+    private static final int SEGMENTS = 32;
+
+    // Служебные части речи: предлоги, союзы, междометия, частицы
+    private static final Set<String> SERVICE_PARTS = Set.of(
+            "ПРЕДЛ", "СОЮЗ", "МЕЖД", "ЧАСТ", "CONJ", "PART", "PREP", "PRCL", "INTJ");
+
+    private static final WordForms UNKNOWN = new WordForms(List.of(), List.of());
+
+    private final LuceneMorphology russianMorphology;
+    private final LuceneMorphology englishMorphology;
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public LemmaEngine(LuceneMorphology russianMorphology, LuceneMorphology englishMorphology, int cacheSize) {
+        this.russianMorphology = russianMorphology;
+        this.englishMorphology = englishMorphology;
+        int perSegment = Math.max(16, cacheSize / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment, evictions);
+        }
+    }
+
+    public static LemmaEngine shared() {
+        return Holder.INSTANCE;
+    }
+
+    private static class Holder {
+        private static final LemmaEngine INSTANCE = create();
+
+        private static LemmaEngine create() {
+            long start = System.currentTimeMillis();
+            try {
+                LemmaEngine engine = new LemmaEngine(new RussianLuceneMorphology(),
+                        new EnglishLuceneMorphology(), DEFAULT_CACHE_SIZE);
+                logger.info("📚 Словари морфологии загружены за {} мс", System.currentTimeMillis() - start);
+                return engine;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Ошибка инициализации морфологии", e);
+            }
+        }
+    }
+
+    // Пустые списки для слов не из русского или английского алфавита
+    public WordForms forms(String word) {
+        Segment segment = segments[(word.hashCode() & 0x7fffffff) % SEGMENTS];
+        WordForms cached = segment.get(word);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        WordForms forms = analyze(word);
+        segment.put(word, forms);
+        return forms;
+    }
+
+    public List<String> getNormalForms(String word) {
+        return forms(word).getNormalForms();
+    }
+
+    public List<String> getMorphInfo(String word) {
+        return forms(word).getMorphInfo();
+    }
+
+    // Служебная часть речи хотя бы в одном из разборов
+    public boolean isServiceWord(String word) {
+        for (String info : forms(word).getMorphInfo()) {
+            if (isServiceInfo(info)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static boolean isServiceInfo(String info) {
+        for (String part : SERVICE_PARTS) {
+            if (info.contains(part)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Map<String, Integer> countLemmas(String text) {
+        return countLemmas(text, 2);
+    }
+
+    public Map<String, Integer> countLemmas(String text, int minLength) {
+        Map<String, Integer> lemmaFrequencies = new HashMap<>();
+        WordTokenizer.tokenize(text, minLength, (word, script) -> {
+            for (String lemma : getNormalForms(word)) {
+                lemmaFrequencies.merge(lemma, 1, Integer::sum);
+            }
+        });
+        return lemmaFrequencies;
+    }
+
+    // Номер слова считается по всем словам текста, включая короткие и служебные
+    public Map<String, TermPositions> indexLemmas(String text, int minLength) {
+        Map<String, TermPositions> lemmas = new HashMap<>();
+        int[] ordinal = {0};
+        WordTokenizer.tokenize(text, 1, (word, script, offset) -> {
+            int current = ordinal[0]++;
+            if (word.length() < minLength) {
+                return;
+            }
+            for (String lemma : getNormalForms(word)) {
+                lemmas.computeIfAbsent(lemma, key -> new TermPositions()).add(current, offset);
+            }
+        });
+        return lemmas;
+    }
+
+    public LuceneMorphology getMorphology(String language) {
+        return switch (language.toLowerCase()) {
+            case "ru" -> russianMorphology;
+            case "en" -> englishMorphology;
+            default -> throw new IllegalArgumentException("Неизвестный язык: " + language);
+        };
+    }
+
+    private WordForms analyze(String word) {
+        LuceneMorphology morphology = isAll(word, 'а', 'я') ? russianMorphology
+                : isAll(word, 'a', 'z') ? englishMorphology
+                : null;
+        if (morphology == null) {
+            return UNKNOWN;
+        }
+        // В словарях морфологии нет «ё»
+        String normalized = word.replace('ё', 'е');
+        try {
+            return new WordForms(List.copyOf(morphology.getNormalForms(normalized)),
+                    List.copyOf(morphology.getMorphInfo(normalized)));
+        } catch (RuntimeException e) {
+            // Морфология бросает исключение на словах, которых не может разобрать
+            logger.debug("Слово не разобрано: {}", word);
+            return UNKNOWN;
+        }
+    }
+
+    private static boolean isAll(String word, char from, char to) {
+        if (word.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if ((c < from || c > to) && !(from == 'а' && c == 'ё')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "lemmaEngine";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("cacheSize", size);
+        metrics.put("hits", hitCount);
+        metrics.put("misses", missCount);
+        metrics.put("evictions", evictions.sum());
+        metrics.put("hitRate", hitCount + missCount == 0 ? 0.0
+                : Math.round(hitCount * 10000.0 / (hitCount + missCount)) / 10000.0);
+        return metrics;
+    }
+
+    public static class WordForms {
+        private final List<String> normalForms;
+        private final List<String> morphInfo;
+
+        WordForms(List<String> normalForms, List<String> morphInfo) {
+            this.normalForms = normalForms;
+            this.morphInfo = morphInfo;
+        }
+
+        public List<String> getNormalForms() {
+            return normalForms;
+        }
+
+        public List<String> getMorphInfo() {
+            return morphInfo;
+        }
+    }
+
+    // Сегмент LRU-кеша: LinkedHashMap в порядке доступа под собственной блокировкой
+    private static class Segment {
+        private final LinkedHashMap<String, WordForms> map;
+
+        Segment(int capacity, LongAdder evictions) {
+            this.map = new LinkedHashMap<>(capacity * 4 / 3 + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, WordForms> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized WordForms get(String word) {
+            return map.get(word);
+        }
+
+        synchronized void put(String word, WordForms forms) {
+            map.put(word, forms);
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+    }
+}
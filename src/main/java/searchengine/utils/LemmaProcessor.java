@@ -1,8 +1,5 @@
 package searchengine.utils;
 
-import org.apache.lucene.morphology.LuceneMorphology;
-import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
-import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -13,46 +10,35 @@ import java.util.stream.Collectors;
 @Component
 public class LemmaProcessor {
     private static final Logger logger = LoggerFactory.getLogger(LemmaProcessor.class);
-    private final LuceneMorphology russianMorphology;
-    private final LuceneMorphology englishMorphology;
+    private final LemmaEngine lemmaEngine;
 
     private static final Set<String> PARTICLES = Set.of("ПРЕДЛ", "СОЮЗ", "МЕЖД", "ЧАСТ");
 
-    public LemmaProcessor() throws Exception {
-        this.russianMorphology = new RussianLuceneMorphology();
-        this.englishMorphology = new EnglishLuceneMorphology();
+    public LemmaProcessor(LemmaEngine lemmaEngine) {
+        this.lemmaEngine = lemmaEngine;
     }
 
     public List<String> extractLemmas(String text) {
-        List<String> words = splitIntoWords(text.toLowerCase());
+        // Как при индексации: слов короче двух букв в индексе нет
+        List<String> words = WordTokenizer.tokens(text, 2);
         return words.stream()
                 .map(this::lemmatizeWord)
                 .filter(Objects::nonNull)
                 .collect(Collectors.toList());
     }
 
-    private List<String> splitIntoWords(String text) {
-        return Arrays.stream(text.split("\\P{L}+"))
-                .filter(word -> !word.isBlank())
-                .collect(Collectors.toList());
-    }
-
     private String lemmatizeWord(String word) {
         try {
-            if (word.matches(".*[а-яА-Я]+.*")) {
-                return processLemmas(russianMorphology, word);
-            } else if (word.matches(".*[a-zA-Z]+.*")) {
-                return processLemmas(englishMorphology, word);
-            }
+            return processLemmas(lemmaEngine.forms(word));
         } catch (Exception e) {
             logger.warn("Ошибка обработки слова: {}", word, e);
         }
         return null;
     }
 
-    private String processLemmas(LuceneMorphology morphology, String word) {
-        List<String> normalForms = morphology.getNormalForms(word);
-        List<String> wordInfo = morphology.getMorphInfo(word);
+    private String processLemmas(LemmaEngine.WordForms forms) {
+        List<String> normalForms = forms.getNormalForms();
+        List<String> wordInfo = forms.getMorphInfo();
 
         for (int i = 0; i < wordInfo.size(); i++) {
             String info = wordInfo.get(i);
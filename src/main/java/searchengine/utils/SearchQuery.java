@@ -0,0 +1,153 @@
+package searchengine.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Леммы запроса и фразы в кавычках. Служебные и короткие слова фразы не сверяются,
+// а только задают промежутки между значимыми
+public class SearchQuery {
+    private static final Pattern QUOTED = Pattern.compile("\"([^\"]+)\"");
+
+    private final List<String> lemmas;
+    private final List<Phrase> phrases;
+
+    private SearchQuery(List<String> lemmas, List<Phrase> phrases) {
+        this.lemmas = lemmas;
+        this.phrases = phrases;
+    }
+
+    public static SearchQuery parse(String query, LemmaProcessor lemmaProcessor, LemmaEngine lemmaEngine) {
+        List<Phrase> phrases = new ArrayList<>();
+        Matcher matcher = QUOTED.matcher(query);
+        while (matcher.find()) {
+            Phrase phrase = Phrase.parse(matcher.group(1), lemmaEngine);
+            if (phrase != null) {
+                phrases.add(phrase);
+            }
+        }
+        // Кавычки не буквы: слова фраз попадают в леммы запроса как обычные слова
+        return new SearchQuery(lemmaProcessor.extractLemmas(query), phrases);
+    }
+
+    public List<String> getLemmas() {
+        return lemmas;
+    }
+
+    public List<Phrase> getPhrases() {
+        return phrases;
+    }
+
+    public Set<String> positionLemmas() {
+        Set<String> all = new LinkedHashSet<>(lemmas);
+        for (Phrase phrase : phrases) {
+            phrase.forms.forEach(all::addAll);
+        }
+        return all;
+    }
+
+    // Леммы по алфавиту без повторов, затем фразы: формы и порядок слов не меняют ключ
+    public String normalized() {
+        StringBuilder normalized = new StringBuilder(String.join(" ", new TreeSet<>(lemmas)));
+        new TreeSet<>(phrases.stream().map(phrase -> phrase.words).toList())
+                .forEach(words -> normalized.append(" \"").append(words).append('"'));
+        return normalized.toString();
+    }
+
+    // Пусто, если хотя бы одна фраза не найдена
+    public List<Integer> findPhrases(Map<String, TermPositions> positions) {
+        TreeSet<Integer> offsets = new TreeSet<>();
+        for (Phrase phrase : phrases) {
+            List<Integer> found = phrase.find(positions);
+            if (found.isEmpty()) {
+                return List.of();
+            }
+            offsets.addAll(found);
+        }
+        return new ArrayList<>(offsets);
+    }
+
+    public static class Phrase {
+        private final String words;
+        private final int[] gaps;
+        private final List<List<String>> forms;
+
+        private Phrase(String words, int[] gaps, List<List<String>> forms) {
+            this.words = words;
+            this.gaps = gaps;
+            this.forms = forms;
+        }
+
+        // Одно значимое слово ищется как обычное слово
+        static Phrase parse(String text, LemmaEngine lemmaEngine) {
+            List<String> tokens = WordTokenizer.tokens(text, 1);
+            List<Integer> gaps = new ArrayList<>();
+            List<List<String>> forms = new ArrayList<>();
+            int first = -1;
+            for (int i = 0; i < tokens.size(); i++) {
+                String word = tokens.get(i);
+                List<String> normalForms = lemmaEngine.getNormalForms(word);
+                if (word.length() < 2 || normalForms.isEmpty() || lemmaEngine.isServiceWord(word)) {
+                    continue;
+                }
+                if (first < 0) {
+                    first = i;
+                }
+                gaps.add(i - first);
+                forms.add(normalForms);
+            }
+            if (forms.size() < 2) {
+                return null;
+            }
+            return new Phrase(String.join(" ", tokens), gaps.stream().mapToInt(Integer::intValue).toArray(), forms);
+        }
+
+        public List<List<String>> getForms() {
+            return forms;
+        }
+
+        public List<Integer> find(Map<String, TermPositions> positions) {
+            TreeSet<Integer> found = new TreeSet<>();
+            for (String form : forms.get(0)) {
+                TermPositions first = positions.get(form);
+                if (first == null) {
+                    continue;
+                }
+                for (int i = 0; i < first.size(); i++) {
+                    if (followsAt(positions, first.ordinal(i))) {
+                        found.add(first.offset(i));
+                    }
+                }
+            }
+            return new ArrayList<>(found);
+        }
+
+        // Для страниц, проиндексированных без позиций
+        public boolean occursIn(String text) {
+            String normalized = " " + String.join(" ", WordTokenizer.tokens(text, 1)) + " ";
+            return normalized.contains(" " + words + " ");
+        }
+
+        private boolean followsAt(Map<String, TermPositions> positions, int ordinal) {
+            for (int slot = 1; slot < forms.size(); slot++) {
+                boolean matched = false;
+                for (String form : forms.get(slot)) {
+                    TermPositions candidate = positions.get(form);
+                    if (candidate != null && candidate.indexOfOrdinal(ordinal + gaps[slot]) >= 0) {
+                        matched = true;
+                        break;
+                    }
+                }
+                if (!matched) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
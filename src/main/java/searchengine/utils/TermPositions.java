@@ -0,0 +1,127 @@
+package searchengine.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Номера и смещения вхождений леммы; в index.positions хранятся разностями в varint
+public class TermPositions {
+    private int[] ordinals;
+    private int[] offsets;
+    private int size;
+
+    public TermPositions() {
+        this(4);
+    }
+
+    private TermPositions(int capacity) {
+        ordinals = new int[capacity];
+        offsets = new int[capacity];
+    }
+
+    // Номера и смещения должны идти по возрастанию
+    public void add(int ordinal, int offset) {
+        if (size == ordinals.length) {
+            ordinals = Arrays.copyOf(ordinals, size * 2);
+            offsets = Arrays.copyOf(offsets, size * 2);
+        }
+        ordinals[size] = ordinal;
+        offsets[size] = offset;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int ordinal(int i) {
+        return ordinals[i];
+    }
+
+    public int offset(int i) {
+        return offsets[i];
+    }
+
+    public int indexOfOrdinal(int ordinal) {
+        int found = Arrays.binarySearch(ordinals, 0, size, ordinal);
+        return found >= 0 ? found : -1;
+    }
+
+    public byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size * 3);
+        int previousOrdinal = 0;
+        int previousOffset = 0;
+        for (int i = 0; i < size; i++) {
+            writeVarint(out, ordinals[i] - previousOrdinal);
+            writeVarint(out, offsets[i] - previousOffset);
+            previousOrdinal = ordinals[i];
+            previousOffset = offsets[i];
+        }
+        return out.toByteArray();
+    }
+
+    public static TermPositions decode(byte[] data) {
+        TermPositions positions = new TermPositions(Math.max(4, data.length / 3));
+        int[] cursor = {0};
+        int ordinal = 0;
+        int offset = 0;
+        while (cursor[0] < data.length) {
+            ordinal += readVarint(data, cursor);
+            offset += readVarint(data, cursor);
+            positions.add(ordinal, offset);
+        }
+        return positions;
+    }
+
+    // Наименьшее окно в словах, содержащее все леммы; списки должны быть непустыми
+    public static int minimalSpan(List<TermPositions> lists) {
+        int[] cursors = new int[lists.size()];
+        int best = Integer.MAX_VALUE;
+        while (true) {
+            int minList = 0;
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (int i = 0; i < lists.size(); i++) {
+                int ordinal = lists.get(i).ordinals[cursors[i]];
+                if (ordinal < min) {
+                    min = ordinal;
+                    minList = i;
+                }
+                max = Math.max(max, ordinal);
+            }
+            best = Math.min(best, max - min);
+            // Окно сдвигается за счёт самого раннего вхождения, пока один из списков не кончится
+            if (++cursors[minList] == lists.get(minList).size) {
+                return best;
+            }
+        }
+    }
+
+    public static Map<String, Integer> counts(Map<String, TermPositions> lemmas) {
+        Map<String, Integer> counts = new HashMap<>(lemmas.size() * 4 / 3 + 1);
+        lemmas.forEach((lemma, positions) -> counts.put(lemma, positions.size()));
+        return counts;
+    }
+
+    private static int readVarint(byte[] data, int[] cursor) {
+        int value = 0;
+        for (int shift = 0; cursor[0] < data.length; shift += 7) {
+            byte b = data[cursor[0]++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+        return value;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
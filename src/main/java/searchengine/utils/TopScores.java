@@ -0,0 +1,102 @@
+package searchengine.utils;
+
+import java.util.Arrays;
+
+// Ограниченная min-куча (id, оценка); при равных оценках выше меньший id
+public class TopScores {
+    private final int capacity;
+    private int[] ids;
+    private double[] scores;
+    private int size;
+
+    public TopScores(int capacity) {
+        this.capacity = Math.max(capacity, 0);
+        int initial = Math.min(this.capacity, 64);
+        ids = new int[initial];
+        scores = new double[initial];
+    }
+
+    public void offer(int id, double score) {
+        if (size < capacity) {
+            if (size == ids.length) {
+                int grown = (int) Math.min(capacity, size * 2L);
+                ids = Arrays.copyOf(ids, grown);
+                scores = Arrays.copyOf(scores, grown);
+            }
+            ids[size] = id;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (capacity > 0 && worse(ids[0], scores[0], id, score)) {
+            ids[0] = id;
+            scores[0] = score;
+            siftDown(0, size);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // После сортировки новые пары добавлять нельзя
+    public void sort() {
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+    }
+
+    public int id(int i) {
+        return ids[i];
+    }
+
+    public double score(int i) {
+        return scores[i];
+    }
+
+    // Пара (id a, оценка a) хуже пары b: ниже оценка, а при равной — больше id
+    private static boolean worse(int idA, double scoreA, int idB, double scoreB) {
+        int cmp = Double.compare(scoreA, scoreB);
+        return cmp < 0 || (cmp == 0 && idA > idB);
+    }
+
+    private boolean worse(int a, int b) {
+        return worse(ids[a], scores[a], ids[b], scores[b]);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!worse(i, parent)) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i, int end) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= end) {
+                return;
+            }
+            if (child + 1 < end && worse(child + 1, child)) {
+                child++;
+            }
+            if (!worse(child, i)) {
+                return;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        double score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
@@ -0,0 +1,98 @@
+package searchengine.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Слово — русские или латинские буквы в нижнем регистре, «ё» → «е»; мягкий перенос пропускается.
+// Слова со смешанными или другими алфавитами отбрасываются
+public final class WordTokenizer {
+    private static final char SOFT_HYPHEN = '\u00AD';
+
+    private WordTokenizer() {
+    }
+
+    public enum Script {
+        CYRILLIC, LATIN
+    }
+
+    @FunctionalInterface
+    public interface TokenConsumer {
+        void accept(String word, Script script);
+    }
+
+    @FunctionalInterface
+    public interface PositionConsumer {
+        void accept(String word, Script script, int offset);
+    }
+
+    public static void tokenize(CharSequence text, int minLength, TokenConsumer consumer) {
+        tokenize(text, minLength, (PositionConsumer) (word, script, offset) -> consumer.accept(word, script));
+    }
+
+    public static void tokenize(CharSequence text, int minLength, PositionConsumer consumer) {
+        int length = text.length();
+        char[] word = new char[32];
+        int size = 0;
+        int start = 0;
+        boolean cyrillic = false;
+        boolean latin = false;
+        boolean other = false;
+
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+            if (c == SOFT_HYPHEN) {
+                continue;
+            }
+            if (Character.isLetter(c)) {
+                char lower = toLower(c);
+                if (lower >= 'а' && lower <= 'я' || lower == 'ё') {
+                    cyrillic = true;
+                    if (lower == 'ё') {
+                        lower = 'е';
+                    }
+                } else if (lower >= 'a' && lower <= 'z') {
+                    latin = true;
+                } else {
+                    other = true;
+                }
+                if (size == word.length) {
+                    char[] grown = new char[size * 2];
+                    System.arraycopy(word, 0, grown, 0, size);
+                    word = grown;
+                }
+                if (size == 0) {
+                    start = i;
+                }
+                word[size++] = lower;
+                continue;
+            }
+            if (size >= minLength && size > 0 && !other && cyrillic != latin) {
+                consumer.accept(new String(word, 0, size), cyrillic ? Script.CYRILLIC : Script.LATIN, start);
+            }
+            size = 0;
+            cyrillic = false;
+            latin = false;
+            other = false;
+        }
+    }
+
+    public static List<String> tokens(CharSequence text, int minLength) {
+        List<String> words = new ArrayList<>();
+        tokenize(text, minLength, (word, script) -> words.add(word));
+        return words;
+    }
+
+    // Быстрый путь для ASCII и основной кириллицы без обращения к таблицам Unicode
+    private static char toLower(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return (char) (c + ('a' - 'A'));
+        }
+        if (c >= 'А' && c <= 'Я') {
+            return (char) (c + ('а' - 'А'));
+        }
+        if (c == 'Ё') {
+            return 'ё';
+        }
+        return Character.toLowerCase(c);
+    }
+}
@@ -0,0 +1,69 @@
+package searchengine.crawler;
+
+import org.junit.jupiter.api.Test;
+import searchengine.config.ConfigSite;
+import searchengine.config.CrawlSettings;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CrawlBudgetTest {
+
+    @Test
+    void zeroLimitsMeanUnlimited() {
+        CrawlBudget budget = new CrawlBudget(0, 0, 0, 0);
+
+        // Адреса из sitemap и известные страницы ставятся в очередь с глубиной 1
+        assertTrue(budget.allowsDepth(1));
+        assertTrue(budget.allowsDepth(100));
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(budget.tryAcquirePage());
+        }
+        budget.addBytes(Long.MAX_VALUE / 2);
+        assertFalse(budget.isExhausted());
+    }
+
+    @Test
+    void depthLimitIsInclusive() {
+        CrawlBudget budget = new CrawlBudget(2, 0, 0, 0);
+
+        assertTrue(budget.allowsDepth(0));
+        assertTrue(budget.allowsDepth(2));
+        assertFalse(budget.allowsDepth(3));
+    }
+
+    @Test
+    void pageLimitExhaustsBudget() {
+        CrawlBudget budget = new CrawlBudget(0, 2, 0, 0);
+
+        assertTrue(budget.tryAcquirePage());
+        assertTrue(budget.tryAcquirePage());
+        assertFalse(budget.tryAcquirePage());
+        assertEquals("число страниц", budget.getExhaustedReason());
+        assertEquals(2, budget.getPages());
+    }
+
+    @Test
+    void byteLimitStopsFurtherPages() {
+        CrawlBudget budget = new CrawlBudget(0, 0, 100, 0);
+
+        budget.addBytes(60);
+        assertNull(budget.getExhaustedReason());
+        budget.addBytes(40);
+
+        assertEquals("объём загрузки", budget.getExhaustedReason());
+        assertFalse(budget.tryAcquirePage());
+    }
+
+    @Test
+    void siteSettingsOverrideDefaults() {
+        CrawlSettings settings = new CrawlSettings();
+        ConfigSite site = new ConfigSite();
+        site.setMaxDepth(1);
+
+        assertEquals(1, CrawlBudget.of(settings, site).getMaxDepth());
+        assertEquals(settings.getMaxDepth(), CrawlBudget.of(settings, null).getMaxDepth());
+    }
+}
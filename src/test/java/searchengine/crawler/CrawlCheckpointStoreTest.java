@@ -0,0 +1,120 @@
+package searchengine.crawler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.CrawlSettings;
+import searchengine.repository.PageRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CrawlCheckpointStoreTest {
+
+    private static final String SITE = "http://example.com";
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private CrawlScheduler scheduler;
+    private CrawlCheckpointStore store;
+    private CrawlJob job;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        CrawlSettings settings = new CrawlSettings();
+        settings.setCheckpointDir(Files.createTempDirectory("checkpoints").toString());
+        settings.setPolitenessDelayMinMs(60_000);
+        settings.setPolitenessDelayMaxMs(60_000);
+        scheduler = new CrawlScheduler(settings);
+        store = new CrawlCheckpointStore(settings);
+
+        // Первый адрес держится в загрузке, второй ждёт в очереди: оба попадают в контрольную точку
+        job = scheduler.newJob(SITE, new CrawlTaskHandler<String>() {
+            @Override
+            public String fetch(CrawlRequest request) throws InterruptedException {
+                release.await(5, TimeUnit.SECONDS);
+                return null;
+            }
+
+            @Override
+            public void process(CrawlRequest request, String fetched) {
+            }
+        });
+        job.enqueue(SITE + "/", 0);
+        job.enqueue(SITE + "/b", 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        store.delete(SITE);
+        store.shutdown();
+        scheduler.shutdown();
+    }
+
+    @Test
+    void incrementalCheckpointRestoresRevalidatedPages() {
+        KnownPages knownPages = knownPages();
+        knownPages.markSeen("/a");
+        store.save(SITE, job, visited(), knownPages);
+
+        assertTrue(store.isIncremental(SITE));
+        KnownPages restored = knownPages();
+        VisitedUrlSet visited = new VisitedUrlSet(1 << 16, 0);
+        CrawlCheckpointStore.Checkpoint checkpoint = store.load(SITE, visited, restored);
+
+        assertNotNull(checkpoint);
+        assertEquals(2, checkpoint.getFrontier().size());
+        assertTrue(visited.contains("/b"));
+        // /a перепроверена до остановки, /b ещё в очереди и исчезнувшей не считается до конца обхода
+        assertEquals(List.of("/b"), restored.unseenPages().stream().map(KnownPage::getPath).toList());
+    }
+
+    @Test
+    void fullCheckpointIsNotIncremental() {
+        store.save(SITE, job, visited(), null);
+
+        assertFalse(store.isIncremental(SITE));
+        assertNotNull(store.load(SITE, new VisitedUrlSet(1 << 16, 0), null));
+    }
+
+    @Test
+    void checkpointOfOtherModeIsNotResumed() {
+        store.save(SITE, job, visited(), null);
+
+        assertNull(store.load(SITE, new VisitedUrlSet(1 << 16, 0), knownPages()));
+    }
+
+    @Test
+    void missingCheckpointIsNotIncremental() {
+        assertFalse(store.exists(SITE));
+        assertFalse(store.isIncremental(SITE));
+    }
+
+    private static VisitedUrlSet visited() {
+        VisitedUrlSet visited = new VisitedUrlSet(1 << 16, 0);
+        visited.add("/");
+        visited.add("/a");
+        visited.add("/b");
+        return visited;
+    }
+
+    private static KnownPages knownPages() {
+        PageRepository pageRepository = mock(PageRepository.class);
+        when(pageRepository.findValidatorsBySiteId(1)).thenReturn(List.of(
+                new Object[]{1, "/a", null, null, "hash-a"},
+                new Object[]{2, "/b", null, null, "hash-b"}));
+        return KnownPages.load(pageRepository, 1);
+    }
+}
@@ -0,0 +1,112 @@
+package searchengine.crawler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.CrawlSettings;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CrawlSchedulerTest {
+
+    private CrawlScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        CrawlSettings settings = new CrawlSettings();
+        // Второй адрес хоста ждёт окна вежливости всё время теста
+        settings.setPolitenessDelayMinMs(60_000);
+        settings.setPolitenessDelayMaxMs(60_000);
+        settings.setProcessingThreads(1);
+        scheduler = new CrawlScheduler(settings);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void cancelAllDropsQueuedRequestsButWaitsForDeferredPages() throws Exception {
+        DeferringHandler handler = new DeferringHandler();
+        CrawlJob job = scheduler.newJob("site", handler);
+        job.enqueue("http://example.com/", 0);
+        job.enqueue("http://example.com/next", 1);
+        assertTrue(handler.deferred.await(5, TimeUnit.SECONDS));
+
+        scheduler.cancelAll();
+
+        // Адрес из очереди снят, страница в конвейере ещё не записана
+        assertEquals(1, job.getPending());
+        CompletableFuture<Void> drained = CompletableFuture.runAsync(job::awaitDrained);
+        assertThrows(TimeoutException.class, () -> drained.get(200, TimeUnit.MILLISECONDS));
+
+        handler.done.get(0).run();
+        drained.get(5, TimeUnit.SECONDS);
+        assertEquals(0, job.getPending());
+        assertEquals(List.of("http://example.com/"), handler.fetched);
+    }
+
+    @Test
+    void awaitDrainedIsNotInterrupted() throws Exception {
+        DeferringHandler handler = new DeferringHandler();
+        CrawlJob job = scheduler.newJob("site", handler);
+        job.enqueue("http://example.com/", 0);
+        assertTrue(handler.deferred.await(5, TimeUnit.SECONDS));
+        job.cancel();
+
+        CountDownLatch started = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            started.countDown();
+            job.awaitDrained();
+        });
+        waiter.start();
+        started.await();
+        waiter.interrupt();
+        waiter.join(200);
+        assertTrue(waiter.isAlive());
+
+        handler.done.get(0).run();
+        waiter.join(5000);
+        assertFalse(waiter.isAlive());
+    }
+
+    @Test
+    void cancelledJobAcceptsNoNewRequests() {
+        CrawlJob job = scheduler.newJob("site", new DeferringHandler());
+        job.cancel();
+
+        assertFalse(job.enqueue("http://example.com/", 0));
+        job.awaitDrained();
+        assertEquals(0, job.getPending());
+    }
+
+    // Обработчик передаёт завершение адреса «конвейеру» — тесту
+    private static class DeferringHandler implements CrawlTaskHandler<String> {
+        private final List<String> fetched = new CopyOnWriteArrayList<>();
+        private final List<Runnable> done = new CopyOnWriteArrayList<>();
+        private final CountDownLatch deferred = new CountDownLatch(1);
+
+        @Override
+        public String fetch(CrawlRequest request) {
+            fetched.add(request.getUrl());
+            return request.getUrl();
+        }
+
+        @Override
+        public void process(CrawlRequest request, String fetched) {
+            done.add(request.deferCompletion());
+            deferred.countDown();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package searchengine.crawler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RobotsTxtTest {
+    private static final String AGENT = "SkillboxSearchBot/1.0";
+
+    @Test
+    void specificGroupTakesPrecedenceOverWildcard() {
+        RobotsTxt robots = RobotsTxt.parse("""
+                User-agent: *
+                Disallow: /
+                Crawl-delay: 10
+
+                User-agent: SkillboxSearchBot
+                Disallow: /private
+                Crawl-delay: 0.5
+                """, AGENT);
+
+        assertTrue(robots.isAllowed("/news"));
+        assertFalse(robots.isAllowed("/private/data"));
+        assertEquals(Long.valueOf(500), robots.getCrawlDelayMs());
+    }
+
+    @Test
+    void wildcardGroupAppliesWhenNoSpecificGroup() {
+        RobotsTxt robots = RobotsTxt.parse("""
+                User-agent: OtherBot
+                Disallow: /
+
+                User-agent: *
+                Disallow: /admin # служебные страницы
+                """, AGENT);
+
+        assertTrue(robots.isAllowed("/"));
+        assertFalse(robots.isAllowed("/admin/users"));
+        assertNull(robots.getCrawlDelayMs());
+    }
+
+    @Test
+    void consecutiveUserAgentsShareOneGroup() {
+        RobotsTxt robots = RobotsTxt.parse("""
+                User-agent: OtherBot
+                User-agent: SkillboxSearchBot
+                Disallow: /tmp
+                """, AGENT);
+
+        assertFalse(robots.isAllowed("/tmp/file"));
+    }
+
+    @Test
+    void longestMatchWinsAndAllowWinsTies() {
+        RobotsTxt robots = RobotsTxt.parse("""
+                User-agent: *
+                Disallow: /catalog
+                Allow: /catalog/public
+                Disallow: /same
+                Allow: /same
+                """, AGENT);
+
+        assertFalse(robots.isAllowed("/catalog/secret"));
+        assertTrue(robots.isAllowed("/catalog/public/page"));
+        assertTrue(robots.isAllowed("/same"));
+    }
+
+    @Test
+    void wildcardsAndEndAnchor() {
+        RobotsTxt robots = RobotsTxt.parse("""
+                User-agent: *
+                Disallow: /*.pdf$
+                Disallow: /*?sort=
+                """, AGENT);
+
+        assertFalse(robots.isAllowed("/docs/report.pdf"));
+        assertTrue(robots.isAllowed("/docs/report.pdf.html"));
+        assertFalse(robots.isAllowed("/list?sort=price"));
+        assertTrue(robots.isAllowed("/list?page=2"));
+    }
+
+    @Test
+    void emptyDisallowAllowsEverythingAndSitemapsAreCollected() {
+        RobotsTxt robots = RobotsTxt.parse("""
+                User-agent: *
+                Disallow:
+                Sitemap: https://example.com/sitemap.xml
+                Sitemap: https://example.com/news.xml
+                """, AGENT);
+
+        assertTrue(robots.isAllowed(""));
+        assertTrue(robots.isAllowed("/anything"));
+        assertEquals(List.of("https://example.com/sitemap.xml", "https://example.com/news.xml"),
+                robots.getSitemaps());
+    }
+}
@@ -0,0 +1,130 @@
+package searchengine.crawler;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import searchengine.config.CrawlSettings;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SitemapReaderTest {
+
+    @Test
+    void parsesLastModifiedInW3cFormats() {
+        assertEquals(Instant.parse("2024-03-01T10:15:30Z"), SitemapReader.parseLastModified("2024-03-01T13:15:30+03:00"));
+        assertEquals(Instant.parse("2024-03-01T00:00:00Z"), SitemapReader.parseLastModified("2024-03-01"));
+        assertNull(SitemapReader.parseLastModified("вчера"));
+        assertNull(SitemapReader.parseLastModified(""));
+    }
+
+    @Test
+    void expandsSitemapIndexAndReadsGzippedSitemaps() throws IOException {
+        Map<String, byte[]> files = new HashMap<>();
+        HttpServer server = serve(files);
+        try {
+            String base = "http://127.0.0.1:" + server.getAddress().getPort();
+            files.put("/sitemap.xml", xml("""
+                    <sitemapindex xmlns="http://www.sitemaps.org/schemas/sitemap/0.9">
+                      <sitemap><loc>%1$s/pages.xml</loc></sitemap>
+                      <sitemap><loc>%1$s/news.xml.gz</loc></sitemap>
+                      <sitemap><loc>%1$s/missing.xml</loc></sitemap>
+                    </sitemapindex>
+                    """.formatted(base)));
+            files.put("/pages.xml", xml("""
+                    <urlset xmlns="http://www.sitemaps.org/schemas/sitemap/0.9">
+                      <url><loc>%1$s/a</loc><lastmod>2024-01-02</lastmod></url>
+                      <url><loc> %1$s/b </loc></url>
+                    </urlset>
+                    """.formatted(base)));
+            files.put("/news.xml.gz", gzip(xml("""
+                    <urlset xmlns="http://www.sitemaps.org/schemas/sitemap/0.9">
+                      <url><loc><![CDATA[%1$s/c]]></loc></url>
+                    </urlset>
+                    """.formatted(base))));
+
+            List<String> urls = new ArrayList<>();
+            List<Instant> dates = new ArrayList<>();
+            int accepted = reader(new CrawlSettings()).read(List.of(base + "/sitemap.xml"), (url, lastModified) -> {
+                urls.add(url);
+                dates.add(lastModified);
+                return true;
+            });
+
+            assertEquals(3, accepted);
+            assertEquals(List.of(base + "/a", base + "/b", base + "/c"), urls);
+            assertEquals(Instant.parse("2024-01-02T00:00:00Z"), dates.get(0));
+            assertNull(dates.get(1));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void stopsAtUrlLimit() throws IOException {
+        Map<String, byte[]> files = new HashMap<>();
+        HttpServer server = serve(files);
+        try {
+            String base = "http://127.0.0.1:" + server.getAddress().getPort();
+            StringBuilder urlset = new StringBuilder("<urlset>");
+            for (int i = 0; i < 10; i++) {
+                urlset.append("<url><loc>").append(base).append("/p").append(i).append("</loc></url>");
+            }
+            files.put("/sitemap.xml", xml(urlset.append("</urlset>").toString()));
+            CrawlSettings settings = new CrawlSettings();
+            settings.setSitemapMaxUrls(4);
+
+            List<String> urls = new ArrayList<>();
+            int accepted = reader(settings).read(List.of(base + "/sitemap.xml"), (url, lastModified) -> urls.add(url));
+
+            assertEquals(4, accepted);
+            assertEquals(4, urls.size());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static SitemapReader reader(CrawlSettings settings) {
+        return new SitemapReader(settings, new CrawlHttpClient(settings));
+    }
+
+    private static HttpServer serve(Map<String, byte[]> files) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = files.get(exchange.getRequestURI().getPath());
+            exchange.sendResponseHeaders(body == null ? 404 : 200, body == null ? -1 : body.length);
+            if (body != null) {
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+        return server;
+    }
+
+    private static byte[] xml(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,72 @@
+package searchengine.crawler;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VisitedUrlSetTest {
+
+    @Test
+    void addReportsOnlyFirstVisit() {
+        VisitedUrlSet visited = new VisitedUrlSet(1 << 16, 0);
+
+        assertTrue(visited.add("https://example.com/"));
+        assertFalse(visited.add("https://example.com/"));
+        assertTrue(visited.add("https://example.com/a"));
+        assertTrue(visited.contains("https://example.com/a"));
+        assertFalse(visited.contains("https://example.com/b"));
+        assertEquals(2, visited.size());
+    }
+
+    @Test
+    void fullTableWithoutBloomFilterRejectsNewUrls() {
+        // Минимальная таблица — 1024 ячейки, из них заполняются 3/4
+        VisitedUrlSet visited = new VisitedUrlSet(0, 0);
+        for (int i = 0; i < 768; i++) {
+            assertTrue(visited.add("https://example.com/" + i));
+        }
+
+        assertFalse(visited.add("https://example.com/new"));
+        assertEquals(768, visited.size());
+        assertEquals(1024L * Long.BYTES, visited.memoryBytes());
+    }
+
+    @Test
+    void fullTableOverflowsIntoBloomFilter() {
+        VisitedUrlSet visited = new VisitedUrlSet(0, 1 << 16);
+        for (int i = 0; i < 768; i++) {
+            visited.add("https://example.com/" + i);
+        }
+
+        assertTrue(visited.add("https://example.com/new"));
+        assertFalse(visited.add("https://example.com/new"));
+        assertTrue(visited.contains("https://example.com/new"));
+        assertEquals(769, visited.size());
+    }
+
+    @Test
+    void checkpointRestoresFingerprintsAndBloomFilter() throws IOException {
+        VisitedUrlSet visited = new VisitedUrlSet(0, 1 << 16);
+        for (int i = 0; i < 1000; i++) {
+            visited.add("https://example.com/" + i);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        visited.writeTo(new DataOutputStream(bytes));
+
+        VisitedUrlSet restored = new VisitedUrlSet(0, 1 << 16);
+        restored.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(visited.size(), restored.size());
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(restored.add("https://example.com/" + i));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package searchengine.indexing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import searchengine.model.Site;
+import searchengine.repository.GenerationBulkRepository;
+import searchengine.repository.SiteRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GenerationCollectorTest {
+
+    private GenerationBulkRepository repository;
+    private SiteRepository siteRepository;
+    private InvertedIndex invertedIndex;
+    private GenerationCollector collector;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(GenerationBulkRepository.class);
+        siteRepository = mock(SiteRepository.class);
+        invertedIndex = mock(InvertedIndex.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        collector = new GenerationCollector(repository, siteRepository, invertedIndex, transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        collector.shutdown();
+    }
+
+    @Test
+    void collectDeletesGenerationInChunks() {
+        when(repository.findPageIds(1, 2, 500))
+                .thenReturn(List.of(1, 2))
+                .thenReturn(List.of(3))
+                .thenReturn(List.of());
+        when(repository.deletePages(List.of(1, 2))).thenReturn(2);
+        when(repository.deletePages(List.of(3))).thenReturn(1);
+
+        collector.collect(1, 2).join();
+        collector.await(1);
+
+        verify(invertedIndex).dropPages(List.of(1, 2));
+        verify(invertedIndex).dropPages(List.of(3));
+        verify(repository).deleteUnusedLemmas(1);
+        verify(invertedIndex).compact(1);
+        assertEquals(3L, collector.getMetrics().get("pagesDeleted"));
+        assertEquals(1L, collector.getMetrics().get("generationsCollected"));
+    }
+
+    @Test
+    void discardBuildClearsBuildGenerationAfterDeletion() {
+        when(repository.findPageIds(1, 3, 500)).thenReturn(List.of());
+        Site site = site();
+
+        collector.discardBuild(site);
+
+        assertNull(site.getBuildGeneration());
+        verify(siteRepository).save(site);
+    }
+
+    @Test
+    void failedDiscardKeepsBuildGeneration() {
+        when(repository.findPageIds(1, 3, 500)).thenThrow(new RuntimeException("lock wait timeout"));
+        Site site = site();
+
+        assertThrows(IllegalStateException.class, () -> collector.discardBuild(site));
+
+        // Страницы недостроенного поколения остались: номер не освобождается для следующей сборки
+        assertEquals(3, site.getBuildGeneration());
+        verify(siteRepository, never()).save(any());
+        assertEquals("lock wait timeout", collector.getMetrics().get("lastError"));
+        // Новый обход после неудачной сборки не падает на ожидании
+        collector.await(1);
+    }
+
+    @Test
+    void switchGenerationPublishesBuildAndCollectsPrevious() {
+        when(repository.findPageIds(1, 2, 500)).thenReturn(List.of());
+        Site site = site();
+
+        collector.switchGeneration(site);
+        collector.await(1);
+
+        assertEquals(3, site.getGeneration());
+        assertNull(site.getBuildGeneration());
+        verify(siteRepository).save(site);
+        verify(invertedIndex).setLiveGeneration(1, 3);
+        verify(repository).findPageIds(1, 2, 500);
+    }
+
+    private static Site site() {
+        Site site = new Site();
+        site.setId(1);
+        site.setUrl("http://example.com");
+        site.setGeneration(2);
+        site.setBuildGeneration(3);
+        return site;
+    }
+}
@@ -0,0 +1,96 @@
+package searchengine.indexing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.CrawlSettings;
+import searchengine.crawler.CrawlScheduler;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndexingPipelineTest {
+
+    private CrawlScheduler scheduler;
+    private IndexingPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        CrawlSettings settings = new CrawlSettings();
+        settings.setLemmatizeThreads(1);
+        settings.setPersistThreads(1);
+        settings.setPipelineQueueCapacity(4);
+        scheduler = new CrawlScheduler(settings);
+        pipeline = new IndexingPipeline(settings, scheduler);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.shutdown();
+        scheduler.shutdown();
+    }
+
+    @Test
+    void onDoneRunsOnceAfterPersist() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicInteger persisted = new AtomicInteger();
+
+        pipeline.submit("текст", text -> Map.of(), lemmas -> persisted.incrementAndGet(), done::countDown);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, persisted.get());
+    }
+
+    @Test
+    void onDoneRunsOnceWhenStagesFail() throws Exception {
+        CountDownLatch done = new CountDownLatch(2);
+        AtomicInteger calls = new AtomicInteger();
+        Runnable onDone = () -> {
+            calls.incrementAndGet();
+            done.countDown();
+        };
+
+        pipeline.submit("текст", text -> {
+            throw new IllegalStateException("lemmatize");
+        }, lemmas -> { }, onDone);
+        pipeline.submit("текст", text -> Map.of(), lemmas -> {
+            throw new IllegalStateException("persist");
+        }, onDone);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void shutdownCompletesQueuedPages() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger done = new AtomicInteger();
+
+        pipeline.submit("первая", text -> {
+            started.countDown();
+            release.await();
+            return Map.of();
+        }, lemmas -> { }, done::incrementAndGet);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        pipeline.submit("вторая", text -> Map.of(), lemmas -> { }, done::incrementAndGet);
+        pipeline.submit("третья", text -> Map.of(), lemmas -> { }, done::incrementAndGet);
+
+        pipeline.shutdown();
+
+        // Страницы из очереди завершены сразу, прерванная — когда её задача выйдет с ошибкой
+        assertTrue(done.get() >= 2);
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (done.get() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, done.get());
+    }
+}
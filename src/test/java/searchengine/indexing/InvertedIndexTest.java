@@ -0,0 +1,246 @@
+package searchengine.indexing;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import searchengine.config.SearchSettings;
+import searchengine.utils.TermPositions;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class InvertedIndexTest {
+
+    @Test
+    void seekReturnsFirstPositionWithPageIdNotLess() {
+        InvertedIndex.Postings postings = postingsOfPages(0, 300, 3);
+
+        for (int from : new int[]{0, 1, 17, postings.size() - 1, postings.size()}) {
+            for (int pageId = -1; pageId <= 305; pageId++) {
+                assertEquals(linearSeek(postings, from, pageId), postings.seek(from, pageId),
+                        "seek(" + from + ", " + pageId + ")");
+            }
+        }
+    }
+
+    @Test
+    void seekPastLastPageReturnsSize() {
+        InvertedIndex.Postings postings = postingsOfPages(10, 20, 1);
+
+        assertEquals(postings.size(), postings.seek(0, 1000));
+        assertEquals(0, postings.seek(0, 5));
+    }
+
+    @Test
+    void pageCountsAndLengthsPerSite() {
+        InvertedIndex index = newIndex();
+        addPage(index, 1, 1, 2);
+        addPage(index, 2, 1, 4);
+        addPage(index, 3, 2, 9);
+
+        assertEquals(2, index.pageCount(1));
+        assertEquals(1, index.pageCount(2));
+        assertEquals(3, index.pageCount(null));
+        assertEquals(4, index.documentLength(2));
+        assertEquals(3.0, index.averageDocumentLength(1), 1e-9);
+        assertEquals(5.0, index.averageDocumentLength(null), 1e-9);
+
+        index.dropPages(List.of(3));
+        assertEquals(0, index.pageCount(2));
+        assertEquals(2, index.pageCount(null));
+    }
+
+    @Test
+    void statisticsCountOnlyLiveGeneration() {
+        InvertedIndex index = newIndex();
+        addPage(index, 1, 1, 0, 2);
+        addPage(index, 2, 1, 1, 6);
+        addPage(index, 3, 1, 1, 8);
+
+        assertEquals(1, index.pageCount(1));
+        assertEquals(2.0, index.averageDocumentLength(1), 1e-9);
+        assertEquals(1, index.postings("дом", 1).get(0).liveSize());
+
+        index.setLiveGeneration(1, 1);
+        assertEquals(2, index.pageCount(null));
+        assertEquals(7.0, index.averageDocumentLength(1), 1e-9);
+        assertEquals(2, index.postings("дом", 1).get(0).liveSize());
+        assertEquals(3, index.postings("дом", 1).get(0).size());
+    }
+
+    @Test
+    void pagesWithoutLemmasAreNotCounted() {
+        InvertedIndex index = newIndex();
+        addPage(index, 1, 1, 4);
+        index.addPage(2, 1, 0, Map.of(), Map.of());
+
+        assertEquals(1, index.pageCount(1));
+        assertEquals(4.0, index.averageDocumentLength(1), 1e-9);
+    }
+
+    @Test
+    void removedPageLeavesStatisticsUntilAddedAgain() {
+        InvertedIndex index = newIndex();
+        addPage(index, 1, 1, 4);
+        addPage(index, 2, 1, 2);
+
+        index.removePage(2, List.of(1));
+        assertEquals(1, index.pageCount(1));
+        assertEquals(4.0, index.averageDocumentLength(1), 1e-9);
+
+        addPage(index, 2, 1, 6);
+        assertEquals(2, index.pageCount(1));
+        assertEquals(5.0, index.averageDocumentLength(1), 1e-9);
+    }
+
+    @Test
+    void removeSiteForgetsItsPages() {
+        InvertedIndex index = newIndex();
+        addPage(index, 1, 1, 4);
+        addPage(index, 2, 2, 2);
+
+        index.removeSite(1);
+
+        assertEquals(0, index.pageCount(1));
+        assertEquals(1, index.pageCount(null));
+        assertEquals(0, index.documentLength(1));
+    }
+
+    @Test
+    void reindexedPageDoesNotChangePublishedSnapshot() {
+        InvertedIndex index = newIndex();
+        addPage(index, 1, 1, 2);
+        addPage(index, 2, 1, 3);
+        InvertedIndex.Postings before = index.postings("дом", 1).get(0);
+
+        addPage(index, 1, 1, 5);
+
+        assertEquals(2.0f, before.rank(0));
+        assertEquals(5.0f, index.postings("дом", 1).get(0).rank(0));
+    }
+
+    @Test
+    void pageChangedDuringLoadKeepsOnlyNewPostings() throws SQLException {
+        InvertedIndex[] index = new InvertedIndex[1];
+        // Индексы страницы прочитаны загрузкой, затем страница переиндексирована без леммы «сад»
+        index[0] = loadingIndex(() -> {
+            index[0].removePage(1, List.of(10, 11));
+            addPage(index[0], 1, 1, 0, 10, 5);
+        });
+
+        index[0].load();
+
+        assertTrue(index[0].isReady());
+        assertEquals(0, index[0].postings("сад", 1).get(0).liveSize());
+        InvertedIndex.Postings home = index[0].postings("дом", 1).get(0);
+        assertEquals(2, home.size());
+        assertEquals(5.0f, home.rank(home.indexOf(1)));
+        assertEquals(4.0f, home.rank(home.indexOf(2)));
+        assertEquals(5, index[0].documentLength(1));
+    }
+
+    @Test
+    void siteRemovedDuringLoadLeavesNoPostings() throws SQLException {
+        InvertedIndex[] index = new InvertedIndex[1];
+        index[0] = loadingIndex(() -> index[0].removeSite(1));
+
+        index[0].load();
+
+        assertTrue(index[0].isReady());
+        assertEquals(0, index[0].pageCount(1));
+        assertTrue(index[0].postings("дом", 1).isEmpty());
+        assertEquals(0L, index[0].getMetrics().get("rows"));
+    }
+
+    private static InvertedIndex.Postings postingsOfPages(int from, int to, int step) {
+        InvertedIndex index = newIndex();
+        for (int pageId = from; pageId < to; pageId += step) {
+            addPage(index, pageId, 1, 1);
+        }
+        return index.postings("дом", 1).get(0);
+    }
+
+    private static int linearSeek(InvertedIndex.Postings postings, int from, int pageId) {
+        int i = from;
+        while (i < postings.size() && postings.pageId(i) < pageId) {
+            i++;
+        }
+        return i;
+    }
+
+    // В базе страницы 1 и 2 сайта 1: у первой леммы «дом» (id 10) и «сад» (id 11), у второй — «дом».
+    // duringLoad выполняется, когда загрузка прочитала строки index, но ещё не слила их в списки
+    private static InvertedIndex loadingIndex(Runnable duringLoad) throws SQLException {
+        Map<String, List<Object[]>> tables = Map.of(
+                "FROM site", List.<Object[]>of(new Object[]{1, 0}),
+                "FROM page", List.of(new Object[]{1, 1, 0}, new Object[]{2, 1, 0}),
+                "FROM lemma", List.of(new Object[]{10, 1, "дом"}, new Object[]{11, 1, "сад"}),
+                "FROM `index`", List.of(new Object[]{10, 1, 2f}, new Object[]{11, 1, 1f}, new Object[]{10, 2, 4f}));
+        DataSource dataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            String table = tables.keySet().stream().filter(sql::contains).findFirst().orElseThrow();
+            return resultSet(tables.get(table), table.equals("FROM `index`") ? duringLoad : () -> { });
+        });
+        return new InvertedIndex(dataSource, new SearchSettings());
+    }
+
+    private static ResultSet resultSet(List<Object[]> rows, Runnable afterLastRow) throws SQLException {
+        ResultSet resultSet = mock(ResultSet.class);
+        int[] row = {-1};
+        when(resultSet.next()).thenAnswer(invocation -> {
+            if (++row[0] < rows.size()) {
+                return true;
+            }
+            if (row[0] == rows.size()) {
+                afterLastRow.run();
+            }
+            return false;
+        });
+        when(resultSet.getInt(anyInt())).thenAnswer(invocation ->
+                ((Number) rows.get(row[0])[(int) invocation.getArgument(0) - 1]).intValue());
+        when(resultSet.getFloat(anyInt())).thenAnswer(invocation ->
+                ((Number) rows.get(row[0])[(int) invocation.getArgument(0) - 1]).floatValue());
+        when(resultSet.getString(anyInt())).thenAnswer(invocation ->
+                (String) rows.get(row[0])[(int) invocation.getArgument(0) - 1]);
+        return resultSet;
+    }
+
+    private static InvertedIndex newIndex() {
+        return new InvertedIndex(new DriverManagerDataSource("jdbc:none"), new SearchSettings());
+    }
+
+    // Страница из одной леммы «дом», встречающейся occurrences раз
+    private static void addPage(InvertedIndex index, int pageId, int siteId, int occurrences) {
+        addPage(index, pageId, siteId, 0, occurrences);
+    }
+
+    private static void addPage(InvertedIndex index, int pageId, int siteId, int generation, int occurrences) {
+        // Леммы хранятся по сайтам, поэтому у каждого сайта своя запись «дом»
+        addPage(index, pageId, siteId, generation, siteId, occurrences);
+    }
+
+    private static void addPage(InvertedIndex index, int pageId, int siteId, int generation, int lemmaId,
+                                int occurrences) {
+        TermPositions positions = new TermPositions();
+        for (int i = 0; i < occurrences; i++) {
+            positions.add(i, i * 4);
+        }
+        index.addPage(pageId, siteId, generation, Map.of("дом", lemmaId), Map.of("дом", positions));
+    }
+}
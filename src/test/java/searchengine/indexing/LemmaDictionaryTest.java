@@ -0,0 +1,119 @@
+package searchengine.indexing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import searchengine.config.CrawlSettings;
+import searchengine.repository.LemmaBulkRepository;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LemmaDictionaryTest {
+
+    private LemmaBulkRepository repository;
+    private LemmaDictionary dictionary;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(LemmaBulkRepository.class);
+        when(repository.upsert(anyInt(), anyMap())).thenReturn(Map.of("дом", 10, "сад", 11));
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        dictionary = new LemmaDictionary(repository, transactionManager, new CrawlSettings());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        dictionary.shutdown();
+    }
+
+    @Test
+    void resolveCreatesMissingLemmasWithZeroIncrementOnce() {
+        assertEquals(Map.of("дом", 10, "сад", 11), dictionary.resolve(1, List.of("дом", "сад")));
+        assertEquals(Map.of("дом", 10), dictionary.resolve(1, List.of("дом")));
+
+        verify(repository, times(1)).upsert(anyInt(), anyMap());
+        verify(repository).upsert(1, Map.of("дом", 0, "сад", 0));
+    }
+
+    @Test
+    void flushWritesAccumulatedCountsOnce() {
+        Map<String, Integer> ids = dictionary.resolve(1, List.of("дом", "сад"));
+        dictionary.add(1, Map.of("дом", 2, "сад", 1), ids);
+        dictionary.add(1, Map.of("дом", 3), ids);
+
+        dictionary.flush(1);
+        dictionary.flush(1);
+
+        verify(repository, times(1)).addFrequencies(anyMap());
+        verify(repository).addFrequencies(Map.of(10, 5L, 11, 1L));
+    }
+
+    @Test
+    void failedFlushKeepsCountsForNextFlush() {
+        Map<String, Integer> ids = dictionary.resolve(1, List.of("дом"));
+        dictionary.add(1, Map.of("дом", 2), ids);
+        doThrow(new RuntimeException("deadlock")).when(repository).addFrequencies(Map.of(10, 2L));
+
+        dictionary.flush(1);
+        dictionary.add(1, Map.of("дом", 1), ids);
+        dictionary.flush(1);
+
+        verify(repository).addFrequencies(Map.of(10, 3L));
+    }
+
+    @Test
+    void releaseFlushesAndLaterCountsAreWrittenDirectly() {
+        Map<String, Integer> ids = dictionary.resolve(1, List.of("дом"));
+        dictionary.add(1, Map.of("дом", 2), ids);
+
+        dictionary.release(1);
+        verify(repository).addFrequencies(Map.of(10, 2L));
+
+        // Страница, записанная после освобождения словаря, не теряет свои вхождения
+        dictionary.add(1, Map.of("дом", 4), ids);
+        verify(repository).addFrequencies(Map.of(10, 4L));
+        assertEquals(0, dictionary.getMetrics().get("sites"));
+    }
+
+    @Test
+    void addAfterCommitCountsOnlyCommittedPages() {
+        Map<String, Integer> ids = dictionary.resolve(1, List.of("дом"));
+        TransactionSynchronizationManager.initSynchronization();
+        dictionary.addAfterCommit(1, Map.of("дом", 2), ids);
+        List<TransactionSynchronization> rolledBack = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        rolledBack.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        dictionary.flush(1);
+        verify(repository, never()).addFrequencies(anyMap());
+
+        TransactionSynchronizationManager.initSynchronization();
+        dictionary.addAfterCommit(1, Map.of("дом", 3), ids);
+        List<TransactionSynchronization> committed = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        committed.forEach(TransactionSynchronization::afterCommit);
+
+        dictionary.flush(1);
+        verify(repository).addFrequencies(Map.of(10, 3L));
+    }
+}
@@ -0,0 +1,76 @@
+package searchengine.indexing;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import searchengine.model.Page;
+import searchengine.model.PageContent;
+import searchengine.repository.PageContentRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PageContentStoreTest {
+
+    @Test
+    void compressRoundTripsLargeAndEmptyContent() {
+        byte[] html = "<p>Привет, мир!</p>\n".repeat(5000).getBytes(StandardCharsets.UTF_8);
+
+        byte[] compressed = PageContentStore.compress(html);
+
+        assertTrue(compressed.length < html.length / 10);
+        assertArrayEquals(html, PageContentStore.decompress(compressed));
+        assertArrayEquals(new byte[0], PageContentStore.decompress(PageContentStore.compress(new byte[0])));
+    }
+
+    @Test
+    void truncatedContentIsReportedAsCorrupted() {
+        byte[] compressed = PageContentStore.compress("<html>страница</html>".repeat(100).getBytes(StandardCharsets.UTF_8));
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> PageContentStore.decompress(truncated));
+        assertEquals("Повреждённое содержимое страницы", e.getMessage());
+    }
+
+    @Test
+    void invalidContentIsReportedAsCorrupted() {
+        byte[] garbage = "не сжатые данные".getBytes(StandardCharsets.UTF_8);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> PageContentStore.decompress(garbage));
+        assertEquals("Повреждённое содержимое страницы", e.getMessage());
+    }
+
+    @Test
+    void savedHtmlIsReadBackAndLegacyPagesUsePageContent() {
+        PageContentRepository repository = mock(PageContentRepository.class);
+        PageContentStore store = new PageContentStore(repository);
+        String html = "<html><title>Дом</title><body>Сад</body></html>";
+
+        store.save(1, html, "Дом", "Сад");
+        ArgumentCaptor<PageContent> saved = ArgumentCaptor.forClass(PageContent.class);
+        verify(repository).save(saved.capture());
+        when(repository.findHtmlByPageId(1)).thenReturn(Optional.of(saved.getValue().getHtml()));
+
+        assertEquals(html, store.getHtml(page(1, null)));
+        // Страница, сохранённая до появления page_content
+        assertEquals("<p>Старый текст</p>", store.getHtml(page(2, "<p>Старый текст</p>")));
+        assertEquals("Старый текст", store.getText(page(2, "<p>Старый текст</p>")));
+    }
+
+    private static Page page(int id, String content) {
+        Page page = new Page();
+        page.setId(id);
+        page.setContent(content);
+        return page;
+    }
+}
@@ -0,0 +1,76 @@
+package searchengine.indexing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PipelineStageTest {
+
+    private final PipelineStage stage = new PipelineStage("test", 1, 1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        stage.shutdownNow();
+    }
+
+    @Test
+    void shutdownRunsDropHookOfQueuedTasks() throws Exception {
+        AtomicInteger dropped = new AtomicInteger();
+        stage.submit(this::block, dropped::incrementAndGet);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        stage.submit(() -> { }, dropped::incrementAndGet);
+
+        stage.shutdownNow();
+
+        // Выполнявшаяся задача прервана, но не снята: хук только у ждавшей в очереди
+        assertEquals(1, dropped.get());
+    }
+
+    @Test
+    void submitAfterShutdownIsRejectedWithoutDropHook() {
+        AtomicInteger dropped = new AtomicInteger();
+        stage.shutdownNow();
+
+        assertThrows(RejectedExecutionException.class, () -> stage.submit(() -> { }, dropped::incrementAndGet));
+        assertEquals(0, dropped.get());
+    }
+
+    @Test
+    void submitterBlockedOnFullQueueIsReleasedByShutdown() throws Exception {
+        AtomicInteger dropped = new AtomicInteger();
+        stage.submit(this::block, dropped::incrementAndGet);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        stage.submit(() -> { }, dropped::incrementAndGet);
+
+        CompletableFuture<Void> blocked = CompletableFuture.runAsync(
+                () -> stage.submit(() -> { }, dropped::incrementAndGet));
+        assertThrows(TimeoutException.class, () -> blocked.get(200, TimeUnit.MILLISECONDS));
+
+        stage.shutdownNow();
+
+        // Каждая задача завершена ровно одним способом: снята из очереди или отклонена
+        ExecutionException e = assertThrows(ExecutionException.class, () -> blocked.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        assertEquals(1, dropped.get());
+    }
+
+    private void block() throws InterruptedException {
+        started.countDown();
+        release.await();
+    }
+}
@@ -0,0 +1,34 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+import searchengine.services.IndexingMode.Mode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class IndexingModeTest {
+
+    @Test
+    void secondModeIsRejectedUntilFirstExits() {
+        IndexingMode indexingMode = new IndexingMode();
+
+        assertNull(indexingMode.tryEnter(Mode.REINDEX));
+        assertEquals("Идёт переиндексация", indexingMode.tryEnter(Mode.CRAWL));
+        assertEquals("Идёт переиндексация", indexingMode.tryEnter(Mode.PAGE));
+
+        indexingMode.exit(Mode.REINDEX);
+        assertNull(indexingMode.tryEnter(Mode.CRAWL));
+        assertEquals(Mode.CRAWL, indexingMode.current());
+    }
+
+    @Test
+    void exitOfAnotherModeKeepsCurrent() {
+        IndexingMode indexingMode = new IndexingMode();
+        indexingMode.tryEnter(Mode.PAGE);
+
+        indexingMode.exit(Mode.CRAWL);
+
+        assertEquals(Mode.PAGE, indexingMode.current());
+        assertEquals("Идёт индексация страницы", indexingMode.tryEnter(Mode.REINDEX));
+    }
+}
@@ -0,0 +1,67 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+import searchengine.config.SearchSettings;
+import searchengine.utils.TopScores;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchResultCacheTest {
+
+    @Test
+    void rankingCoversWindowInsideKeptPages() {
+        SearchResultCache.Ranking ranking = new SearchResultCache.Ranking(top(10), 500);
+
+        assertTrue(ranking.covers(10));
+        assertFalse(ranking.covers(11));
+    }
+
+    @Test
+    void completeRankingCoversAnyWindow() {
+        SearchResultCache.Ranking ranking = new SearchResultCache.Ranking(top(7), 7);
+
+        assertTrue(ranking.covers(20));
+        assertTrue(new SearchResultCache.Ranking(top(0), 0).covers(20));
+    }
+
+    @Test
+    void getReturnsRankingOnlyForSameVersionAndCoveredWindow() {
+        SearchResultCache cache = new SearchResultCache(new SearchSettings());
+        SearchResultCache.Ranking ranking = new SearchResultCache.Ranking(top(10), 500);
+        cache.put("1|дом", 3, ranking);
+
+        assertEquals(ranking, cache.get("1|дом", 3, 10));
+        assertNull(cache.get("1|дом", 3, 20));
+        assertNull(cache.get("1|дом", 4, 10));
+        // Устаревшая запись удалена и с прежней версией уже не находится
+        assertNull(cache.get("1|дом", 3, 10));
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        SearchSettings settings = new SearchSettings();
+        settings.setResultCacheSize(2);
+        SearchResultCache cache = new SearchResultCache(settings);
+        SearchResultCache.Ranking ranking = new SearchResultCache.Ranking(top(1), 1);
+        cache.put("a", 1, ranking);
+        cache.put("b", 1, ranking);
+        cache.get("a", 1, 1);
+        cache.put("c", 1, ranking);
+
+        assertEquals(ranking, cache.get("a", 1, 1));
+        assertNull(cache.get("b", 1, 1));
+        assertEquals(1L, cache.getMetrics().get("evicted"));
+    }
+
+    private static TopScores top(int pages) {
+        TopScores top = new TopScores(pages);
+        for (int id = 0; id < pages; id++) {
+            top.offer(id, pages - id);
+        }
+        top.sort();
+        return top;
+    }
+}
@@ -0,0 +1,38 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchServiceImplTest {
+
+    @Test
+    void lemmasAreOrderedFromRarest() {
+        List<String> selected = SearchServiceImpl.selectLemmas(List.of("дом", "сад", "окно"),
+                Map.of("дом", 30, "сад", 5, "окно", 12), 100, 0.8);
+
+        assertEquals(List.of("сад", "окно", "дом"), selected);
+    }
+
+    @Test
+    void missingLemmaMeansNoResults() {
+        assertTrue(SearchServiceImpl.selectLemmas(List.of("дом", "сад"), Map.of("дом", 30), 100, 0.8).isEmpty());
+    }
+
+    @Test
+    void frequentLemmasArePrunedButRarestIsKept() {
+        assertEquals(List.of("сад"), SearchServiceImpl.selectLemmas(List.of("дом", "сад"),
+                Map.of("дом", 95, "сад", 40), 100, 0.8));
+        assertEquals(List.of("сад"), SearchServiceImpl.selectLemmas(List.of("дом", "сад"),
+                Map.of("дом", 99, "сад", 90), 100, 0.8));
+    }
+
+    @Test
+    void duplicateLemmasAreCountedOnce() {
+        assertEquals(List.of("дом"), SearchServiceImpl.selectLemmas(List.of("дом", "дом"), Map.of("дом", 3), 10, 0.8));
+    }
+}
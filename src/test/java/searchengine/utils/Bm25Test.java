@@ -0,0 +1,44 @@
+package searchengine.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Bm25Test {
+    private final Bm25 bm25 = new Bm25(1.2, 0.75);
+
+    @Test
+    void idfMatchesFormulaAndStaysPositive() {
+        assertEquals(Math.log(1 + (100 - 10 + 0.5) / 10.5), bm25.idf(10, 100), 1e-12);
+        assertTrue(bm25.idf(100, 100) > 0);
+        assertTrue(bm25.idf(1, 100) > bm25.idf(50, 100));
+    }
+
+    @Test
+    void scoreOfAveragePageHasNoLengthCorrection() {
+        // При длине, равной средней, norm = 1: idf * tf * (k1 + 1) / (tf + k1)
+        assertEquals(2.0 * 3 * 2.2 / (3 + 1.2), bm25.score(3, 2.0, 50, 50), 1e-12);
+    }
+
+    @Test
+    void termFrequencySaturates() {
+        double one = bm25.score(1, 1.0, 100, 100);
+        double ten = bm25.score(10, 1.0, 100, 100);
+        double thousand = bm25.score(1000, 1.0, 100, 100);
+
+        assertTrue(ten > one);
+        assertTrue(thousand < 2.2);
+        assertTrue(thousand - ten < ten - one);
+    }
+
+    @Test
+    void longerPagesScoreLower() {
+        assertTrue(bm25.score(2, 1.0, 50, 100) > bm25.score(2, 1.0, 400, 100));
+    }
+
+    @Test
+    void zeroAverageLengthDisablesNormalization() {
+        assertEquals(bm25.score(2, 1.0, 100, 100), bm25.score(2, 1.0, 7, 0), 1e-12);
+    }
+}
@@ -0,0 +1,23 @@
+package searchengine.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LemmaProcessorTest {
+    private final LemmaProcessor lemmaProcessor = new LemmaProcessor(LemmaEngine.shared());
+
+    @Test
+    void oneLetterWordsAreNotQueryLemmas() {
+        // Таких слов нет в индексе, и поиск по всем леммам запроса ничего бы не нашёл
+        assertTrue(lemmaProcessor.extractLemmas("я").isEmpty());
+
+        List<String> lemmas = lemmaProcessor.extractLemmas("Я дом");
+        assertFalse(lemmas.contains("я"));
+        assertEquals(List.of("дом"), lemmas);
+    }
+}
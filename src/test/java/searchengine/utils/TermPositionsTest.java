@@ -0,0 +1,83 @@
+package searchengine.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TermPositionsTest {
+
+    @Test
+    void encodeDecodeRoundTrip() {
+        TermPositions positions = new TermPositions();
+        int[][] pairs = {{0, 0}, {1, 7}, {130, 1000}, {20000, 150000}, {20001, Integer.MAX_VALUE / 2}};
+        for (int[] pair : pairs) {
+            positions.add(pair[0], pair[1]);
+        }
+
+        TermPositions decoded = TermPositions.decode(positions.encode());
+
+        assertEquals(pairs.length, decoded.size());
+        for (int i = 0; i < pairs.length; i++) {
+            assertEquals(pairs[i][0], decoded.ordinal(i));
+            assertEquals(pairs[i][1], decoded.offset(i));
+        }
+    }
+
+    @Test
+    void deltasUnder128TakeOneByteEach() {
+        TermPositions positions = new TermPositions();
+        positions.add(3, 10);
+        positions.add(5, 25);
+        positions.add(105, 150);
+
+        // Разности (3, 10), (2, 15), (100, 125) — по байту на число
+        assertEquals(6, positions.encode().length);
+    }
+
+    @Test
+    void largeDeltaUsesContinuationBytes() {
+        TermPositions positions = new TermPositions();
+        positions.add(128, 16384);
+
+        // 128 — два байта varint, 16384 — три
+        assertEquals(5, positions.encode().length);
+        assertEquals(16384, TermPositions.decode(positions.encode()).offset(0));
+    }
+
+    @Test
+    void emptyPositionsEncodeToNothing() {
+        assertEquals(0, new TermPositions().encode().length);
+        assertEquals(0, TermPositions.decode(new byte[0]).size());
+    }
+
+    @Test
+    void indexOfOrdinal() {
+        TermPositions positions = of(2, 9, 40);
+
+        assertEquals(1, positions.indexOfOrdinal(9));
+        assertEquals(-1, positions.indexOfOrdinal(10));
+    }
+
+    @Test
+    void minimalSpanFindsClosestOccurrences() {
+        assertEquals(1, TermPositions.minimalSpan(List.of(of(1, 20, 50), of(10, 21, 60))));
+        assertEquals(2, TermPositions.minimalSpan(List.of(of(5, 30), of(31), of(0, 32))));
+        assertEquals(0, TermPositions.minimalSpan(List.of(of(7), of(7))));
+    }
+
+    @Test
+    void countsAreOccurrenceNumbers() {
+        assertEquals(Map.of("дом", 3, "сад", 1), TermPositions.counts(Map.of("дом", of(1, 4, 8), "сад", of(2))));
+    }
+
+    private static TermPositions of(int... ordinals) {
+        TermPositions positions = new TermPositions();
+        for (int ordinal : ordinals) {
+            positions.add(ordinal, ordinal * 6);
+        }
+        return positions;
+    }
+}
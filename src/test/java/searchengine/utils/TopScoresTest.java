@@ -0,0 +1,77 @@
+package searchengine.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TopScoresTest {
+
+    @Test
+    void keepsBestScoresInDescendingOrder() {
+        TopScores top = new TopScores(3);
+        top.offer(1, 0.5);
+        top.offer(2, 2.0);
+        top.offer(3, 1.0);
+        top.offer(4, 3.0);
+        top.offer(5, 0.1);
+        top.sort();
+
+        assertEquals(3, top.size());
+        assertEquals(4, top.id(0));
+        assertEquals(2, top.id(1));
+        assertEquals(3, top.id(2));
+        assertEquals(3.0, top.score(0), 0);
+    }
+
+    @Test
+    void equalScoresPreferLowerId() {
+        TopScores top = new TopScores(2);
+        top.offer(9, 1.0);
+        top.offer(4, 1.0);
+        top.offer(7, 1.0);
+        top.sort();
+
+        assertEquals(4, top.id(0));
+        assertEquals(7, top.id(1));
+    }
+
+    @Test
+    void zeroCapacityKeepsNothing() {
+        TopScores top = new TopScores(0);
+        top.offer(1, 1.0);
+        top.sort();
+
+        assertEquals(0, top.size());
+    }
+
+    @Test
+    void matchesFullSortOnRandomInput() {
+        Random random = new Random(42);
+        for (int trial = 0; trial < 50; trial++) {
+            int candidates = 1 + random.nextInt(500);
+            int capacity = 1 + random.nextInt(150);
+            double[] scores = new double[candidates];
+            TopScores top = new TopScores(capacity);
+            for (int id = 0; id < candidates; id++) {
+                // Мало различных оценок, чтобы проверить и порядок при равенстве
+                scores[id] = random.nextInt(20);
+                top.offer(id, scores[id]);
+            }
+            top.sort();
+
+            List<Integer> expected = IntStream.range(0, candidates).boxed()
+                    .sorted(Comparator.<Integer>comparingDouble(id -> -scores[id]).thenComparing(id -> id))
+                    .limit(capacity)
+                    .toList();
+            assertEquals(expected.size(), top.size());
+            for (int i = 0; i < top.size(); i++) {
+                assertEquals(expected.get(i).intValue(), top.id(i));
+            }
+        }
+    }
+}
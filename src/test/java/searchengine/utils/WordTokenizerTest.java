@@ -0,0 +1,46 @@
+package searchengine.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WordTokenizerTest {
+
+    @Test
+    void lowercasesAndReplacesYo() {
+        assertEquals(List.of("ежик", "и", "java"), WordTokenizer.tokens("Ёжик и JAVA", 1));
+    }
+
+    @Test
+    void hyphenAndPunctuationSplitWords() {
+        assertEquals(List.of("кто", "то", "пришел"), WordTokenizer.tokens("кто-то пришёл!", 1));
+    }
+
+    @Test
+    void softHyphenInsideWordIsSkipped() {
+        assertEquals(List.of("индексация"), WordTokenizer.tokens("индек\u00ADсация", 1));
+    }
+
+    @Test
+    void mixedAndForeignScriptsAreDropped() {
+        // «Мoсква» с латинской «o», греческое слово и цифры не дают слов
+        assertEquals(List.of("слово"), WordTokenizer.tokens("Мoсква λόγος 2024 слово", 1));
+    }
+
+    @Test
+    void shortWordsAreSkipped() {
+        assertEquals(List.of("мы", "дома"), WordTokenizer.tokens("я и мы дома", 2));
+    }
+
+    @Test
+    void reportsScriptAndOffsetOfFirstLetter() {
+        List<String> seen = new ArrayList<>();
+        WordTokenizer.tokenize("  Привет, world", 1,
+                (word, script, offset) -> seen.add(word + ":" + script + ":" + offset));
+
+        assertEquals(List.of("привет:CYRILLIC:2", "world:LATIN:10"), seen);
+    }
+}